@@ -14,4 +14,7 @@ public class JwtProperties {
   private String issuer;
   private String header = "Authorization";
   private String prefix = "Bearer ";
+
+  /** Redis sorted set of revoked access tokens, followed by the gateway. */
+  private String revocationKey = "auth:revoked-tokens";
 }
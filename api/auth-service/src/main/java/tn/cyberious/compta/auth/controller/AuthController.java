@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
@@ -47,11 +48,20 @@ public class AuthController {
 
   @PostMapping("/logout")
   @SecurityRequirement(name = "bearer-jwt")
-  @Operation(summary = "Logout", description = "Logout user and invalidate refresh token")
+  @Operation(
+      summary = "Logout",
+      description =
+          "Logout user: invalidate the refresh token and revoke the current access token, or all"
+              + " sessions of the user when no refresh token is given")
   public ResponseEntity<Void> logout(
       @AuthenticationPrincipal CustomUserDetails currentUser,
-      @RequestParam(required = false) String refreshToken) {
-    authService.logout(currentUser.getId(), refreshToken);
+      @RequestParam(required = false) String refreshToken,
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+    String accessToken =
+        authorization != null && authorization.startsWith("Bearer ")
+            ? authorization.substring(7)
+            : null;
+    authService.logout(currentUser.getId(), currentUser.getUsername(), refreshToken, accessToken);
     return ResponseEntity.noContent().build();
   }
 
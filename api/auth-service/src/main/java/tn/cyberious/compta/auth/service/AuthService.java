@@ -34,6 +34,7 @@ public class AuthService {
   private final RefreshTokenRepository refreshTokenRepository;
   private final AuthLogRepository authLogRepository;
   private final PasswordEncoder passwordEncoder;
+  private final TokenRevocationService tokenRevocationService;
 
   @Transactional
   public AuthResponse login(LoginRequest loginRequest, String ipAddress, String userAgent) {
@@ -200,15 +201,18 @@ public class AuthService {
   }
 
   @Transactional
-  public void logout(Long userId, String refreshToken) {
+  public void logout(Long userId, String username, String refreshToken, String accessToken) {
     log.info("Logout request for user: {}", userId);
 
     // Delete refresh token from database
     if (refreshToken != null && !refreshToken.isEmpty()) {
       refreshTokenRepository.deleteByToken(refreshToken);
+      // Revoke the access token of this session only
+      revokeAccessToken(accessToken);
     } else {
       // Delete all refresh tokens for this user
       refreshTokenRepository.deleteByUserId(userId);
+      tokenRevocationService.revokeAllTokens(username);
     }
 
     // Log logout event
@@ -276,12 +280,27 @@ public class AuthService {
 
     userRepository.update(user);
 
-    // Delete all refresh tokens to force re-login
+    // Delete all refresh tokens and revoke access tokens to force re-login
     refreshTokenRepository.deleteByUserId(userId);
+    tokenRevocationService.revokeAllTokens(user.getUsername());
 
     log.info("Password changed successfully for user: {}", userId);
   }
 
+  private void revokeAccessToken(String accessToken) {
+    if (accessToken == null || accessToken.isEmpty()) {
+      return;
+    }
+    try {
+      String tokenId = jwtTokenUtil.getTokenIdFromToken(accessToken);
+      if (tokenId != null) {
+        tokenRevocationService.revokeToken(tokenId);
+      }
+    } catch (Exception e) {
+      log.warn("Could not read access token to revoke: {}", e.getMessage());
+    }
+  }
+
   private void logAuthEvent(
       Long userId,
       String username,
@@ -0,0 +1,53 @@
+package tn.cyberious.compta.auth.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import tn.cyberious.compta.auth.config.JwtProperties;
+
+/**
+ * Publishes access token revocations for the gateway.
+ *
+ * <p>Revocations go to the Redis sorted set {@code jwt.revocation-key}, scored by revocation time
+ * in milliseconds: {@code sub:<username>} revokes every token of the user issued before that time,
+ * {@code jti:<token id>} a single token. The gateway follows the set and rejects those tokens
+ * within about a second. Entries older than the access token lifetime are pruned on each write.
+ *
+ * <p>Best effort: if Redis is unavailable the failure is logged and revoked tokens stay valid
+ * until they expire, as before.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationService {
+
+  private static final String SUBJECT_PREFIX = "sub:";
+  private static final String TOKEN_ID_PREFIX = "jti:";
+
+  private final StringRedisTemplate redisTemplate;
+  private final JwtProperties jwtProperties;
+
+  /** Revokes every access token issued to the user until now. */
+  public void revokeAllTokens(String username) {
+    revoke(SUBJECT_PREFIX + username);
+  }
+
+  /** Revokes a single access token by its {@code jti}. */
+  public void revokeToken(String tokenId) {
+    revoke(TOKEN_ID_PREFIX + tokenId);
+  }
+
+  private void revoke(String member) {
+    long now = System.currentTimeMillis();
+    String key = jwtProperties.getRevocationKey();
+    try {
+      redisTemplate.opsForZSet().add(key, member, now);
+      redisTemplate.opsForZSet().removeRangeByScore(key, 0, now - jwtProperties.getExpiration());
+      log.debug("Revoked {}", member);
+    } catch (DataAccessException e) {
+      log.error("Failed to publish token revocation {}: {}", member, e.getMessage());
+    }
+  }
+}
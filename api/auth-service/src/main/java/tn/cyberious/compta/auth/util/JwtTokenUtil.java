@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 import javax.crypto.SecretKey;
 import lombok.RequiredArgsConstructor;
@@ -64,6 +65,7 @@ public class JwtTokenUtil {
 
     return Jwts.builder()
         .claims(claims)
+        .id(UUID.randomUUID().toString())
         .subject(subject)
         .issuer(jwtProperties.getIssuer())
         .issuedAt(now)
@@ -76,6 +78,10 @@ public class JwtTokenUtil {
     return getClaimFromToken(token, Claims::getSubject);
   }
 
+  public String getTokenIdFromToken(String token) {
+    return getClaimFromToken(token, Claims::getId);
+  }
+
   public Date getExpirationDateFromToken(String token) {
     return getClaimFromToken(token, Claims::getExpiration);
   }
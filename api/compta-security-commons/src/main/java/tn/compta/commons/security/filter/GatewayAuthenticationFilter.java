@@ -8,7 +8,6 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.filter.OncePerRequestFilter;
 import tn.compta.commons.security.context.SecurityContext;
@@ -26,7 +25,6 @@ import tn.compta.commons.security.model.UserPermission;
  * <p>The extracted user details are stored in SecurityContextHolder for the request lifecycle.
  */
 @Slf4j
-@RequiredArgsConstructor
 public class GatewayAuthenticationFilter extends OncePerRequestFilter {
 
   private static final String HEADER_USER_ID = "X-User-Id";
@@ -38,12 +36,16 @@ public class GatewayAuthenticationFilter extends OncePerRequestFilter {
   private static final String HEADER_PERMISSIONS = "X-User-Permissions";
   private static final String HEADER_REQUEST_ID = "X-Request-Id";
 
-  private final List<String> publicPaths;
+  private final PathPatternTrie publicPaths;
 
   public GatewayAuthenticationFilter() {
     this(Arrays.asList("/actuator/**", "/v3/api-docs/**", "/swagger-ui/**"));
   }
 
+  public GatewayAuthenticationFilter(List<String> publicPaths) {
+    this.publicPaths = PathPatternTrie.compile(publicPaths);
+  }
+
   @Override
   protected void doFilterInternal(
       HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -99,23 +101,7 @@ public class GatewayAuthenticationFilter extends OncePerRequestFilter {
    */
   @Override
   protected boolean shouldNotFilter(HttpServletRequest request) {
-    String path = request.getRequestURI();
-    return publicPaths.stream().anyMatch(pattern -> matchesPattern(path, pattern));
-  }
-
-  /**
-   * Check if a path matches a pattern (supports ** wildcard).
-   *
-   * @param path the path
-   * @param pattern the pattern
-   * @return true if matches
-   */
-  private boolean matchesPattern(String path, String pattern) {
-    if (pattern.endsWith("/**")) {
-      String prefix = pattern.substring(0, pattern.length() - 3);
-      return path.startsWith(prefix);
-    }
-    return path.equals(pattern);
+    return publicPaths.matches(request.getRequestURI());
   }
 
   /**
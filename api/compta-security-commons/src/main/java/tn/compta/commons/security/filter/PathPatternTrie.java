@@ -0,0 +1,129 @@
+package tn.compta.commons.security.filter;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Precompiled segment trie for Ant-style path patterns.
+ *
+ * <p>Supports literal segments, {@code *} (exactly one segment) and a trailing {@code **} (zero or
+ * more segments). The trie is built once from the configured public paths; {@link
+ * #matches(String)} walks the request path in place and allocates nothing.
+ *
+ * <p>Same matching rules as the gateway's public endpoint matcher, so a path that the gateway lets
+ * through unauthenticated is also skipped here.
+ */
+public final class PathPatternTrie {
+
+  private final Node root = new Node();
+
+  private PathPatternTrie(Collection<String> patterns) {
+    for (String pattern : patterns) {
+      insert(pattern);
+    }
+  }
+
+  /**
+   * Compile patterns into a trie.
+   *
+   * @param patterns the Ant-style patterns
+   * @return the compiled matcher
+   */
+  public static PathPatternTrie compile(Collection<String> patterns) {
+    return new PathPatternTrie(patterns);
+  }
+
+  /**
+   * Check if a request path (without query string) matches one of the patterns.
+   *
+   * @param path the request path
+   * @return true if matches
+   */
+  public boolean matches(String path) {
+    if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+      return false;
+    }
+    return match(root, path, 1);
+  }
+
+  private static boolean match(Node node, String path, int start) {
+    if (node.catchAll) {
+      return true;
+    }
+    if (start > path.length()) {
+      return node.terminal;
+    }
+
+    int end = path.indexOf('/', start);
+    if (end < 0) {
+      end = path.length();
+    }
+    int length = end - start;
+
+    String[] segments = node.segments;
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      if (segment.length() == length
+          && path.regionMatches(start, segment, 0, length)
+          && match(node.children[i], path, end + 1)) {
+        return true;
+      }
+    }
+    return node.wildcard != null && length > 0 && match(node.wildcard, path, end + 1);
+  }
+
+  private void insert(String pattern) {
+    if (pattern == null || !pattern.startsWith("/")) {
+      throw new IllegalArgumentException("Path pattern must start with '/': " + pattern);
+    }
+
+    String[] parts = pattern.substring(1).split("/", -1);
+    Node node = root;
+    for (int i = 0; i < parts.length; i++) {
+      String part = parts[i];
+      if ("**".equals(part)) {
+        if (i != parts.length - 1) {
+          throw new IllegalArgumentException(
+              "'**' is only supported as the last segment: " + pattern);
+        }
+        node.catchAll = true;
+        return;
+      }
+      if (part.indexOf('*') >= 0 && !"*".equals(part)) {
+        throw new IllegalArgumentException("Partial wildcards are not supported: " + pattern);
+      }
+      node = "*".equals(part) ? node.wildcard() : node.child(part);
+    }
+    node.terminal = true;
+  }
+
+  private static final class Node {
+
+    private String[] segments = new String[0];
+    private Node[] children = new Node[0];
+    private Node wildcard;
+    private boolean terminal;
+    private boolean catchAll;
+
+    private Node child(String segment) {
+      for (int i = 0; i < segments.length; i++) {
+        if (segments[i].equals(segment)) {
+          return children[i];
+        }
+      }
+      Node child = new Node();
+      segments = Arrays.copyOf(segments, segments.length + 1);
+      children = Arrays.copyOf(children, children.length + 1);
+      segments[segments.length - 1] = segment;
+      children[children.length - 1] = child;
+      return child;
+    }
+
+    private Node wildcard() {
+      if (wildcard == null) {
+        wildcard = new Node();
+      }
+      return wildcard;
+    }
+  }
+}
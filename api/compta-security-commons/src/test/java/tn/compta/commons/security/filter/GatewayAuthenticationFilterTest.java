@@ -68,4 +68,11 @@ class GatewayAuthenticationFilterTest {
 
     assertFalse(filter.shouldNotFilter(request));
   }
+
+  @Test
+  void shouldNotFilter_whenPathOnlySharesPrefix_returnsFalse() throws Exception {
+    when(request.getRequestURI()).thenReturn("/actuatorx/env");
+
+    assertFalse(filter.shouldNotFilter(request));
+  }
 }
@@ -0,0 +1,178 @@
+package tn.compta.gateway.cache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A downstream response captured by the gateway (response cache, request coalescing).
+ *
+ * Only end-to-end headers describing the representation are kept; framing, caching and
+ * cookie headers are recomputed or dropped when the entry is served. CORS headers and
+ * {@code Vary} are left to the filters of the request being served: an entry stored for one
+ * {@code Origin} must not carry that origin to another. {@code etag} is the
+ * downstream validator when {@code upstreamValidator} is true, otherwise a weak ETag
+ * computed from the body (usable by clients, not for revalidation against the service).
+ */
+public record CachedResponse(
+    int status,
+    HttpHeaders headers,
+    byte[] body,
+    String etag,
+    boolean upstreamValidator,
+    long storedAtMillis
+) {
+
+  private static final int FORMAT = 1;
+
+  /**
+   * Headers that must not be replayed from a stored response.
+   */
+  private static final Set<String> EXCLUDED_HEADERS = Set.of(
+      "content-length", "transfer-encoding", "connection", "keep-alive", "date", "age",
+      "set-cookie", "cache-control", "pragma", "expires", "etag", "warning", "vary");
+
+  private static final String CORS_HEADER_PREFIX = "access-control-";
+
+  public static CachedResponse of(int status, HttpHeaders responseHeaders, byte[] body, long nowMillis) {
+    HttpHeaders headers = new HttpHeaders();
+    responseHeaders.forEach((name, values) -> {
+      String lowerCase = name.toLowerCase();
+      if (!EXCLUDED_HEADERS.contains(lowerCase) && !lowerCase.startsWith(CORS_HEADER_PREFIX)) {
+        headers.put(name, List.copyOf(values));
+      }
+    });
+    String upstreamEtag = responseHeaders.getETag();
+    return new CachedResponse(status, headers, body,
+        upstreamEtag != null ? upstreamEtag : weakEtag(body), upstreamEtag != null, nowMillis);
+  }
+
+  public boolean isFresh(long ttlMillis, long nowMillis) {
+    return nowMillis - storedAtMillis < ttlMillis;
+  }
+
+  /**
+   * Same entry, confirmed unchanged by the service (304) at {@code nowMillis}.
+   */
+  public CachedResponse revalidated(long nowMillis) {
+    return new CachedResponse(status, headers, body, etag, upstreamValidator, nowMillis);
+  }
+
+  public long ageSeconds(long nowMillis) {
+    return Math.max(0, (nowMillis - storedAtMillis) / 1000);
+  }
+
+  /**
+   * Approximate heap footprint, used to bound the local cache by bytes.
+   */
+  public int weight() {
+    int weight = 128 + body.length + etag.length();
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      weight += header.getKey().length();
+      for (String value : header.getValue()) {
+        weight += value.length();
+      }
+    }
+    return weight;
+  }
+
+  /**
+   * Whether an {@code If-None-Match} request header matches this entry (weak comparison).
+   */
+  public boolean matches(String ifNoneMatch) {
+    if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+      return false;
+    }
+    String own = opaque(etag);
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if ("*".equals(tag) || opaque(tag).equals(own)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public byte[] toBytes() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 256);
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(FORMAT);
+      out.writeShort(status);
+      out.writeUTF(etag);
+      out.writeBoolean(upstreamValidator);
+      out.writeLong(storedAtMillis);
+      out.writeShort(headers.size());
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+        out.writeUTF(header.getKey());
+        out.writeShort(header.getValue().size());
+        for (String value : header.getValue()) {
+          out.writeUTF(value);
+        }
+      }
+      out.writeInt(body.length);
+      out.write(body);
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Decodes an entry written by {@link #toBytes()}, or returns null for an unknown format.
+   */
+  public static CachedResponse fromBytes(byte[] data, int offset) {
+    try {
+      DataInputStream in = new DataInputStream(
+          new ByteArrayInputStream(data, offset, data.length - offset));
+      if (in.readByte() != FORMAT) {
+        return null;
+      }
+      int status = in.readShort();
+      String etag = in.readUTF();
+      boolean upstreamValidator = in.readBoolean();
+      long storedAt = in.readLong();
+      HttpHeaders headers = new HttpHeaders();
+      int headerCount = in.readShort();
+      for (int i = 0; i < headerCount; i++) {
+        String name = in.readUTF();
+        int valueCount = in.readShort();
+        List<String> values = new ArrayList<>(valueCount);
+        for (int j = 0; j < valueCount; j++) {
+          values.add(in.readUTF());
+        }
+        headers.put(name, values);
+      }
+      byte[] body = new byte[in.readInt()];
+      in.readFully(body);
+      return new CachedResponse(status, headers, body, etag, upstreamValidator, storedAt);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String opaque(String tag) {
+    return tag.startsWith("W/") ? tag.substring(2) : tag;
+  }
+
+  private static String weakEtag(byte[] body) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+      return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -0,0 +1,303 @@
+package tn.compta.gateway.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.routing.StreamingRoutes;
+import tn.compta.gateway.security.GatewayClaims;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in response cache for GET requests of a route.
+ *
+ * Successful (200) responses of the configured {@code paths} are kept for {@code ttl-ms}
+ * in the {@link ResponseCacheStore}. The cache key contains the caller identity (subject
+ * and tenant of the verified token) and the {@code vary} request headers, so a response is
+ * only ever replayed to the user it was produced for. Downstream {@code Cache-Control} is not
+ * consulted: the services mark everything {@code no-store}, caching is decided per route here.
+ *
+ * Served responses carry an {@code ETag} (the service's, or a weak hash of the body) and
+ * {@code Cache-Control: private, no-cache}, so clients revalidate with
+ * {@code If-None-Match} and get a 304 from the gateway. After the TTL an entry with a
+ * service ETag is kept for {@code revalidate-window-ms} and revalidated with a conditional
+ * request: a 304 from the service refreshes it without transferring the body again.
+ *
+ * A successful request with one of the {@code invalidate-methods} on the route drops all
+ * its entries before the response is sent.
+ */
+@Slf4j
+@Component
+public class ResponseCacheGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+  private static final String CACHE_CONTROL = "private, no-cache";
+
+  private final ResponseCacheStore store;
+  private final MeterRegistry meterRegistry;
+
+  public ResponseCacheGatewayFilterFactory(ResponseCacheStore store, MeterRegistry meterRegistry) {
+    super(Config.class);
+    this.store = store;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "ResponseCache";
+  }
+
+  @Override
+  public GatewayFilter apply(Config config) {
+    RouteCache cache = new RouteCache(String.valueOf(config.getRouteId()), config);
+    log.info("Response cache enabled for route {}: paths {}, TTL {} ms",
+        cache.routeId, config.getPaths(), config.getTtlMs());
+
+    return (exchange, chain) -> {
+      HttpMethod method = exchange.getRequest().getMethod();
+      if (cache.invalidateMethods.contains(method.name())) {
+        exchange.getResponse().beforeCommit(() -> cache.invalidateIfSuccessful(exchange));
+        return chain.filter(exchange);
+      }
+      if (!HttpMethod.GET.equals(method) || StreamingRoutes.isStreaming(exchange)
+          || !cache.matches(exchange.getRequest())) {
+        return chain.filter(exchange);
+      }
+      return store.lookup(cache.routeId, cache.key(exchange), config.getTtlMs(), cache.retention)
+          .flatMap(lookup -> cache.handle(exchange, chain, lookup));
+    };
+  }
+
+  /**
+   * Writes a stored entry, or a 304 when the client already has it.
+   */
+  static Mono<Void> serve(ServerHttpResponse response, CachedResponse entry, String ifNoneMatch) {
+    long now = System.currentTimeMillis();
+    HttpHeaders headers = response.getHeaders();
+    headers.setETag(entry.etag());
+    headers.set(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+    headers.remove(HttpHeaders.PRAGMA);
+    headers.set(HttpHeaders.AGE, Long.toString(entry.ageSeconds(now)));
+
+    if (entry.matches(ifNoneMatch)) {
+      response.setStatusCode(HttpStatus.NOT_MODIFIED);
+      headers.remove(HttpHeaders.CONTENT_LENGTH);
+      return response.setComplete();
+    }
+    response.setStatusCode(HttpStatusCode.valueOf(entry.status()));
+    headers.putAll(entry.headers());
+    headers.setContentLength(entry.body().length);
+    return response.writeWith(Mono.just(response.bufferFactory().wrap(entry.body())));
+  }
+
+  /**
+   * Per-route cache settings and meters.
+   */
+  private final class RouteCache {
+
+    private final String routeId;
+    private final Config config;
+    private final List<PathPattern> patterns;
+    private final Set<String> invalidateMethods;
+    private final Duration retention;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidated;
+    private final Counter notModified;
+
+    private RouteCache(String routeId, Config config) {
+      this.routeId = routeId;
+      this.config = config;
+      this.patterns = config.getPaths().stream()
+          .map(PathPatternParser.defaultInstance::parse)
+          .toList();
+      this.invalidateMethods = config.getInvalidateMethods().stream()
+          .map(String::toUpperCase)
+          .collect(Collectors.toUnmodifiableSet());
+      this.retention = Duration.ofMillis(config.getTtlMs() + config.getRevalidateWindowMs());
+      this.hits = counter("hit");
+      this.misses = counter("miss");
+      this.revalidated = counter("revalidated");
+      this.notModified = counter("not_modified");
+    }
+
+    private Counter counter(String result) {
+      return Counter.builder("gateway.cache.requests")
+          .description("Cacheable GET requests by outcome")
+          .tag("route", routeId)
+          .tag("result", result)
+          .register(meterRegistry);
+    }
+
+    private boolean matches(ServerHttpRequest request) {
+      if (patterns.isEmpty()) {
+        return true;
+      }
+      PathContainer path = request.getPath().pathWithinApplication();
+      for (PathPattern pattern : patterns) {
+        if (pattern.matches(path)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private String key(ServerWebExchange exchange) {
+      ServerHttpRequest request = exchange.getRequest();
+      GatewayClaims claims = GatewayClaims.from(exchange);
+      List<String> parts = new ArrayList<>(4 + config.getVary().size());
+      parts.add(claims != null ? claims.subject() : "anonymous");
+      parts.add(claims != null ? claims.tenantId() : null);
+      parts.add(request.getPath().value());
+      parts.add(request.getURI().getRawQuery());
+      for (String header : config.getVary()) {
+        parts.add(String.join(",", request.getHeaders().getOrEmpty(header)));
+      }
+      return ResponseCacheStore.key(parts);
+    }
+
+    private Mono<Void> handle(ServerWebExchange exchange, GatewayFilterChain chain,
+        ResponseCacheStore.Lookup lookup) {
+      ServerHttpRequest request = exchange.getRequest();
+      String ifNoneMatch = request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+      CachedResponse entry = lookup.response();
+      boolean noCache = request.getHeaders().getCacheControl() != null
+          && request.getHeaders().getCacheControl().contains("no-cache");
+
+      if (entry != null && !noCache && entry.isFresh(config.getTtlMs(), System.currentTimeMillis())) {
+        (entry.matches(ifNoneMatch) ? notModified : hits).increment();
+        return serve(exchange.getResponse(), entry, ifNoneMatch);
+      }
+      misses.increment();
+
+      CachedResponse stale = entry != null && entry.upstreamValidator() ? entry : null;
+      ServerWebExchange forwarded = exchange;
+      if (stale != null) {
+        // Ask the service whether our copy is still current; the client's own
+        // validator is answered by the gateway once the outcome is known
+        forwarded = exchange.mutate()
+            .request(r -> r.headers(h -> h.set(HttpHeaders.IF_NONE_MATCH, stale.etag())))
+            .build();
+      }
+      CachingResponse response = new CachingResponse(exchange.getResponse(), lookup, stale, ifNoneMatch);
+      return chain.filter(forwarded.mutate().response(response).build());
+    }
+
+    private Mono<Void> invalidateIfSuccessful(ServerWebExchange exchange) {
+      HttpStatusCode status = exchange.getResponse().getStatusCode();
+      if (status == null || !status.is2xxSuccessful()) {
+        return Mono.empty();
+      }
+      log.debug("Invalidating response cache of route {} after {} {}",
+          routeId, exchange.getRequest().getMethod(), exchange.getRequest().getPath());
+      return store.invalidate(routeId);
+    }
+
+    /**
+     * Stores cacheable downstream responses, and turns a 304 to a revalidation request
+     * into the stored response.
+     */
+    private final class CachingResponse extends ResponseCapture {
+
+      private final ResponseCacheStore.Lookup lookup;
+      private final CachedResponse stale;
+      private final String ifNoneMatch;
+
+      private CachingResponse(ServerHttpResponse delegate, ResponseCacheStore.Lookup lookup,
+          CachedResponse stale, String ifNoneMatch) {
+        super(delegate, config.getMaxEntryBytes());
+        this.lookup = lookup;
+        this.stale = stale;
+        this.ifNoneMatch = ifNoneMatch;
+      }
+
+      @Override
+      protected boolean shouldCapture() {
+        HttpStatusCode status = getStatusCode();
+        HttpHeaders headers = getHeaders();
+        return status != null && status.value() == 200
+            && !headers.containsKey(HttpHeaders.SET_COOKIE)
+            && !headers.getVary().contains("*");
+      }
+
+      @Override
+      public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        HttpStatusCode status = getStatusCode();
+        if (stale != null && status != null && status.value() == HttpStatus.NOT_MODIFIED.value()) {
+          CachedResponse refreshed = stale.revalidated(System.currentTimeMillis());
+          store.put(lookup, refreshed, retention);
+          revalidated.increment();
+          return Flux.from(body)
+              .doOnNext(DataBufferUtils::release)
+              .then(Mono.defer(() -> serve(getDelegate(), refreshed, ifNoneMatch)));
+        }
+        if (shouldCapture()) {
+          getHeaders().set(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+          getHeaders().remove(HttpHeaders.PRAGMA);
+        }
+        return super.writeWith(body);
+      }
+
+      @Override
+      protected void onCaptured(byte[] body) {
+        store.put(lookup, CachedResponse.of(200, getHeaders(), body, System.currentTimeMillis()), retention);
+      }
+    }
+  }
+
+  @Data
+  public static class Config implements HasRouteId {
+
+    /**
+     * Path patterns whose GET responses are cached (all GETs of the route when empty).
+     */
+    private List<String> paths = new ArrayList<>();
+
+    private long ttlMs = 30_000;
+
+    /**
+     * How long an expired entry with a service ETag is kept for conditional revalidation.
+     */
+    private long revalidateWindowMs = 300_000;
+
+    private int maxEntryBytes = 256 * 1024;
+
+    /**
+     * Request headers that select a different representation and are part of the key.
+     */
+    private List<String> vary = new ArrayList<>(List.of(
+        HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE));
+
+    /**
+     * Methods whose successful responses invalidate every entry of the route.
+     */
+    private List<String> invalidateMethods = new ArrayList<>(List.of("POST", "PUT", "PATCH", "DELETE"));
+
+    private String routeId;
+  }
+}
@@ -0,0 +1,229 @@
+package tn.compta.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-level storage for cached responses.
+ *
+ * L1 is a local Caffeine cache bounded by bytes ({@code gateway.cache.l1-max-bytes}).
+ * L2 is an optional Redis copy ({@code gateway.cache.l2-enabled}) shared by all gateway
+ * instances, so a freshly started instance does not hit the services for reference data.
+ *
+ * Invalidation is per route. Locally a generation counter is part of the L1 key, so a
+ * write makes every previous entry of the route unreachable at once. In Redis each entry
+ * carries the route version it was written under ({@code response_cache.{route}.version},
+ * bumped on write) and is ignored when it no longer matches. Entries copied into the L1 of
+ * other instances stay until their TTL.
+ */
+@Slf4j
+@Component
+public class ResponseCacheStore {
+
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  });
+
+  /**
+   * L2 version unknown: the entry was found in L1 and is not written back to Redis.
+   */
+  private static final long NO_VERSION = -1;
+
+  private final Cache<String, Stored> local;
+  private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+  private final ReactiveRedisTemplate<String, byte[]> redis;
+  private final Duration l2Timeout;
+
+  public ResponseCacheStore(
+      MeterRegistry meterRegistry,
+      ObjectProvider<ReactiveRedisConnectionFactory> redisConnectionFactory,
+      @Value("${gateway.cache.l1-max-bytes:67108864}") long l1MaxBytes,
+      @Value("${gateway.cache.l2-enabled:false}") boolean l2Enabled,
+      @Value("${gateway.cache.l2-timeout-ms:50}") long l2TimeoutMs) {
+    this.local = Caffeine.newBuilder()
+        .maximumWeight(l1MaxBytes)
+        .weigher((String key, Stored stored) -> stored.response().weight())
+        .expireAfter(new RetentionExpiry())
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, local, "gateway.response-cache");
+
+    ReactiveRedisConnectionFactory factory = l2Enabled ? redisConnectionFactory.getIfAvailable() : null;
+    this.redis = factory != null
+        ? new ReactiveRedisTemplate<>(factory, RedisSerializationContext
+            .<String, byte[]>newSerializationContext(RedisSerializer.string())
+            .value(RedisSerializer.byteArray())
+            .build())
+        : null;
+    this.l2Timeout = Duration.ofMillis(l2TimeoutMs);
+    log.info("Response cache initialized (L1 max {} bytes, L2 Redis {})",
+        l1MaxBytes, redis != null ? "enabled" : "disabled");
+  }
+
+  /**
+   * Hashes the request identity into a key (the identity itself is never stored).
+   */
+  public static String key(List<String> parts) {
+    MessageDigest md = SHA_256.get();
+    md.reset();
+    for (String part : parts) {
+      md.update((part != null ? part : "").getBytes(StandardCharsets.UTF_8));
+      md.update((byte) 0);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest());
+  }
+
+  /**
+   * Looks an entry up in L1 then, unless L1 has a fresh copy, in L2.
+   */
+  public Mono<Lookup> lookup(String routeId, String key, long ttlMillis, Duration retention) {
+    String localKey = routeId + '|' + generation(routeId).get() + '|' + key;
+    Stored stored = local.getIfPresent(localKey);
+    CachedResponse fromL1 = stored != null ? stored.response() : null;
+    if (redis == null || (fromL1 != null && fromL1.isFresh(ttlMillis, System.currentTimeMillis()))) {
+      return Mono.just(new Lookup(routeId, localKey, key, NO_VERSION, fromL1));
+    }
+
+    return redis.opsForValue().multiGet(List.of(versionKey(routeId), entryKey(routeId, key)))
+        .timeout(l2Timeout)
+        .map(values -> {
+          long version = parseVersion(values.get(0));
+          CachedResponse fromL2 = decode(values.get(1), version);
+          if (fromL2 != null && (fromL1 == null || fromL2.storedAtMillis() > fromL1.storedAtMillis())) {
+            local.put(localKey, new Stored(fromL2, retention.toNanos()));
+            return new Lookup(routeId, localKey, key, version, fromL2);
+          }
+          return new Lookup(routeId, localKey, key, version, fromL1);
+        })
+        .onErrorResume(e -> {
+          log.debug("Response cache L2 lookup failed for route {}: {}", routeId, e.getMessage());
+          return Mono.just(new Lookup(routeId, localKey, key, NO_VERSION, fromL1));
+        });
+  }
+
+  /**
+   * Stores a response under the key and versions captured by {@code lookup}, so that a
+   * response fetched before an invalidation is not visible after it.
+   */
+  public void put(Lookup lookup, CachedResponse response, Duration retention) {
+    local.put(lookup.localKey(), new Stored(response, retention.toNanos()));
+    if (redis == null || lookup.version() == NO_VERSION) {
+      return;
+    }
+    byte[] encoded = response.toBytes();
+    byte[] value = ByteBuffer.allocate(Long.BYTES + encoded.length)
+        .putLong(lookup.version())
+        .put(encoded)
+        .array();
+    redis.opsForValue().set(entryKey(lookup.routeId(), lookup.key()), value, retention)
+        .timeout(l2Timeout)
+        .subscribe(
+            ok -> { },
+            e -> log.debug("Response cache L2 write failed for route {}: {}", lookup.routeId(), e.getMessage()));
+  }
+
+  /**
+   * Drops every cached response of the route, locally and in Redis.
+   */
+  public Mono<Void> invalidate(String routeId) {
+    generation(routeId).incrementAndGet();
+    if (redis == null) {
+      return Mono.empty();
+    }
+    return redis.opsForValue().increment(versionKey(routeId))
+        .timeout(l2Timeout)
+        .doOnError(e -> log.warn("Response cache L2 invalidation failed for route {}: {}", routeId, e.getMessage()))
+        .onErrorResume(e -> Mono.empty())
+        .then();
+  }
+
+  private AtomicLong generation(String routeId) {
+    return generations.computeIfAbsent(routeId, id -> new AtomicLong());
+  }
+
+  private static String versionKey(String routeId) {
+    return "response_cache.{" + routeId + "}.version";
+  }
+
+  private static String entryKey(String routeId, String key) {
+    return "response_cache.{" + routeId + "}." + key;
+  }
+
+  private static long parseVersion(byte[] value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static CachedResponse decode(byte[] value, long currentVersion) {
+    if (value == null || value.length <= Long.BYTES) {
+      return null;
+    }
+    if (ByteBuffer.wrap(value).getLong() != currentVersion) {
+      return null;
+    }
+    return CachedResponse.fromBytes(value, Long.BYTES);
+  }
+
+  /**
+   * Result of a lookup: the entry if any, and the keys and versions to store a new one.
+   */
+  public record Lookup(String routeId, String localKey, String key, long version, CachedResponse response) {
+  }
+
+  private record Stored(CachedResponse response, long retainNanos) {
+  }
+
+  /**
+   * Keeps each entry for the retention of its route (TTL plus revalidation window).
+   */
+  private static final class RetentionExpiry implements Expiry<String, Stored> {
+
+    @Override
+    public long expireAfterCreate(String key, Stored value, long currentTime) {
+      return value.retainNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Stored value, long currentTime, long currentDuration) {
+      return value.retainNanos();
+    }
+
+    @Override
+    public long expireAfterRead(String key, Stored value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package tn.compta.gateway.cache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Response decorator that copies the body while it streams to the client.
+ *
+ * The response is never delayed: each buffer is copied and passed on as is. When the body
+ * completes within {@code maxBytes}, the copy is handed to {@link #onCaptured}; larger bodies
+ * are simply not captured. Streaming responses ({@code writeAndFlushWith}) are not captured.
+ */
+public abstract class ResponseCapture extends ServerHttpResponseDecorator {
+
+  private final int maxBytes;
+
+  protected ResponseCapture(ServerHttpResponse delegate, int maxBytes) {
+    super(delegate);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Receives the complete body; status and headers are those of this response.
+   */
+  protected abstract void onCaptured(byte[] body);
+
+  /**
+   * Whether this response should be captured, checked once the status and headers are known.
+   */
+  protected boolean shouldCapture() {
+    return true;
+  }
+
+  @Override
+  public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+    if (!shouldCapture()) {
+      return super.writeWith(body);
+    }
+    Copy copy = new Copy();
+    Flux<? extends DataBuffer> tee = Flux.from(body)
+        .doOnNext(copy::append)
+        .doOnComplete(() -> {
+          byte[] captured = copy.toByteArray();
+          if (captured != null) {
+            onCaptured(captured);
+          }
+        });
+    return super.writeWith(tee);
+  }
+
+  private final class Copy {
+
+    private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private void append(DataBuffer buffer) {
+      if (bytes == null) {
+        return;
+      }
+      int length = buffer.readableByteCount();
+      if (bytes.size() + length > maxBytes) {
+        bytes = null;
+        return;
+      }
+      byte[] chunk = new byte[length];
+      // Copies without moving the read position: the buffer is still written downstream
+      buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(chunk), 0, length);
+      bytes.writeBytes(chunk);
+    }
+
+    private byte[] toByteArray() {
+      return bytes != null ? bytes.toByteArray() : null;
+    }
+  }
+}
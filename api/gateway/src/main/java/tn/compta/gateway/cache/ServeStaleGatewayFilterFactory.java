@@ -0,0 +1,304 @@
+package tn.compta.gateway.cache;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.routing.StreamingRoutes;
+import tn.compta.gateway.security.GatewayClaims;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR;
+
+/**
+ * Opt-in serve-stale-on-error for GET requests of a route.
+ *
+ * Successful (200) GET responses are copied, as they stream to the client, into the
+ * {@link StaleResponseStore}, keyed like the response cache (subject and tenant of the
+ * verified token, path, query and {@code vary} headers) and kept for {@code max-stale-ms}.
+ * When the service is unavailable - the circuit breaker is open or the call timed out, which
+ * routes the request to the breaker's fallback, or a 503/504 error without fallback - the
+ * last good copy is served instead, with {@code Age} and
+ * {@code Warning: 110 - "Response is Stale"}. Without a copy the failure goes through as is.
+ *
+ * Nothing is looked up on the success path, so healthy requests get no added latency.
+ * Must be declared before {@code CircuitBreaker} and {@code ResponseCache} to wrap them.
+ */
+@Slf4j
+@Component
+public class ServeStaleGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<ServeStaleGatewayFilterFactory.Config> {
+
+  static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+  private final StaleResponseStore store;
+  private final MeterRegistry meterRegistry;
+
+  public ServeStaleGatewayFilterFactory(StaleResponseStore store, MeterRegistry meterRegistry) {
+    super(Config.class);
+    this.store = store;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "ServeStale";
+  }
+
+  @Override
+  public GatewayFilter apply(Config config) {
+    RouteStale stale = new RouteStale(String.valueOf(config.getRouteId()), config);
+    log.info("Serve-stale enabled for route {}: max stale {} ms", stale.routeId, config.getMaxStaleMs());
+
+    return (exchange, chain) -> {
+      HttpMethod method = exchange.getRequest().getMethod();
+      if (stale.invalidateMethods.contains(method.name())) {
+        exchange.getResponse().beforeCommit(() -> {
+          HttpStatusCode status = exchange.getResponse().getStatusCode();
+          if (status != null && status.is2xxSuccessful()) {
+            store.invalidate(stale.routeId);
+          }
+          return Mono.empty();
+        });
+        return chain.filter(exchange);
+      }
+      if (!HttpMethod.GET.equals(method) || StreamingRoutes.isStreaming(exchange)
+          || !stale.matches(exchange.getRequest())) {
+        return chain.filter(exchange);
+      }
+      return stale.handle(exchange, chain);
+    };
+  }
+
+  /**
+   * Whether an error means the service could not answer: breaker open or timeout.
+   */
+  static boolean isUnavailable(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof CallNotPermittedException || cause instanceof TimeoutException) {
+        return true;
+      }
+      if (cause instanceof ResponseStatusException e
+          && (e.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value()
+          || e.getStatusCode().value() == HttpStatus.GATEWAY_TIMEOUT.value())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Per-route settings and meters.
+   */
+  private final class RouteStale {
+
+    private final String routeId;
+    private final Config config;
+    private final List<PathPattern> patterns;
+    private final Set<String> invalidateMethods;
+    private final Duration maxStale;
+    private final Counter served;
+    private final Counter missed;
+
+    private RouteStale(String routeId, Config config) {
+      this.routeId = routeId;
+      this.config = config;
+      this.patterns = config.getPaths().stream()
+          .map(PathPatternParser.defaultInstance::parse)
+          .toList();
+      this.invalidateMethods = config.getInvalidateMethods().stream()
+          .map(String::toUpperCase)
+          .collect(Collectors.toUnmodifiableSet());
+      this.maxStale = Duration.ofMillis(config.getMaxStaleMs());
+      this.served = counter("served");
+      this.missed = counter("miss");
+    }
+
+    private Counter counter(String result) {
+      return Counter.builder("gateway.stale.requests")
+          .description("GET requests that failed upstream, by whether a stale copy was served")
+          .tag("route", routeId)
+          .tag("result", result)
+          .register(meterRegistry);
+    }
+
+    private boolean matches(ServerHttpRequest request) {
+      if (patterns.isEmpty()) {
+        return true;
+      }
+      PathContainer path = request.getPath().pathWithinApplication();
+      for (PathPattern pattern : patterns) {
+        if (pattern.matches(path)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private String key(ServerWebExchange exchange) {
+      ServerHttpRequest request = exchange.getRequest();
+      GatewayClaims claims = GatewayClaims.from(exchange);
+      List<String> parts = new ArrayList<>(4 + config.getVary().size());
+      parts.add(claims != null ? claims.subject() : "anonymous");
+      parts.add(claims != null ? claims.tenantId() : null);
+      parts.add(request.getPath().value());
+      parts.add(request.getURI().getRawQuery());
+      for (String header : config.getVary()) {
+        parts.add(String.join(",", request.getHeaders().getOrEmpty(header)));
+      }
+      return ResponseCacheStore.key(parts);
+    }
+
+    private Mono<Void> handle(ServerWebExchange exchange, GatewayFilterChain chain) {
+      String key = key(exchange);
+      StaleAwareResponse response = new StaleAwareResponse(exchange, key);
+      return chain.filter(exchange.mutate().response(response).build())
+          .onErrorResume(
+              error -> isUnavailable(error) && !exchange.getResponse().isCommitted(),
+              error -> {
+                CachedResponse entry = lookup(key);
+                if (entry == null) {
+                  return Mono.error(error);
+                }
+                log.debug("Serving stale response for {} on route {} after {}",
+                    exchange.getRequest().getPath(), routeId, error.toString());
+                return serve(exchange.getResponse(), entry, exchange);
+              });
+    }
+
+    private CachedResponse lookup(String key) {
+      CachedResponse entry = store.get(routeId, key);
+      (entry != null ? served : missed).increment();
+      return entry;
+    }
+
+    private Mono<Void> serve(ServerHttpResponse response, CachedResponse entry, ServerWebExchange exchange) {
+      response.getHeaders().set(HttpHeaders.WARNING, STALE_WARNING);
+      return ResponseCacheGatewayFilterFactory.serve(response, entry,
+          exchange.getRequest().getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    /**
+     * Copies good responses into the store, and replaces the breaker's fallback response
+     * with the stale copy when there is one.
+     */
+    private final class StaleAwareResponse extends ResponseCapture {
+
+      private final ServerWebExchange exchange;
+      private final String key;
+
+      private StaleAwareResponse(ServerWebExchange exchange, String key) {
+        super(exchange.getResponse(), config.getMaxEntryBytes());
+        this.exchange = exchange;
+        this.key = key;
+      }
+
+      @Override
+      protected boolean shouldCapture() {
+        HttpStatusCode status = getStatusCode();
+        HttpHeaders headers = getHeaders();
+        return status != null && status.value() == 200
+            && !headers.containsKey(HttpHeaders.WARNING)
+            && !headers.containsKey(HttpHeaders.SET_COOKIE)
+            && !headers.getVary().contains("*");
+      }
+
+      @Override
+      public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        if (isFallback()) {
+          CachedResponse entry = lookup(key);
+          if (entry != null) {
+            log.debug("Serving stale response for {} on route {} instead of the fallback",
+                exchange.getRequest().getPath(), routeId);
+            return Flux.from(body)
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.defer(() -> serve(getDelegate(), entry, exchange)));
+          }
+        }
+        return super.writeWith(body);
+      }
+
+      private boolean isFallback() {
+        HttpStatusCode status = getStatusCode();
+        return status != null && status.is5xxServerError()
+            && exchange.getAttribute(CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR) != null;
+      }
+
+      @Override
+      protected void onCaptured(byte[] body) {
+        // A response served from the response cache is as old as its Age says
+        long now = System.currentTimeMillis();
+        long age = parseAge(getHeaders().getFirst(HttpHeaders.AGE));
+        store.put(routeId, key, CachedResponse.of(200, getHeaders(), body, now - age * 1000), maxStale);
+      }
+    }
+  }
+
+  private static long parseAge(String age) {
+    if (age == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(age.trim()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  @Data
+  public static class Config implements HasRouteId {
+
+    /**
+     * Path patterns whose GET responses may be served stale (all GETs of the route when empty).
+     */
+    private List<String> paths = new ArrayList<>();
+
+    /**
+     * How long after it was produced a response may still be served.
+     */
+    private long maxStaleMs = 300_000;
+
+    private int maxEntryBytes = 256 * 1024;
+
+    /**
+     * Request headers that select a different representation and are part of the key.
+     */
+    private List<String> vary = new ArrayList<>(List.of(
+        HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE));
+
+    /**
+     * Methods whose successful responses drop every stale copy of the route.
+     */
+    private List<String> invalidateMethods = new ArrayList<>(List.of("POST", "PUT", "PATCH", "DELETE"));
+
+    private String routeId;
+  }
+}
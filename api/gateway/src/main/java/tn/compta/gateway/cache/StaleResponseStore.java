@@ -0,0 +1,103 @@
+package tn.compta.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last good GET responses, served by {@code ServeStale} when a service is unavailable.
+ *
+ * Local only and bounded by bytes ({@code gateway.stale.max-bytes}); each entry lives for
+ * the {@code max-stale-ms} of its route. Like {@link ResponseCacheStore}, a generation counter
+ * in the key drops every entry of a route at once after a successful write.
+ */
+@Slf4j
+@Component
+public class StaleResponseStore {
+
+  private final Cache<String, Stored> entries;
+  private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+  @Autowired
+  public StaleResponseStore(
+      MeterRegistry meterRegistry,
+      @Value("${gateway.stale.max-bytes:33554432}") long maxBytes) {
+    this(meterRegistry, maxBytes, Ticker.systemTicker());
+  }
+
+  StaleResponseStore(MeterRegistry meterRegistry, long maxBytes, Ticker ticker) {
+    this.entries = Caffeine.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher((String key, Stored stored) -> stored.response().weight())
+        .expireAfter(new MaxStaleExpiry())
+        .ticker(ticker)
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, entries, "gateway.stale-cache");
+    log.info("Stale response store initialized (max {} bytes)", maxBytes);
+  }
+
+  public CachedResponse get(String routeId, String key) {
+    Stored stored = entries.getIfPresent(localKey(routeId, key));
+    return stored != null ? stored.response() : null;
+  }
+
+  /**
+   * Keeps {@code response} for {@code maxStale} after it was produced.
+   */
+  public void put(String routeId, String key, CachedResponse response, Duration maxStale) {
+    long remaining = maxStale.toNanos()
+        - Duration.ofMillis(Math.max(0, System.currentTimeMillis() - response.storedAtMillis())).toNanos();
+    if (remaining > 0) {
+      entries.put(localKey(routeId, key), new Stored(response, remaining));
+    }
+  }
+
+  /**
+   * Drops every entry of the route.
+   */
+  public void invalidate(String routeId) {
+    generation(routeId).incrementAndGet();
+  }
+
+  private String localKey(String routeId, String key) {
+    return routeId + '|' + generation(routeId).get() + '|' + key;
+  }
+
+  private AtomicLong generation(String routeId) {
+    return generations.computeIfAbsent(routeId, id -> new AtomicLong());
+  }
+
+  private record Stored(CachedResponse response, long retainNanos) {
+  }
+
+  private static final class MaxStaleExpiry implements Expiry<String, Stored> {
+
+    @Override
+    public long expireAfterCreate(String key, Stored value, long currentTime) {
+      return value.retainNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Stored value, long currentTime, long currentDuration) {
+      return value.retainNanos();
+    }
+
+    @Override
+    public long expireAfterRead(String key, Stored value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package tn.compta.gateway.coalescing;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Identical requests currently in flight to the downstream of one route.
+ *
+ * The first request for a key becomes the leader and performs the call; requests for the
+ * same key arriving before it finishes wait for its result, up to {@code maxWaiters} per key.
+ * A leader that ends without a shareable result (body too large, error, cancellation)
+ * releases its waiters with an empty result, and they perform their own call.
+ *
+ * @param <T> the shared result
+ */
+public final class InflightRequests<T> {
+
+  private final Map<String, Flight<T>> flights = new ConcurrentHashMap<>();
+  private final int maxWaiters;
+
+  public InflightRequests(int maxWaiters) {
+    this.maxWaiters = maxWaiters;
+  }
+
+  /**
+   * Joins the flight for {@code key}, starting it when there is none.
+   */
+  public Joined<T> join(String key) {
+    Flight<T> flight = new Flight<>(maxWaiters);
+    Flight<T> existing = flights.putIfAbsent(key, flight);
+    return existing == null ? new Joined<>(flight, true) : new Joined<>(existing, false);
+  }
+
+  /**
+   * Ends the leader's flight: later requests for the key start a new one, and waiters still
+   * without a result are released empty.
+   */
+  public void finish(String key, Flight<T> flight) {
+    flights.remove(key, flight);
+    flight.result.tryEmitEmpty();
+  }
+
+  public int size() {
+    return flights.size();
+  }
+
+  public record Joined<T>(Flight<T> flight, boolean leader) {
+  }
+
+  /**
+   * One downstream call shared by identical requests.
+   */
+  public static final class Flight<T> {
+
+    private final Sinks.One<T> result = Sinks.one();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final int maxWaiters;
+
+    private Flight(int maxWaiters) {
+      this.maxWaiters = maxWaiters;
+    }
+
+    /**
+     * Publishes the leader's result to current and future waiters.
+     */
+    public void complete(T value) {
+      result.tryEmitValue(value);
+    }
+
+    /**
+     * Reserves a waiter slot, or returns false when the flight already has {@code maxWaiters}.
+     */
+    public boolean tryAddWaiter() {
+      if (waiters.incrementAndGet() > maxWaiters) {
+        waiters.decrementAndGet();
+        return false;
+      }
+      return true;
+    }
+
+    /**
+     * Waits for the leader's result with a slot reserved by {@link #tryAddWaiter()}.
+     * Completes empty when the leader ends without a result or after {@code maxWait}.
+     */
+    public Mono<T> await(Duration maxWait) {
+      return result.asMono()
+          .timeout(maxWait, Mono.empty())
+          .doFinally(signal -> waiters.decrementAndGet());
+    }
+
+    public int getWaiters() {
+      return waiters.get();
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package tn.compta.gateway.coalescing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.cache.CachedResponse;
+import tn.compta.gateway.cache.ResponseCapture;
+import tn.compta.gateway.routing.StreamingRoutes;
+import tn.compta.gateway.security.GatewayClaims;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collapses identical concurrent GET requests of a route into one downstream call.
+ *
+ * Requests are identical when they have the same path, query, {@code vary} and conditional
+ * headers, and the same identity at the configured {@code scope}: {@code USER} (token
+ * subject and tenant, the default) or {@code TENANT} (every user of a societe shares the
+ * call; only for endpoints whose response depends on the societe alone).
+ *
+ * The first request is proxied normally; identical requests arriving while it is in flight
+ * wait for its response and get a copy of it. Nothing is kept once the response is
+ * complete, so unlike {@code ResponseCache} this never serves a stale response. Memory is
+ * bounded by {@code max-body-bytes} per shared response and {@code max-waiters} per key;
+ * a response over the size limit or with {@code Set-Cookie} is not shared, and its waiters
+ * (like those beyond the cap) call the service themselves.
+ *
+ * Declare it before {@code AdaptiveConcurrencyLimit} so that waiters do not hold
+ * concurrency slots.
+ */
+@Slf4j
+@Component
+public class RequestCoalescingGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<RequestCoalescingGatewayFilterFactory.Config> {
+
+  public enum Scope {
+    USER,
+    TENANT
+  }
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, InflightRequests<CachedResponse>> routes = new ConcurrentHashMap<>();
+
+  public RequestCoalescingGatewayFilterFactory(MeterRegistry meterRegistry) {
+    super(Config.class);
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "RequestCoalescing";
+  }
+
+  @Override
+  public GatewayFilter apply(Config config) {
+    String routeId = String.valueOf(config.getRouteId());
+    InflightRequests<CachedResponse> inflight = new InflightRequests<>(config.getMaxWaiters());
+
+    // Routes are rebuilt on refresh: the gauge reads the current instance of the route
+    if (routes.put(routeId, inflight) == null) {
+      Gauge.builder("gateway.coalescing.inflight", routes, map -> {
+            InflightRequests<CachedResponse> current = map.get(routeId);
+            return current != null ? current.size() : Double.NaN;
+          })
+          .description("Distinct GET requests in flight with coalescing")
+          .tag("route", routeId)
+          .register(meterRegistry);
+    }
+    Counter leaders = counter(routeId, "leader");
+    Counter shared = counter(routeId, "shared");
+    Counter overflow = counter(routeId, "overflow");
+    Counter fallback = counter(routeId, "fallback");
+    Duration maxWait = Duration.ofMillis(config.getMaxWaitMs());
+
+    log.info("Request coalescing enabled for route {} (scope {}, max {} waiters per request)",
+        routeId, config.getScope(), config.getMaxWaiters());
+
+    return (exchange, chain) -> {
+      if (!HttpMethod.GET.equals(exchange.getRequest().getMethod()) || StreamingRoutes.isStreaming(exchange)) {
+        return chain.filter(exchange);
+      }
+      String key = key(exchange, config);
+      InflightRequests.Joined<CachedResponse> joined = inflight.join(key);
+      InflightRequests.Flight<CachedResponse> flight = joined.flight();
+
+      if (joined.leader()) {
+        leaders.increment();
+        return chain.filter(exchange.mutate().response(new SharedResponse(exchange.getResponse(), flight, config)).build())
+            .doFinally(signal -> inflight.finish(key, flight));
+      }
+      if (!flight.tryAddWaiter()) {
+        overflow.increment();
+        return chain.filter(exchange);
+      }
+      return flight.await(maxWait)
+          .flatMap(response -> {
+            shared.increment();
+            return write(exchange.getResponse(), response).thenReturn(true);
+          })
+          .switchIfEmpty(Mono.defer(() -> {
+            fallback.increment();
+            return proceed(exchange, chain);
+          }))
+          .then();
+    };
+  }
+
+  private static Mono<Boolean> proceed(ServerWebExchange exchange, GatewayFilterChain chain) {
+    return chain.filter(exchange).thenReturn(false);
+  }
+
+  private static String key(ServerWebExchange exchange, Config config) {
+    ServerHttpRequest request = exchange.getRequest();
+    HttpHeaders headers = request.getHeaders();
+    GatewayClaims claims = GatewayClaims.from(exchange);
+
+    StringBuilder key = new StringBuilder(128);
+    if (claims == null) {
+      key.append("anonymous");
+    } else if (config.getScope() == Scope.TENANT && claims.tenantId() != null) {
+      key.append("tenant:").append(claims.tenantId());
+    } else {
+      key.append("user:").append(claims.subject()).append('/').append(claims.tenantId());
+    }
+    key.append('\n').append(request.getPath().value());
+    key.append('?').append(request.getURI().getRawQuery());
+    for (String header : config.getVary()) {
+      key.append('\n').append(headers.getOrEmpty(header));
+    }
+    // A 304 answered to a conditional request must not reach an unconditional one
+    key.append('\n').append(headers.getOrEmpty(HttpHeaders.IF_NONE_MATCH));
+    key.append('\n').append(headers.getOrEmpty(HttpHeaders.IF_MODIFIED_SINCE));
+    return key.toString();
+  }
+
+  private static Mono<Void> write(ServerHttpResponse response, CachedResponse shared) {
+    response.setStatusCode(HttpStatusCode.valueOf(shared.status()));
+    HttpHeaders headers = response.getHeaders();
+    headers.putAll(shared.headers());
+    if (shared.upstreamValidator()) {
+      headers.setETag(shared.etag());
+    }
+    headers.setContentLength(shared.body().length);
+    return response.writeWith(Mono.just(response.bufferFactory().wrap(shared.body())));
+  }
+
+  private Counter counter(String routeId, String result) {
+    return Counter.builder("gateway.coalescing.requests")
+        .description("Coalescable GET requests by outcome")
+        .tag("route", routeId)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * The leader's response: published to the waiters once complete.
+   */
+  private static final class SharedResponse extends ResponseCapture {
+
+    private final InflightRequests.Flight<CachedResponse> flight;
+
+    private SharedResponse(ServerHttpResponse delegate, InflightRequests.Flight<CachedResponse> flight,
+        Config config) {
+      super(delegate, config.getMaxBodyBytes());
+      this.flight = flight;
+    }
+
+    @Override
+    protected boolean shouldCapture() {
+      return getStatusCode() != null && !getHeaders().containsKey(HttpHeaders.SET_COOKIE);
+    }
+
+    @Override
+    protected void onCaptured(byte[] body) {
+      flight.complete(CachedResponse.of(getStatusCode().value(), getHeaders(), body, System.currentTimeMillis()));
+    }
+  }
+
+  @Data
+  public static class Config implements HasRouteId {
+
+    private Scope scope = Scope.USER;
+
+    private int maxWaiters = 100;
+
+    private int maxBodyBytes = 1024 * 1024;
+
+    /**
+     * How long a waiter waits for the shared response before calling the service itself.
+     */
+    private long maxWaitMs = 10_000;
+
+    /**
+     * Request headers that select a different representation and are part of the key.
+     */
+    private List<String> vary = new ArrayList<>(List.of(
+        HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE));
+
+    private String routeId;
+  }
+}
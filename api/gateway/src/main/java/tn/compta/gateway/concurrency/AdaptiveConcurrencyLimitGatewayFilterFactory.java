@@ -0,0 +1,161 @@
+package tn.compta.gateway.concurrency;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.exception.GatewayOverloadedException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR;
+
+/**
+ * Adaptive per-route concurrency limit.
+ *
+ * Caps the number of requests in flight to the route's downstream with a {@link GradientLimit}
+ * that follows observed RTT: when the service slows down the limit shrinks, so excess load is
+ * shed at the gateway (503 + Retry-After) instead of queueing inside the service.
+ * Requests over the limit wait up to {@code max-wait-ms} in a queue of {@code max-queue}
+ * entries, or are rejected immediately when it is full.
+ *
+ * Place it before {@code CircuitBreaker} in the route's filters so that shed requests are not
+ * counted as downstream failures. Outcomes decided by the breaker (fallback, open circuit) say
+ * nothing about the downstream's RTT and are ignored: an open breaker answering fast 503s must
+ * not drive the limit down to {@code min-limit} for when the circuit closes again.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimitGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<AdaptiveConcurrencyLimitGatewayFilterFactory.Config> {
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+  public AdaptiveConcurrencyLimitGatewayFilterFactory(MeterRegistry meterRegistry) {
+    super(Config.class);
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "AdaptiveConcurrencyLimit";
+  }
+
+  @Override
+  public GatewayFilter apply(Config config) {
+    String routeId = String.valueOf(config.getRouteId());
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+        new GradientLimit(config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit()),
+        config.getMaxQueue(),
+        Duration.ofMillis(config.getMaxWaitMs()));
+
+    // Routes are rebuilt on refresh: meters read the current limiter of the route
+    if (limiters.put(routeId, limiter) == null) {
+      registerGauge("gateway.concurrency.limit", "Current adaptive concurrency limit",
+          routeId, AdaptiveConcurrencyLimiter::getLimit);
+      registerGauge("gateway.concurrency.inflight", "Requests in flight to the downstream",
+          routeId, AdaptiveConcurrencyLimiter::getInflight);
+      registerGauge("gateway.concurrency.waiting", "Requests waiting for a concurrency slot",
+          routeId, AdaptiveConcurrencyLimiter::getWaiting);
+    }
+    Counter rejected = Counter.builder("gateway.concurrency.rejected")
+        .description("Requests shed by the adaptive concurrency limit")
+        .tag("route", routeId)
+        .register(meterRegistry);
+
+    log.info("Adaptive concurrency limit for route {}: initial {}, bounds {}..{}, queue {} / {}ms",
+        routeId, config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+        config.getMaxQueue(), config.getMaxWaitMs());
+
+    return (exchange, chain) -> limiter.acquire()
+        .switchIfEmpty(Mono.defer(() -> {
+          rejected.increment();
+          log.debug("Concurrency limit {} reached for route {}", limiter.getLimit(), routeId);
+          return Mono.error(new GatewayOverloadedException(
+              "Concurrency limit reached for route " + routeId, config.getRetryAfterSeconds()));
+        }))
+        .flatMap(permit -> chain.filter(exchange)
+            .doOnSuccess(v -> {
+              if (isBreakerOutcome(exchange, null)) {
+                permit.onIgnore();
+              } else if (isDropped(exchange)) {
+                permit.onDropped();
+              } else {
+                permit.onSuccess();
+              }
+            })
+            .doOnError(e -> {
+              if (isBreakerOutcome(exchange, e)) {
+                permit.onIgnore();
+              } else {
+                permit.onDropped();
+              }
+            })
+            .doOnCancel(permit::onIgnore));
+  }
+
+  /**
+   * Gateway errors and timeouts mean the downstream could not keep up.
+   */
+  private static boolean isDropped(ServerWebExchange exchange) {
+    HttpStatusCode status = exchange.getResponse().getStatusCode();
+    return status != null && (status.value() == 502 || status.value() == 503 || status.value() == 504);
+  }
+
+  /**
+   * The response came from the circuit breaker (fallback or open circuit), not the downstream.
+   */
+  private static boolean isBreakerOutcome(ServerWebExchange exchange, Throwable error) {
+    if (exchange.getAttribute(CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR) != null) {
+      return true;
+    }
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof CallNotPermittedException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void registerGauge(String name, String description, String routeId,
+      ToIntFunction<AdaptiveConcurrencyLimiter> value) {
+    Gauge.builder(name, limiters, map -> {
+          AdaptiveConcurrencyLimiter limiter = map.get(routeId);
+          return limiter != null ? value.applyAsInt(limiter) : Double.NaN;
+        })
+        .description(description)
+        .tag("route", routeId)
+        .register(meterRegistry);
+  }
+
+  @Data
+  public static class Config implements HasRouteId {
+
+    private int initialLimit = 20;
+
+    private int minLimit = 2;
+
+    private int maxLimit = 200;
+
+    private int maxQueue = 50;
+
+    private long maxWaitMs = 50;
+
+    private long retryAfterSeconds = 1;
+
+    private String routeId;
+  }
+}
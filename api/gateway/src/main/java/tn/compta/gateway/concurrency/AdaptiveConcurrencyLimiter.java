@@ -0,0 +1,181 @@
+package tn.compta.gateway.concurrency;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking concurrency limiter for one route, sized by a {@link GradientLimit}.
+ *
+ * A request gets a {@link Permit} immediately while fewer than {@code limit} requests are in
+ * flight. Otherwise it waits in a bounded queue for at most {@code maxWait}, or is rejected
+ * at once when the queue is full. Every permit must be released exactly once.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+  private final GradientLimit limit;
+  private final int maxQueue;
+  private final Duration maxWait;
+
+  private final AtomicInteger inflight = new AtomicInteger();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+  public AdaptiveConcurrencyLimiter(GradientLimit limit, int maxQueue, Duration maxWait) {
+    this.limit = limit;
+    this.maxQueue = maxQueue;
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Emits a permit, or completes empty when the request must be rejected.
+   */
+  public Mono<Permit> acquire() {
+    return Mono.defer(() -> {
+      if (tryIncrement()) {
+        return Mono.just(new Permit());
+      }
+      if (maxQueue <= 0 || maxWait.isZero()) {
+        return Mono.empty();
+      }
+      if (waiting.incrementAndGet() > maxQueue) {
+        waiting.decrementAndGet();
+        return Mono.empty();
+      }
+
+      return Mono.<Permit>create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            sink.onCancel(waiter::abandon);
+            waiters.offer(waiter);
+            // A permit may have been released between the check and the enqueue
+            drain();
+          })
+          .timeout(maxWait, Mono.empty())
+          .doFinally(signal -> waiting.decrementAndGet());
+    });
+  }
+
+  public int getLimit() {
+    return limit.getLimit();
+  }
+
+  public int getInflight() {
+    return inflight.get();
+  }
+
+  public int getWaiting() {
+    return waiting.get();
+  }
+
+  /**
+   * Waiters still in the queue, granted or abandoned ones excluded.
+   */
+  int queuedWaiters() {
+    return waiters.size();
+  }
+
+  private boolean tryIncrement() {
+    while (true) {
+      int current = inflight.get();
+      if (current >= limit.getLimit()) {
+        return false;
+      }
+      if (inflight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void drain() {
+    while (!waiters.isEmpty() && tryIncrement()) {
+      Waiter waiter = waiters.poll();
+      if (waiter == null || !waiter.grant(new Permit())) {
+        // Queue emptied concurrently, or the waiter timed out: give the slot back
+        inflight.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * One admitted request. Report its outcome with exactly one of the release methods.
+   */
+  public final class Permit {
+
+    private final long startNanos = System.nanoTime();
+    private final int inflightAtStart = inflight.get();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * The downstream answered: its RTT feeds the limit.
+     */
+    public void onSuccess() {
+      release(System.nanoTime() - startNanos, false, true);
+    }
+
+    /**
+     * The downstream timed out or was unavailable: the limit backs off.
+     */
+    public void onDropped() {
+      release(0, true, true);
+    }
+
+    /**
+     * The outcome says nothing about downstream health (e.g. client cancelled).
+     */
+    public void onIgnore() {
+      release(0, false, false);
+    }
+
+    private void release(long rttNanos, boolean dropped, boolean sample) {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      if (sample) {
+        limit.onSample(rttNanos, inflightAtStart, dropped);
+      }
+      inflight.decrementAndGet();
+      drain();
+    }
+  }
+
+  private final class Waiter {
+
+    private final MonoSink<Permit> sink;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile Permit permit;
+
+    private Waiter(MonoSink<Permit> sink) {
+      this.sink = sink;
+    }
+
+    private boolean grant(Permit granted) {
+      // Published before the CAS so that a concurrent abandon() always sees it
+      permit = granted;
+      if (!done.compareAndSet(false, true)) {
+        return false;
+      }
+      sink.success(granted);
+      return true;
+    }
+
+    /**
+     * Timed out or cancelled. The waiter leaves the queue; if a permit was granted
+     * concurrently it never reached the request, so it is released here.
+     */
+    private void abandon() {
+      if (done.compareAndSet(false, true)) {
+        waiters.remove(this);
+      } else {
+        Permit granted = permit;
+        if (granted != null) {
+          granted.onIgnore();
+        }
+      }
+    }
+  }
+}
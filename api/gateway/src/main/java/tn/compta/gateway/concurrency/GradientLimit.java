@@ -0,0 +1,83 @@
+package tn.compta.gateway.concurrency;
+
+/**
+ * Gradient concurrency limit driven by round-trip time.
+ *
+ * Compares each sample's RTT with a long-term average (the "no load" latency): while
+ * the downstream answers as fast as usual the limit grows by about {@code sqrt(limit)};
+ * when RTT rises the limit shrinks proportionally ({@code longRtt / rtt}, never below half).
+ * A dropped request (timeout, 503/504, connection error) cuts the limit by 10%
+ * (multiplicative decrease, AIMD style).
+ *
+ * Samples taken while less than half the limit is in use are ignored for growth: an idle
+ * route must not inflate its limit.
+ */
+public final class GradientLimit {
+
+  private static final double RTT_TOLERANCE = 1.5;
+  private static final double SMOOTHING = 0.2;
+  private static final double DROP_BACKOFF = 0.9;
+  private static final int LONG_WINDOW = 600;
+
+  private final int minLimit;
+  private final int maxLimit;
+
+  private double estimatedLimit;
+  private double longRttNanos;
+  private volatile int limit;
+
+  public GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Invalid concurrency limit bounds: " + minLimit + ".." + maxLimit);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.estimatedLimit = clamp(initialLimit);
+    this.limit = (int) estimatedLimit;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Updates the limit with one completed request.
+   *
+   * @param rttNanos round-trip time of the request
+   * @param inflight requests in flight when it started
+   * @param dropped whether the downstream failed to answer in time
+   */
+  public synchronized void onSample(long rttNanos, int inflight, boolean dropped) {
+    if (dropped) {
+      estimatedLimit = clamp(estimatedLimit * DROP_BACKOFF);
+      limit = (int) estimatedLimit;
+      return;
+    }
+    if (rttNanos <= 0) {
+      return;
+    }
+
+    if (longRttNanos == 0) {
+      longRttNanos = rttNanos;
+    } else {
+      longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+    }
+    // After a sustained latency drop, let the baseline catch up quickly
+    if (longRttNanos / rttNanos > 2) {
+      longRttNanos *= 0.95;
+    }
+
+    if (inflight < estimatedLimit / 2) {
+      return;
+    }
+
+    double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+    double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+    estimatedLimit = clamp(estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+    limit = (int) estimatedLimit;
+  }
+
+  private double clamp(double value) {
+    return Math.max(minLimit, Math.min(maxLimit, value));
+  }
+}
@@ -1,159 +1,148 @@
 package tn.compta.gateway.config;
 
 import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.source.RemoteJWKSource;
-import com.nimbusds.jose.jwk.source.URLJWKSource;
-import com.nimbusds.jose.proc.JWSAlgorithm;
-import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
 import jakarta.annotation.PostConstruct;
-import java.net.URL;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.text.ParseException;
+import java.util.Date;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.web.client.RestTemplate;
-import tn.compta.gateway.config.ProfileHelper;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.exception.GatewayOverloadedException;
+import tn.compta.gateway.security.JwksKeyManager;
+import tn.compta.gateway.security.SignatureVerificationScheduler;
+import tn.compta.gateway.security.VerifiedTokenCache;
 
 /**
  * Configuration pour la validation des tokens JWT RSA issus par le serveur OAuth2.
- * Le serveur OAuth2 expose les clés publiques via l'endpoint JWKS.
+ * Les clés publiques sont fournies par {@link JwksKeyManager} (endpoint JWKS du serveur OAuth2).
  */
 @Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class OAuth2TokenValidator {
 
-  private final ProfileHelper profileHelper;
-  private final RestTemplate restTemplate = new RestTemplate();
+  private final JwksKeyManager jwksKeyManager;
+  private final VerifiedTokenCache verifiedTokenCache;
+  private final SignatureVerificationScheduler verificationScheduler;
 
   @Value("${oauth2.issuer:http://localhost:9000}")
   private String oauth2Issuer;
 
-  @Value("${oauth2.jwks-cache-duration:300000}")
-  private Long jwksCacheDuration;
-
-  private RemoteJWKSource<SecurityContext> jwkSource;
-  private long lastJwksFetchTime = 0;
-  private JWKSet cachedJwkSet;
-
   @PostConstruct
   public void init() {
     log.info("Initializing OAuth2 JWT token validator...");
     log.info("OAuth2 Issuer: {}", oauth2Issuer);
-    log.info("JWKS Cache Duration: {} ms", jwksCacheDuration);
-    fetchJwks();
   }
 
   /**
-   * Récupère les clés JWKS depuis le serveur OAuth2
+   * Valide un token JWT RSA.
+   * Les tokens déjà vérifiés sont servis depuis le cache sans nouvelle vérification RSA.
+   * La résolution de la clé ne bloque jamais le thread appelant.
    */
-  @Scheduled(fixedRate = 300000) // Refresh every 5 minutes
-  public void refreshJwks() {
-    log.debug("Refreshing JWKS from OAuth2 server...");
-    fetchJwks();
-  }
+  public Mono<Boolean> validateToken(String token) {
+    String digest = verifiedTokenCache.digest(token);
+    if (verifiedTokenCache.get(digest) != null) {
+      log.debug("JWT token served from verified token cache");
+      return Mono.just(true);
+    }
 
-  private void fetchJwks() {
+    SignedJWT jwt;
     try {
-      String jwksUrl = oauth2Issuer + "/.well-known/jwks.json";
-      log.info("Fetching JWKS from: {}", jwksUrl);
-
-      URL url = new URL(jwksUrl);
-      RemoteJWKSource remoteJWKSource = new URLJWKSource(url);
-      remoteJWKSource.setConnectTimeout(5000); // 5 seconds timeout
-      remoteJWKSource.setReadTimeout(5000);
-
-      JWKSet jwkSet = remoteJWKSource.getJWKSet();
-      this.jwkSource = new RemoteJWKSource(url, jwkSet);
-      this.cachedJwkSet = jwkSet;
-      this.lastJwksFetchTime = System.currentTimeMillis();
-
-      log.info("JWKS fetched successfully. Keys: {}", jwkSet.getKeys().size());
-    } catch (Exception e) {
-      log.error("Failed to fetch JWKS from OAuth2 server: {}", e.getMessage(), e);
-      // Keep previous cache on error
+      log.debug("Validating JWT token...");
+      jwt = SignedJWT.parse(token);
+    } catch (ParseException e) {
+      log.warn("JWT validation failed: {}", e.getMessage());
+      return Mono.just(false);
     }
+    return verify(jwt, digest).hasElement();
   }
 
   /**
-   * Valide un token JWT RSA
+   * Vérifie un token RSA déjà parsé (algorithme, issuer, expiration, signature).
+   * Complète vide si le token est invalide ; le résultat valide est mis en cache.
    */
-  public boolean validateToken(String token) {
+  public Mono<JWTClaimsSet> verify(SignedJWT jwt, String digest) {
+    JWTClaimsSet claims;
     try {
-      log.debug("Validating JWT token...");
-
-      com.nimbusds.jose.jwt.JWT jwt = com.nimbusds.jose.jwt.JWT.parse(token);
-
-      // Vérifier l'algorithme (doit être RSA)
-      JWSAlgorithm algorithm = jwt.getHeader().getAlgorithm();
-      if (!algorithm.getName().startsWith("RS")) {
-        log.warn("Token is not signed with RSA algorithm: {}", algorithm.getName());
-        return false;
-      }
-
-      // Vérifier l'issuer
-      String issuer = jwt.getJWTClaimsSet().getIssuer();
-      if (!oauth2Issuer.equals(issuer)) {
-        log.warn("Token issuer mismatch. Expected: {}, Got: {}", oauth2Issuer, issuer);
-        return false;
-      }
+      claims = jwt.getJWTClaimsSet();
+    } catch (ParseException e) {
+      log.warn("JWT validation failed: {}", e.getMessage());
+      return Mono.empty();
+    }
 
-      // Vérifier l'expiration
-      long expirationTime = jwt.getJWTClaimsSet().getExpirationTime().getTime();
-      long currentTime = System.currentTimeMillis();
-      if (expirationTime < currentTime) {
-        log.warn("Token expired. Expiration: {}, Current: {}", expirationTime, currentTime);
-        return false;
-      }
+    // Vérifier l'algorithme (doit être RSA)
+    JWSAlgorithm algorithm = jwt.getHeader().getAlgorithm();
+    if (!algorithm.getName().startsWith("RS")) {
+      log.warn("Token is not signed with RSA algorithm: {}", algorithm.getName());
+      return Mono.empty();
+    }
 
-      // Vérifier la signature avec les clés JWKS
-      jwt.verify(jwkSource);
+    // Vérifier l'issuer
+    String issuer = claims.getIssuer();
+    if (!oauth2Issuer.equals(issuer)) {
+      log.warn("Token issuer mismatch. Expected: {}, Got: {}", oauth2Issuer, issuer);
+      return Mono.empty();
+    }
 
-      log.debug("JWT token validated successfully");
-      return true;
-    } catch (JOSEException e) {
-      log.error("JWT validation failed: {}", e.getMessage(), e);
-      return false;
+    // Vérifier l'expiration
+    Date expiration = claims.getExpirationTime();
+    long currentTime = System.currentTimeMillis();
+    if (expiration == null || expiration.getTime() < currentTime) {
+      log.warn("Token expired. Expiration: {}, Current: {}", expiration, currentTime);
+      return Mono.empty();
     }
+
+    // Vérifier la signature avec la clé JWKS correspondant au kid
+    // (vérification RSA hors des event loops, sur le scheduler dédié)
+    String keyId = jwt.getHeader().getKeyID();
+    return jwksKeyManager.getKey(keyId)
+        .switchIfEmpty(Mono.fromRunnable(() -> log.warn("No RSA key found in JWKS for kid: {}", keyId)))
+        .flatMap(rsaKey -> verificationScheduler.execute(
+            () -> verifySignature(jwt, rsaKey, digest, claims)))
+        .filter(Boolean::booleanValue)
+        .map(valid -> claims);
   }
 
-  /**
-   * Valide un token JWT sans lever d'exception
-   */
-  public boolean validateTokenSilent(String token) {
+  private boolean verifySignature(SignedJWT jwt, RSAKey rsaKey, String digest, JWTClaimsSet claims) {
     try {
-      return validateToken(token);
-    } catch (Exception e) {
-      log.error("Silent JWT validation failed: {}", e.getMessage());
+      if (!jwt.verify(new RSASSAVerifier(rsaKey))) {
+        log.warn("JWT signature verification failed for kid: {}", rsaKey.getKeyID());
+        return false;
+      }
+    } catch (JOSEException e) {
+      log.warn("JWT signature verification failed: {}", e.getMessage());
       return false;
     }
-  }
 
-  /**
-   * Récupère les clés JWKS en cache
-   */
-  public JWKSet getCachedJwkSet() {
-    return cachedJwkSet;
+    verifiedTokenCache.put(digest, rsaKey.getKeyID(), claims);
+    log.debug("JWT token validated successfully");
+    return true;
   }
 
   /**
-   * Vérifie si le cache JWKS est expiré
+   * Valide un token JWT sans lever d'exception
+   * (hors saturation du scheduler de vérification, propagée pour répondre 503).
    */
-  public boolean isJwksCacheExpired() {
-    long cacheAge = System.currentTimeMillis() - lastJwksFetchTime;
-    return cacheAge > jwksCacheDuration;
+  public Mono<Boolean> validateTokenSilent(String token) {
+    return Mono.defer(() -> validateToken(token))
+        .onErrorResume(e -> !(e instanceof GatewayOverloadedException), e -> {
+          log.error("Silent JWT validation failed: {}", e.getMessage());
+          return Mono.just(false);
+        });
   }
 
   /**
-   * Force le rafraîchissement du cache JWKS
+   * Force le rafraîchissement des clés JWKS (asynchrone)
    */
   public void forceRefreshJwks() {
     log.info("Forcing JWKS refresh...");
-    fetchJwks();
+    jwksKeyManager.refresh().subscribe(s -> { }, e -> { });
   }
 }
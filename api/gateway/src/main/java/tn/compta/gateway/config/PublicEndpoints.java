@@ -1,10 +1,9 @@
 package tn.compta.gateway.config;
 
-import java.util.List;
-
 /**
  * Shared public endpoints configuration.
- * Used by SecurityConfig and filters to maintain consistency.
+ * Used by SecurityConfig and filters to maintain consistency: {@link #PATTERNS} is the
+ * single source of truth, filters call {@link #isPublic(String)}.
  */
 public final class PublicEndpoints {
 
@@ -25,32 +24,13 @@ public final class PublicEndpoints {
       "/fallback/**"
   };
 
-  /**
-   * Exact paths that are public (no wildcard matching needed).
-   */
-  public static final List<String> EXACT_PATHS = List.of(
-      "/actuator/health",
-      "/actuator/info",
-      "/swagger-ui.html"
-  );
-
-  /**
-   * Path prefixes for filter checks (startsWith matching).
-   */
-  public static final List<String> PREFIXES = List.of(
-      "/auth/",
-      "/swagger-ui/",
-      "/v3/api-docs",
-      "/webjars/",
-      "/fallback/"
-  );
+  private static final PathPatternTrie MATCHER = PathPatternTrie.compile(PATTERNS);
 
   /**
    * Check if a path is a public endpoint.
-   * Uses exact match for specific paths, prefix match for others.
+   * Matches against {@link #PATTERNS} through a precompiled trie (no allocation per call).
    */
   public static boolean isPublic(String path) {
-    return EXACT_PATHS.contains(path)
-        || PREFIXES.stream().anyMatch(path::startsWith);
+    return MATCHER.matches(path);
   }
 }
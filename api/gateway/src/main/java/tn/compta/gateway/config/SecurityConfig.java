@@ -5,10 +5,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
-import org.springframework.security.oauth2.jwt.JwtValidators;
-import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
@@ -16,9 +14,11 @@ import org.springframework.security.oauth2.server.resource.authentication.Reacti
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
 import tn.compta.gateway.exception.JwtAuthenticationEntryPoint;
+import tn.compta.gateway.security.GatewayClaimsWebFilter;
+import tn.compta.gateway.security.GatewayJwtDecoder;
+import tn.compta.gateway.security.TokenRevocationList;
+import tn.compta.gateway.security.VerifiedTokenCache;
 
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -38,7 +38,9 @@ public class SecurityConfig {
   private String jwtIssuer;
 
   @Bean
-  public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+  public SecurityWebFilterChain securityWebFilterChain(
+      ServerHttpSecurity http,
+      ReactiveJwtDecoder jwtDecoder) {
     http
         // ✅ Disable CSRF for stateless JWT API
         .csrf(ServerHttpSecurity.CsrfSpec::disable)
@@ -58,13 +60,16 @@ public class SecurityConfig {
         // ✅ OAuth2 Resource Server with JWT
         .oauth2ResourceServer(oauth2 -> oauth2
             .jwt(jwt -> jwt
-                .jwtDecoder(jwtDecoder())
+                .jwtDecoder(jwtDecoder)
                 .jwtAuthenticationConverter(jwtAuthenticationConverter())
             )
             // ✅ Custom authentication entry point for JWT errors
             .authenticationEntryPoint(jwtAuthenticationEntryPoint)
         )
 
+        // ✅ Publish parsed claims once for gateway filters and rate limiting
+        .addFilterAfter(new GatewayClaimsWebFilter(), SecurityWebFiltersOrder.AUTHENTICATION)
+
         // ✅ Exception handling
         .exceptionHandling(exceptions -> exceptions
             .authenticationEntryPoint(jwtAuthenticationEntryPoint)
@@ -73,19 +78,18 @@ public class SecurityConfig {
     return http.build();
   }
 
+  /**
+   * Single decode stage: parses each token once and dispatches on alg
+   * (HS256 from auth-service, RS256 from the OAuth2 server), then rejects revoked tokens.
+   */
   @Bean
-  public ReactiveJwtDecoder jwtDecoder() {
+  public ReactiveJwtDecoder jwtDecoder(
+      OAuth2TokenValidator oauth2TokenValidator,
+      VerifiedTokenCache verifiedTokenCache,
+      TokenRevocationList tokenRevocationList) {
     byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-    SecretKey secretKey = new SecretKeySpec(keyBytes, "HmacSHA256");
-
-    NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder
-        .withSecretKey(secretKey)
-        .macAlgorithm(MacAlgorithm.HS256)
-        .build();
-
-    decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(jwtIssuer));
-
-    return decoder;
+    return new GatewayJwtDecoder(keyBytes, jwtIssuer, oauth2TokenValidator, verifiedTokenCache,
+        tokenRevocationList);
   }
 
   @Bean
@@ -35,7 +35,7 @@ public class WebClientConfig {
   @Value("${webclient.pool.max-connections:100}")
   private int maxConnections;
 
-  @Value("${webclient.pool.pending-acquire-timeout-seconds:45}")
+  @Value("${webclient.pool.pending-acquire-timeout-seconds:5}")
   private int pendingAcquireTimeoutSeconds;
 
   @Value("${webclient.pool.max-idle-time-seconds:30}")
@@ -47,6 +47,7 @@ public class WebClientConfig {
         .maxConnections(maxConnections)
         .pendingAcquireTimeout(Duration.ofSeconds(pendingAcquireTimeoutSeconds))
         .maxIdleTime(Duration.ofSeconds(maxIdleTimeSeconds))
+        .metrics(true)
         .build();
 
     HttpClient httpClient = HttpClient.create(connectionProvider)
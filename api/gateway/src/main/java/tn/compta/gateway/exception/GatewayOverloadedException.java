@@ -0,0 +1,18 @@
+package tn.compta.gateway.exception;
+
+import lombok.Getter;
+
+/**
+ * Raised when the gateway sheds a request because one of its internal resources is saturated.
+ * Rendered as 503 Service Unavailable with a Retry-After header.
+ */
+@Getter
+public class GatewayOverloadedException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public GatewayOverloadedException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
@@ -6,12 +6,14 @@ import org.springframework.boot.autoconfigure.web.reactive.error.AbstractErrorWe
 import org.springframework.boot.web.reactive.error.ErrorAttributes;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
@@ -29,6 +31,8 @@ import java.util.concurrent.TimeoutException;
  * Handles:
  * - Service unavailable (ConnectException)
  * - Timeout errors
+ * - Gateway overload (503 with Retry-After)
+ * - Errors raised with an explicit status (413 body too large, 504 response timeout)
  * - 404 Not Found
  * - Generic routing errors
  */
@@ -63,6 +67,15 @@ public class GlobalErrorWebExceptionHandler extends AbstractErrorWebExceptionHan
     errorAttributes.put("message", determineErrorMessage(error));
     errorAttributes.put("path", request.path());
 
+    if (error instanceof GatewayOverloadedException overloaded) {
+      log.warn("Gateway overloaded: {} - {}", request.path(), overloaded.getMessage());
+      return ServerResponse
+          .status(status)
+          .header(HttpHeaders.RETRY_AFTER, String.valueOf(overloaded.getRetryAfterSeconds()))
+          .contentType(MediaType.APPLICATION_JSON)
+          .body(BodyInserters.fromValue(errorAttributes));
+    }
+
     log.error("Gateway error: {} - {}", status, errorAttributes.get("message"), error);
 
     return ServerResponse
@@ -81,8 +94,13 @@ public class GlobalErrorWebExceptionHandler extends AbstractErrorWebExceptionHan
       return HttpStatus.SERVICE_UNAVAILABLE;
     } else if (error instanceof CallNotPermittedException) {
       return HttpStatus.SERVICE_UNAVAILABLE;
+    } else if (error instanceof GatewayOverloadedException) {
+      return HttpStatus.SERVICE_UNAVAILABLE;
     } else if (error instanceof RequestNotPermitted) {
       return HttpStatus.TOO_MANY_REQUESTS;
+    } else if (error instanceof ResponseStatusException statusError) {
+      HttpStatus status = HttpStatus.resolve(statusError.getStatusCode().value());
+      return status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR;
     } else if (error.getMessage() != null && error.getMessage().contains("404")) {
       return HttpStatus.NOT_FOUND;
     }
@@ -99,9 +117,18 @@ public class GlobalErrorWebExceptionHandler extends AbstractErrorWebExceptionHan
       return "Le service est temporairement indisponible. Veuillez réessayer plus tard.";
     } else if (error instanceof CallNotPermittedException) {
       return "Le service est temporairement indisponible (circuit ouvert). Veuillez réessayer plus tard.";
+    } else if (error instanceof GatewayOverloadedException) {
+      return "La passerelle est temporairement surchargée. Veuillez réessayer dans quelques instants.";
     } else if (error instanceof RequestNotPermitted) {
       return "Trop de requêtes. Veuillez patienter avant de réessayer.";
-    } else if (error.getMessage() != null && error.getMessage().contains("404")) {
+    } else if (error instanceof ResponseStatusException statusError) {
+      if (statusError.getStatusCode().value() == HttpStatus.PAYLOAD_TOO_LARGE.value()) {
+        return "Le contenu envoyé dépasse la taille maximale autorisée.";
+      } else if (statusError.getStatusCode().value() == HttpStatus.GATEWAY_TIMEOUT.value()) {
+        return "Le service a mis trop de temps à répondre. Veuillez réessayer.";
+      }
+    }
+    if (error.getMessage() != null && error.getMessage().contains("404")) {
       return "Service ou endpoint non trouvé.";
     }
     return "Une erreur interne s'est produite. Veuillez contacter le support si le problème persiste.";
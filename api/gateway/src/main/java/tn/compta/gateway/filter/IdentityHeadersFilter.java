@@ -1,26 +1,30 @@
 package tn.compta.gateway.filter;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.reactive.ServerHttpRequest;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.ReactiveSecurityContextHolder;
-import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 import tn.compta.gateway.config.PublicEndpoints;
+import tn.compta.gateway.security.GatewayClaims;
 
 import java.util.List;
 
 /**
- * Gateway filter that extracts JWT claims and adds them as HTTP headers.
+ * Sets the identity headers seen by downstream services.
+ *
+ * Forged X-User-* / X-Tenant-Id headers sent by the client are stripped, so nobody can
+ * impersonate a user, and the verified claims ({@link GatewayClaims} exchange attribute
+ * published by the security chain) are added in their place, in a single request mutation.
+ * Anonymous and public requests without such headers go through untouched.
  */
 @Slf4j
 @Component
-public class JwtToHeadersGatewayFilter implements GlobalFilter, Ordered {
+public class IdentityHeadersFilter implements GlobalFilter, Ordered {
 
   private static final String HEADER_USER_ID = "X-User-Id";
   private static final String HEADER_USERNAME = "X-User-Username";
@@ -28,93 +32,98 @@ public class JwtToHeadersGatewayFilter implements GlobalFilter, Ordered {
   private static final String HEADER_ROLES = "X-User-Roles";
   private static final String HEADER_TENANT_ID = "X-Tenant-Id";
 
+  private static final List<String> IDENTITY_HEADERS = List.of(
+      HEADER_USER_ID, HEADER_USERNAME, HEADER_EMAIL, HEADER_ROLES, HEADER_TENANT_ID);
+
   private static final int MAX_ROLES_COUNT = 50;
   private static final int MAX_HEADER_VALUE_LENGTH = 1024;
 
   @Override
   public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-    String path = exchange.getRequest().getPath().toString();
+    ServerHttpRequest request = exchange.getRequest();
+    boolean forged = hasIdentityHeaders(request.getHeaders());
 
     // Don't add headers for public endpoints
-    if (isPublicEndpoint(path)) {
-      return chain.filter(exchange);
+    GatewayClaims claims = GatewayClaims.from(exchange);
+    if (claims != null && PublicEndpoints.isPublic(request.getPath().value())) {
+      claims = null;
     }
 
-    return ReactiveSecurityContextHolder.getContext()
-        .map(securityContext -> {
-          Authentication authentication = securityContext.getAuthentication();
+    if (!forged && claims == null) {
+      return chain.filter(exchange);
+    }
+    if (forged) {
+      log.warn("Stripped forged user headers from incoming request: {}", request.getPath());
+    }
 
-          if (authentication != null && authentication.isAuthenticated()) {
-            return extractHeadersFromAuthentication(authentication, exchange.getRequest());
+    GatewayClaims identity = claims;
+    ServerHttpRequest modifiedRequest = request.mutate()
+        .headers(headers -> {
+          if (forged) {
+            for (String header : IDENTITY_HEADERS) {
+              headers.remove(header);
+            }
+          }
+          if (identity != null) {
+            addIdentityHeaders(identity, headers);
           }
-
-          return exchange.getRequest();
         })
-        .defaultIfEmpty(exchange.getRequest())
-        .map(modifiedRequest -> exchange.mutate().request(modifiedRequest).build())
-        .flatMap(chain::filter);
+        .build();
+    return chain.filter(exchange.mutate().request(modifiedRequest).build());
   }
 
-  /**
-   * Check if endpoint is public (doesn't need user headers).
-   */
-  private boolean isPublicEndpoint(String path) {
-    return PublicEndpoints.isPublic(path);
+  private static boolean hasIdentityHeaders(HttpHeaders headers) {
+    for (String header : IDENTITY_HEADERS) {
+      if (headers.containsKey(header)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
-   * Extract user information from JWT and add headers.
+   * Adds the claims as headers.
    * ✅ Only add headers if values are present (no empty strings).
    */
-  private ServerHttpRequest extractHeadersFromAuthentication(Authentication authentication, ServerHttpRequest request) {
-    Object principal = authentication.getPrincipal();
-
-    if (!(principal instanceof Jwt jwt)) {
-      log.warn("Authentication found but no JWT principal available");
-      return request;
-    }
-
+  private void addIdentityHeaders(GatewayClaims claims, HttpHeaders headers) {
     // Extract and validate claims
-    String userId = truncateIfNeeded(jwt.getSubject());
-    String username = truncateIfNeeded(jwt.getClaimAsString("username"));
-    String email = truncateIfNeeded(jwt.getClaimAsString("email"));
-    List<String> roles = validateRoles(jwt.getClaimAsStringList("roles"));
-    String tenantId = truncateIfNeeded(jwt.getClaimAsString("tenantId"));
-
-    // Build request with headers (only if values exist)
-    ServerHttpRequest.Builder builder = request.mutate();
+    String userId = truncateIfNeeded(claims.subject());
+    String username = truncateIfNeeded(claims.username());
+    String email = truncateIfNeeded(claims.email());
+    List<String> roles = validateRoles(claims.roles());
+    String tenantId = truncateIfNeeded(claims.tenantId());
 
     if (isValidHeaderValue(userId)) {
-      builder.header(HEADER_USER_ID, userId);
+      headers.set(HEADER_USER_ID, userId);
     }
 
     if (isValidHeaderValue(username)) {
-      builder.header(HEADER_USERNAME, username);
+      headers.set(HEADER_USERNAME, username);
     }
 
     if (isValidHeaderValue(email)) {
-      builder.header(HEADER_EMAIL, email);
+      headers.set(HEADER_EMAIL, email);
     }
 
-    if (roles != null && !roles.isEmpty()) {
+    if (!roles.isEmpty()) {
       String rolesValue = String.join(",", roles);
       if (rolesValue.length() <= MAX_HEADER_VALUE_LENGTH) {
-        builder.header(HEADER_ROLES, rolesValue);
+        headers.set(HEADER_ROLES, rolesValue);
       } else {
         log.warn("Roles header value too long, truncating");
-        builder.header(HEADER_ROLES, rolesValue.substring(0, MAX_HEADER_VALUE_LENGTH));
+        headers.set(HEADER_ROLES, rolesValue.substring(0, MAX_HEADER_VALUE_LENGTH));
       }
     }
 
     if (isValidHeaderValue(tenantId)) {
-      builder.header(HEADER_TENANT_ID, tenantId);
+      headers.set(HEADER_TENANT_ID, tenantId);
     }
 
     // ✅ Log avec masquage de l'email pour GDPR
-    log.debug("Added user headers: userId={}, username={}, email={}, tenantId={}, roles={}",
-        userId, username, maskEmail(email), tenantId, roles);
-
-    return builder.build();
+    if (log.isDebugEnabled()) {
+      log.debug("Added user headers: userId={}, username={}, email={}, tenantId={}, roles={}",
+          userId, username, maskEmail(email), tenantId, roles);
+    }
   }
 
   /**
@@ -155,9 +164,6 @@ public class JwtToHeadersGatewayFilter implements GlobalFilter, Ordered {
   }
 
   private List<String> validateRoles(List<String> roles) {
-    if (roles == null) {
-      return null;
-    }
     if (roles.size() > MAX_ROLES_COUNT) {
       log.warn("Too many roles ({}), limiting to {}", roles.size(), MAX_ROLES_COUNT);
       return roles.subList(0, MAX_ROLES_COUNT);
@@ -167,6 +173,8 @@ public class JwtToHeadersGatewayFilter implements GlobalFilter, Ordered {
 
   @Override
   public int getOrder() {
-    return 0; // After security context is established
+    // Run before everything else: claims are published by the security chain (a WebFilter),
+    // so they are already available, and no filter must ever see the forged headers
+    return Ordered.HIGHEST_PRECEDENCE;
   }
 }
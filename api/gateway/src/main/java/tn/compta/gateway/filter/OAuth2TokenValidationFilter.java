@@ -3,15 +3,22 @@ package tn.compta.gateway.filter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 import tn.compta.gateway.config.OAuth2TokenValidator;
+import tn.compta.gateway.config.PublicEndpoints;
+import tn.compta.gateway.exception.GatewayOverloadedException;
+import tn.compta.gateway.security.GatewayClaims;
+
+import java.nio.charset.StandardCharsets;
 
 /**
  * Filtre pour la validation des tokens JWT RSA issus par le serveur OAuth2.
@@ -20,7 +27,7 @@ import tn.compta.gateway.config.OAuth2TokenValidator;
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class OAuth2TokenValidationFilter implements GatewayFilter {
+public class OAuth2TokenValidationFilter implements GatewayFilter, Ordered {
 
   private static final String AUTHORIZATION_HEADER = "Authorization";
   private static final String BEARER_PREFIX = "Bearer ";
@@ -40,79 +47,74 @@ public class OAuth2TokenValidationFilter implements GatewayFilter {
       return chain.filter(exchange);
     }
 
+    // Token already parsed and verified by the security chain's decode stage
+    if (GatewayClaims.from(exchange) != null) {
+      exchange.getAttributes().put("oauth2.token.validated", true);
+      return chain.filter(exchange);
+    }
+
     String authHeader = exchange.getRequest().getHeaders().getFirst(AUTHORIZATION_HEADER);
 
     if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
       log.warn("Missing or invalid Authorization header for path: {}", path);
-      exchange
-        .getResponse()
-        .setStatusCode(HttpStatus.UNAUTHORIZED)
-        .setBody(
-          "{\"error\":\"missing_or_invalid_authorization_header\",\"message\":\"Authorization header is required\"}"
-        )
-        .setHeaders(
-          HttpHeaders.writableHttpHeaders()
-            .setContentType(MediaType.APPLICATION_JSON)
-        );
-      return exchange.getResponse().setComplete();
+      return unauthorized(exchange,
+          "{\"error\":\"missing_or_invalid_authorization_header\",\"message\":\"Authorization header is required\"}");
     }
 
     String token = authHeader.substring(BEARER_PREFIX.length()).trim();
 
     if (token.isEmpty()) {
       log.warn("Empty token in Authorization header for path: {}", path);
-      exchange
-        .getResponse()
-        .setStatusCode(HttpStatus.UNAUTHORIZED)
-        .setBody(
-          "{\"error\":\"empty_token\",\"message\":\"Token cannot be empty\"}"
-        )
-        .setHeaders(
-          HttpHeaders.writableHttpHeaders()
-            .setContentType(MediaType.APPLICATION_JSON)
-        );
-      return exchange.getResponse().setComplete();
+      return unauthorized(exchange,
+          "{\"error\":\"empty_token\",\"message\":\"Token cannot be empty\"}");
     }
 
-    // Validate the JWT token using OAuth2TokenValidator
-    boolean isValid = tokenValidator.validateTokenSilent(token);
-
-    if (!isValid) {
-      log.warn("Invalid OAuth2 token for path: {}. Token: {}", path, token);
-      exchange
-        .getResponse()
-        .setStatusCode(HttpStatus.UNAUTHORIZED)
-        .setBody(
-          "{\"error\":\"invalid_token\",\"message\":\"The provided token is invalid or expired\"}"
-        )
-        .setHeaders(
-          HttpHeaders.writableHttpHeaders()
-            .setContentType(MediaType.APPLICATION_JSON)
-        );
-      return exchange.getResponse().setComplete();
-    }
-
-    log.debug("OAuth2 token validated successfully for path: {}", path);
+    // Validate the JWT token using OAuth2TokenValidator (non-blocking key resolution)
+    return tokenValidator.validateTokenSilent(token)
+        .flatMap(isValid -> {
+          if (!isValid) {
+            log.warn("Invalid OAuth2 token for path: {}", path);
+            return unauthorized(exchange,
+                "{\"error\":\"invalid_token\",\"message\":\"The provided token is invalid or expired\"}");
+          }
+
+          log.debug("OAuth2 token validated successfully for path: {}", path);
+
+          // Add validation flag to exchange attributes for downstream filters
+          exchange.getAttributes().put("oauth2.token.validated", true);
+
+          return chain.filter(exchange);
+        })
+        .onErrorResume(GatewayOverloadedException.class, e -> {
+          log.warn("Token verification saturated for path: {}", path);
+          exchange.getResponse().getHeaders()
+              .set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+          return writeError(exchange, HttpStatus.SERVICE_UNAVAILABLE,
+              "{\"error\":\"service_unavailable\",\"message\":\"Token verification is temporarily overloaded\"}");
+        });
+  }
 
-    // Add validation flag to exchange attributes for downstream filters
-    exchange.getAttributes().put("oauth2.token.validated", true);
+  private Mono<Void> unauthorized(ServerWebExchange exchange, String body) {
+    return writeError(exchange, HttpStatus.UNAUTHORIZED, body);
+  }
 
-    return chain.filter(exchange);
+  private Mono<Void> writeError(ServerWebExchange exchange, HttpStatus status, String body) {
+    ServerHttpResponse response = exchange.getResponse();
+    response.setStatusCode(status);
+    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+    DataBuffer buffer = response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8));
+    return response.writeWith(Mono.just(buffer));
   }
 
   /**
-   * Détérmine si la validation doit être sautée pour certains chemins
+   * Détermine si la validation doit être sautée (endpoints publics partagés avec SecurityConfig)
    */
   private boolean shouldSkipValidation(String path) {
-    return path.startsWith("/actuator") ||
-           path.startsWith("/swagger") ||
-           path.startsWith("/v3/api-docs") ||
-           path.startsWith("/public") ||
-           path.equals("/favicon.ico");
+    return PublicEndpoints.isPublic(path);
   }
 
   @Override
   public int getOrder() {
-    return -100; // Execute before JwtToHeadersGatewayFilter
+    return -100; // Execute before the route filters
   }
 }
@@ -1,164 +1,62 @@
 package tn.compta.gateway.filter;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
+import tn.compta.gateway.logging.AccessLogEvent;
+import tn.compta.gateway.logging.AccessLogWriter;
+import tn.compta.gateway.logging.SensitiveDataMasker;
 
 import java.net.URI;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
+/**
+ * Access logging with sensitive data masking.
+ *
+ * Emits one record per request when the response completes. The event is handed to
+ * {@link AccessLogWriter}, which masks and formats it off the event loop.
+ */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class SecureLoggingGlobalFilter implements GlobalFilter, Ordered {
 
-  @Value("${logging.slow-request-threshold-ms:5000}")
-  private long slowRequestThresholdMs;
-
-  private static final Set<String> SENSITIVE_HEADERS = Set.of(
-      "authorization",
-      "cookie",
-      "set-cookie",
-      "x-csrf-token",
-      "x-api-key",
-      "x-auth-token",
-      "proxy-authorization"
-  );
-
-  private static final Set<String> SENSITIVE_QUERY_PARAMS = Set.of(
-      "token",
-      "access_token",
-      "refresh_token",
-      "api_key",
-      "apikey",
-      "password",
-      "secret",
-      "key"
-  );
+  private final AccessLogWriter accessLogWriter;
 
   @Override
   public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
     ServerHttpRequest request = exchange.getRequest();
     long startTime = System.currentTimeMillis();
 
-    logRequest(request);
+    // Headers are only rendered at debug level, and masked before being queued
+    String maskedHeaders = log.isDebugEnabled()
+        ? SensitiveDataMasker.maskHeaders(request.getHeaders())
+        : null;
 
     return chain.filter(exchange).doFinally(signal -> {
       long duration = System.currentTimeMillis() - startTime;
-      logResponse(request, exchange, duration);
-    });
-  }
-
-  private void logRequest(ServerHttpRequest request) {
-    String safePath = maskQueryParams(request.getURI());
-    if (log.isDebugEnabled()) {
-      String maskedHeaders = maskSensitiveHeaders(request.getHeaders());
-      log.debug("Incoming request: {} {} | Headers: {}",
-          request.getMethod(),
-          safePath,
-          maskedHeaders);
-    } else {
-      log.info("Request: {} {}", request.getMethod(), safePath);
-    }
-  }
-
-  private void logResponse(ServerHttpRequest request, ServerWebExchange exchange, long duration) {
-    var statusCode = exchange.getResponse().getStatusCode();
-    String safePath = maskQueryParams(request.getURI());
-
-    if (statusCode == null) {
-      log.warn("Response completed without status code: {} {} | Duration: {}ms",
-          request.getMethod(),
-          safePath,
-          duration);
-      return;
-    }
-
-    String statusLabel = getStatusLabel(statusCode.value());
-
-    log.info("{} response: {} {} | Status: {} | Duration: {}ms",
-        statusLabel,
-        request.getMethod(),
-        safePath,
-        statusCode.value(),
-        duration);
-
-    if (duration > slowRequestThresholdMs) {
-      log.warn("Slow request detected: {} {} took {}ms (threshold: {}ms)",
-          request.getMethod(),
-          safePath,
+      HttpStatusCode statusCode = exchange.getResponse().getStatusCode();
+      URI uri = request.getURI();
+
+      accessLogWriter.offer(new AccessLogEvent(
+          request.getMethod().name(),
+          uri.getRawPath(),
+          uri.getRawQuery(),
+          statusCode != null ? statusCode.value() : 0,
           duration,
-          slowRequestThresholdMs);
-    }
-  }
-
-  /**
-   * Masks sensitive query parameters in the URI.
-   */
-  private String maskQueryParams(URI uri) {
-    String query = uri.getQuery();
-    if (query == null || query.isEmpty()) {
-      return uri.getPath();
-    }
-
-    String maskedQuery = java.util.Arrays.stream(query.split("&"))
-        .map(param -> {
-          String[] parts = param.split("=", 2);
-          if (parts.length == 2 && isSensitiveParam(parts[0])) {
-            return parts[0] + "=***";
-          }
-          return param;
-        })
-        .collect(Collectors.joining("&"));
-
-    return uri.getPath() + "?" + maskedQuery;
-  }
-
-  private boolean isSensitiveParam(String paramName) {
-    return SENSITIVE_QUERY_PARAMS.stream()
-        .anyMatch(sensitive -> paramName.toLowerCase().contains(sensitive));
-  }
-
-  private String maskSensitiveHeaders(HttpHeaders headers) {
-    return headers.entrySet().stream()
-        .collect(Collectors.toMap(
-            Map.Entry::getKey,
-            entry -> isSensitiveHeader(entry.getKey())
-                ? List.of("***MASKED***")
-                : entry.getValue()
-        ))
-        .toString();
-  }
-
-  private boolean isSensitiveHeader(String headerName) {
-    return SENSITIVE_HEADERS.stream()
-        .anyMatch(sensitive -> sensitive.equalsIgnoreCase(headerName));
-  }
-
-  private String getStatusLabel(int statusCode) {
-    if (statusCode >= 200 && statusCode < 300) {
-      return "OK";
-    } else if (statusCode >= 300 && statusCode < 400) {
-      return "REDIRECT";
-    } else if (statusCode >= 400 && statusCode < 500) {
-      return "CLIENT_ERROR";
-    } else {
-      return "SERVER_ERROR";
-    }
+          maskedHeaders));
+    });
   }
 
   @Override
   public int getOrder() {
-    // Run after StripUserHeadersFilter (HIGHEST_PRECEDENCE)
+    // Run after IdentityHeadersFilter (HIGHEST_PRECEDENCE)
     return Ordered.HIGHEST_PRECEDENCE + 1;
   }
 }
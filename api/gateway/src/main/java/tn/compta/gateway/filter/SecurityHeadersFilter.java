@@ -1,13 +1,10 @@
 package tn.compta.gateway.filter;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.server.reactive.ServerHttpResponse;
-import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
@@ -16,72 +13,86 @@ import tn.compta.gateway.config.ProfileHelper;
 /**
  * Global filter to add security headers to all responses.
  *
- * Uses ServerHttpResponseDecorator to ensure headers are added
- * before the response is committed.
+ * The header sets (strict CSP for the API, permissive CSP for Swagger UI) are built once
+ * at startup; each response gets its template applied once, just before it is committed.
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class SecurityHeadersFilter implements GlobalFilter, Ordered {
 
-  private final ProfileHelper profileHelper;
+  private static final String API_CSP = "default-src 'none'; frame-ancestors 'none';";
+
+  // CSP permissive for Swagger UI only
+  private static final String SWAGGER_CSP = "default-src 'self'; "
+      + "script-src 'self' 'unsafe-inline' 'unsafe-eval'; "
+      + "style-src 'self' 'unsafe-inline'; "
+      + "img-src 'self' data: https:; "
+      + "font-src 'self' data:;";
+
+  private final HttpHeaders apiHeaders;
+  private final HttpHeaders swaggerHeaders;
+
+  public SecurityHeadersFilter(ProfileHelper profileHelper) {
+    this.apiHeaders = template(profileHelper.isProduction(), API_CSP);
+    this.swaggerHeaders = template(profileHelper.isProduction(), SWAGGER_CSP);
+  }
 
   @Override
   public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
     String path = exchange.getRequest().getPath().value();
+    HttpHeaders template = path.startsWith("/swagger-ui") || path.startsWith("/webjars")
+        ? swaggerHeaders
+        : apiHeaders;
 
-    ServerHttpResponse originalResponse = exchange.getResponse();
-    ServerHttpResponseDecorator decoratedResponse = new ServerHttpResponseDecorator(originalResponse) {
-      @Override
-      public HttpHeaders getHeaders() {
-        HttpHeaders headers = super.getHeaders();
-        addSecurityHeaders(headers, path);
-        return headers;
-      }
-    };
-
-    return chain.filter(exchange.mutate().response(decoratedResponse).build());
+    // Registered on the exchange's response, so error and short-circuit responses get it too
+    exchange.getResponse().beforeCommit(() -> {
+      apply(template, exchange.getResponse().getHeaders());
+      return Mono.empty();
+    });
+    return chain.filter(exchange);
   }
 
-  private void addSecurityHeaders(HttpHeaders headers, String path) {
+  private static HttpHeaders template(boolean production, String csp) {
+    HttpHeaders headers = new HttpHeaders();
+
     // Prevent MIME type sniffing
-    headers.addIfAbsent("X-Content-Type-Options", "nosniff");
+    headers.add("X-Content-Type-Options", "nosniff");
 
     // Prevent clickjacking
-    headers.addIfAbsent("X-Frame-Options", "DENY");
+    headers.add("X-Frame-Options", "DENY");
 
-    // Prevent caching of API responses
-    headers.addIfAbsent("Cache-Control", "no-store, no-cache, must-revalidate, max-age=0");
-    headers.addIfAbsent("Pragma", "no-cache");
+    // Prevent caching of API responses (unless a route cache set its own policy)
+    headers.add("Cache-Control", "no-store, no-cache, must-revalidate, max-age=0");
+    headers.add("Pragma", "no-cache");
 
     // HSTS - Only in production
-    if (profileHelper.isProduction()) {
-      headers.addIfAbsent("Strict-Transport-Security",
-          "max-age=31536000; includeSubDomains; preload");
+    if (production) {
+      headers.add("Strict-Transport-Security", "max-age=31536000; includeSubDomains; preload");
     }
 
     // Content Security Policy
-    if (path.startsWith("/swagger-ui") || path.startsWith("/webjars")) {
-      // CSP permissive for Swagger UI only
-      headers.addIfAbsent("Content-Security-Policy",
-          "default-src 'self'; "
-              + "script-src 'self' 'unsafe-inline' 'unsafe-eval'; "
-              + "style-src 'self' 'unsafe-inline'; "
-              + "img-src 'self' data: https:; "
-              + "font-src 'self' data:;");
-    } else {
-      // Strict CSP for API endpoints
-      headers.addIfAbsent("Content-Security-Policy",
-          "default-src 'none'; frame-ancestors 'none';");
-    }
+    headers.add("Content-Security-Policy", csp);
 
     // Referrer policy
-    headers.addIfAbsent("Referrer-Policy", "strict-origin-when-cross-origin");
+    headers.add("Referrer-Policy", "strict-origin-when-cross-origin");
 
     // Permissions policy
-    headers.addIfAbsent("Permissions-Policy",
+    headers.add("Permissions-Policy",
         "geolocation=(), microphone=(), camera=(), payment=(), usb=(), magnetometer=()");
 
+    return HttpHeaders.readOnlyHttpHeaders(headers);
+  }
+
+  /**
+   * Adds the template headers the response does not already set and strips server information.
+   */
+  static void apply(HttpHeaders template, HttpHeaders headers) {
+    template.forEach((name, values) -> {
+      if (!headers.containsKey(name)) {
+        headers.addAll(name, values);
+      }
+    });
+
     // Remove server information
     headers.remove("Server");
     headers.remove("X-Powered-By");
@@ -89,7 +100,8 @@ public class SecurityHeadersFilter implements GlobalFilter, Ordered {
 
   @Override
   public int getOrder() {
-    // Run late to ensure headers are set after other filters
-    return Ordered.LOWEST_PRECEDENCE - 1;
+    // Run early: filters that answer without reaching the routing filters (ResponseCache,
+    // Hedging) must get the headers too
+    return Ordered.HIGHEST_PRECEDENCE + 2;
   }
 }
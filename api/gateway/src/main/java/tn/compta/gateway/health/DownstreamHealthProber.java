@@ -0,0 +1,149 @@
+package tn.compta.gateway.health;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.loadbalancer.UpstreamServicesProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Probes the {@code /actuator/health} endpoint of each downstream service instance in the
+ * background.
+ *
+ * Targets are the replicas of {@code gateway.upstream.services.<service-id>.instances}, the same
+ * list the load balancer uses ({@code *_SERVICE_URLS}). Each instance is checked on its own loop
+ * every {@code health.check.interval-seconds}, with ±{@code jitter-percent} so that gateway
+ * replicas do not probe in lockstep. Results go into
+ * an immutable snapshot that is swapped atomically; {@link DownstreamServicesHealthIndicator}
+ * only reads it, so probe traffic no longer depends on how often health is scraped.
+ */
+@Slf4j
+@Component
+public class DownstreamHealthProber {
+
+  private final WebClient webClient;
+  private final Duration timeout;
+  private final long intervalMillis;
+  private final int jitterPercent;
+  private final List<Target> targets = new ArrayList<>();
+  private final AtomicReference<Map<String, Map<String, ProbeResult>>> snapshot = new AtomicReference<>(Map.of());
+  private final Disposable.Composite loops = Disposables.composite();
+
+  public DownstreamHealthProber(
+      WebClient.Builder webClientBuilder,
+      UpstreamServicesProperties upstreamServices,
+      @Value("${health.check.timeout-seconds:5}") int timeoutSeconds,
+      @Value("${health.check.interval-seconds:15}") int intervalSeconds,
+      @Value("${health.check.jitter-percent:20}") int jitterPercent) {
+    this.webClient = webClientBuilder.build();
+    this.timeout = Duration.ofSeconds(timeoutSeconds);
+    this.intervalMillis = Duration.ofSeconds(intervalSeconds).toMillis();
+    this.jitterPercent = jitterPercent;
+    upstreamServices.getServices().forEach((serviceId, service) ->
+        service.getInstances().forEach(url -> targets.add(new Target(serviceId, url))));
+  }
+
+  @PostConstruct
+  public void start() {
+    log.info("Probing {} downstream service instances every {}ms (±{}%)", targets.size(), intervalMillis,
+        jitterPercent);
+    targets.forEach(target -> loops.add(
+        // First probes spread over the first second, then one loop per instance
+        Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextLong(1000)))
+            .then(Mono.defer(() -> probe(target))
+                .then(Mono.defer(() -> Mono.delay(nextDelay())))
+                .repeat()
+                .then())
+            .subscribe()));
+  }
+
+  @PreDestroy
+  public void stop() {
+    loops.dispose();
+  }
+
+  /**
+   * Latest result of each instance (base URL), by service; instances not probed yet are absent.
+   */
+  public Map<String, Map<String, ProbeResult>> snapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * Interval to the next probe, with jitter.
+   */
+  Duration nextDelay() {
+    long jitter = intervalMillis * jitterPercent / 100;
+    long delay = intervalMillis + (jitter > 0 ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : 0);
+    return Duration.ofMillis(Math.max(1, delay));
+  }
+
+  /**
+   * Maximum age of a result before it is no longer trusted (two missed probes).
+   */
+  public long staleAfterMillis() {
+    return 2 * (intervalMillis + intervalMillis * jitterPercent / 100) + timeout.toMillis();
+  }
+
+  private Mono<Void> probe(Target target) {
+    long start = System.nanoTime();
+    return webClient.get()
+        .uri(target.url() + "/actuator/health")
+        .retrieve()
+        .toBodilessEntity()
+        .map(response -> ProbeResult.up(elapsedMillis(start)))
+        .timeout(timeout)
+        .onErrorResume(WebClientResponseException.class,
+            error -> Mono.just(ProbeResult.down(elapsedMillis(start), error.getStatusCode().value(), null)))
+        .onErrorResume(error -> {
+          log.warn("Service {} instance {} is DOWN: {}", target.serviceId(), target.url(), error.getMessage());
+          return Mono.just(ProbeResult.down(elapsedMillis(start), null, "Connection failed or timeout"));
+        })
+        .doOnNext(result -> snapshot.updateAndGet(current -> {
+          Map<String, ProbeResult> instances = new HashMap<>(current.getOrDefault(target.serviceId(), Map.of()));
+          instances.put(target.url(), result);
+          Map<String, Map<String, ProbeResult>> next = new HashMap<>(current);
+          next.put(target.serviceId(), Map.copyOf(instances));
+          return Map.copyOf(next);
+        }))
+        .then();
+  }
+
+  private static long elapsedMillis(long startNanos) {
+    return Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+  }
+
+  private record Target(String serviceId, String url) {
+  }
+
+  /**
+   * Outcome of one probe.
+   *
+   * @param code HTTP status when the service answered with a non-2xx status
+   * @param reason why the service could not be reached
+   */
+  public record ProbeResult(boolean up, long latencyMillis, long checkedAtMillis, Integer code, String reason) {
+
+    static ProbeResult up(long latencyMillis) {
+      return new ProbeResult(true, latencyMillis, System.currentTimeMillis(), null, null);
+    }
+
+    static ProbeResult down(long latencyMillis, Integer code, String reason) {
+      return new ProbeResult(false, latencyMillis, System.currentTimeMillis(), code, reason);
+    }
+  }
+}
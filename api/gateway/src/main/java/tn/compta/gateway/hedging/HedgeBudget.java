@@ -0,0 +1,50 @@
+package tn.compta.gateway.hedging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps hedged attempts at a percentage of traffic.
+ *
+ * Every request deposits {@code percent} credits and every hedge withdraws 100, so in the
+ * long run at most {@code percent}% of requests are hedged. Credits are capped so that a
+ * quiet period cannot bank an unbounded burst of hedges.
+ */
+public final class HedgeBudget {
+
+  private static final long HEDGE_COST = 100;
+
+  private final long deposit;
+  private final long maxCredits;
+  private final AtomicLong credits;
+
+  public HedgeBudget(int percent, int maxBurst) {
+    if (percent < 0 || percent > 100) {
+      throw new IllegalArgumentException("Hedge budget must be a percentage: " + percent);
+    }
+    this.deposit = percent;
+    this.maxCredits = HEDGE_COST * Math.max(1, maxBurst);
+    this.credits = new AtomicLong(0);
+  }
+
+  public void onRequest() {
+    while (true) {
+      long current = credits.get();
+      long next = Math.min(maxCredits, current + deposit);
+      if (next == current || credits.compareAndSet(current, next)) {
+        return;
+      }
+    }
+  }
+
+  public boolean tryHedge() {
+    while (true) {
+      long current = credits.get();
+      if (current < HEDGE_COST) {
+        return false;
+      }
+      if (credits.compareAndSet(current, current - HEDGE_COST)) {
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package tn.compta.gateway.hedging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import tn.compta.gateway.loadbalancer.UpstreamInstanceRegistry;
+import tn.compta.gateway.routing.StreamingRoutes;
+import tn.compta.gateway.routing.UpstreamHttpClients;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.PRESERVE_HOST_HEADER_ATTRIBUTE;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.isAlreadyRouted;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+/**
+ * Hedged requests for idempotent routes.
+ *
+ * Replaces the routing step for GET/HEAD requests: the request is sent downstream, and if no
+ * response has arrived after the route's observed {@code percentile} latency (p95 by default),
+ * a second identical attempt is started. The first response wins and the other attempt is
+ * cancelled. Hedges are capped at {@code budget-percent} of the route's traffic.
+ *
+ * Unlike {@code Retry}, which reacts to errors, this reacts to slowness. An attempt that fails
+ * while the other one is still running is ignored; the request fails only when all started
+ * attempts have failed.
+ *
+ * On load-balanced routes the hedge goes to another instance than the first attempt when
+ * the service has one, since a slow instance is the usual reason for hedging.
+ */
+@Slf4j
+@Component
+public class HedgingGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<HedgingGatewayFilterFactory.Config> {
+
+  /**
+   * Just before the routing filters (NettyRoutingFilter, WebsocketRoutingFilter).
+   */
+  public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 10;
+
+  private static final long THRESHOLD_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final UpstreamHttpClients upstreamHttpClients;
+  private final UpstreamInstanceRegistry instanceRegistry;
+  private final ObjectProvider<List<HttpHeadersFilter>> headersFilters;
+  private final MeterRegistry meterRegistry;
+  private final Map<HttpClient, WebClient> webClients = new ConcurrentHashMap<>();
+
+  public HedgingGatewayFilterFactory(
+      UpstreamHttpClients upstreamHttpClients,
+      UpstreamInstanceRegistry instanceRegistry,
+      ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+      MeterRegistry meterRegistry) {
+    super(Config.class);
+    this.upstreamHttpClients = upstreamHttpClients;
+    this.instanceRegistry = instanceRegistry;
+    this.headersFilters = headersFilters;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "Hedging";
+  }
+
+  @Override
+  public GatewayFilter apply(Config config) {
+    RouteHedging hedging = new RouteHedging(String.valueOf(config.getRouteId()), config);
+    log.info("Hedging enabled for route {}: p{} threshold, budget {}%",
+        hedging.routeId, Math.round(config.getPercentile() * 100), config.getBudgetPercent());
+    return new OrderedGatewayFilter((exchange, chain) -> {
+      URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+      HttpMethod method = exchange.getRequest().getMethod();
+      if (isAlreadyRouted(exchange) || url == null
+          || !("http".equals(url.getScheme()) || "https".equals(url.getScheme()))
+          || !(HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method))
+          || StreamingRoutes.isStreaming(exchange)) {
+        return chain.filter(exchange);
+      }
+      setAlreadyRouted(exchange);
+      return hedging.route(exchange, url);
+    }, ORDER);
+  }
+
+  /**
+   * Per-route hedging state: latency percentile, budget and meters.
+   */
+  private final class RouteHedging {
+
+    private final String routeId;
+    private final Config config;
+    private final HedgeBudget budget;
+    private final Timer latency;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesDenied;
+
+    private final AtomicLong thresholdRefreshedAt = new AtomicLong(System.nanoTime() - THRESHOLD_REFRESH_NANOS);
+    private volatile long thresholdNanos;
+
+    private RouteHedging(String routeId, Config config) {
+      this.routeId = routeId;
+      this.config = config;
+      this.budget = new HedgeBudget(config.getBudgetPercent(), config.getMaxBurst());
+      this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getInitialDelayMs());
+      this.latency = Timer.builder("gateway.hedge.latency")
+          .description("Time to first response byte for hedged routes")
+          .tag("route", routeId)
+          .publishPercentiles(config.getPercentile())
+          .register(meterRegistry);
+      this.hedgesSent = hedgeCounter("sent");
+      this.hedgesWon = hedgeCounter("won");
+      this.hedgesDenied = hedgeCounter("denied");
+    }
+
+    private Counter hedgeCounter(String outcome) {
+      return Counter.builder("gateway.hedge.requests")
+          .tag("route", routeId)
+          .tag("outcome", outcome)
+          .register(meterRegistry);
+    }
+
+    private Mono<Void> route(ServerWebExchange exchange, URI url) {
+      budget.onRequest();
+      long start = System.nanoTime();
+      Duration hedgeDelay = Duration.ofNanos(threshold());
+
+      AtomicInteger started = new AtomicInteger(1);
+      AtomicInteger failed = new AtomicInteger();
+
+      Mono<Attempt> primary = attempt(exchange, url, false, null, started, failed);
+      Mono<Attempt> hedge = Mono.delay(hedgeDelay)
+          .flatMap(tick -> {
+            if (!budget.tryHedge()) {
+              hedgesDenied.increment();
+              return Mono.never();
+            }
+            hedgesSent.increment();
+            started.incrementAndGet();
+            ServiceInstance other = otherInstance(exchange);
+            URI hedgeUrl = other != null ? withInstance(url, other) : url;
+            log.debug("Hedging {} {} after {}ms", exchange.getRequest().getMethod(), hedgeUrl, hedgeDelay.toMillis());
+            return attempt(exchange, hedgeUrl, true,
+                other != null ? instanceRegistry.start(other) : null, started, failed);
+          });
+
+      Mono<Attempt> race = Mono.firstWithSignal(primary, hedge);
+      Duration timeout = responseTimeout(exchange);
+      if (timeout != null) {
+        race = race.timeout(timeout)
+            .onErrorMap(TimeoutException.class,
+                e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, e.getMessage(), e));
+      }
+
+      return race.flatMap(winner -> {
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (winner.hedge()) {
+          hedgesWon.increment();
+        }
+        return write(exchange, winner.response());
+      });
+    }
+
+    /**
+     * One downstream call. A failure is only surfaced when every started attempt has failed;
+     * otherwise the attempt never signals and the race waits for the other one.
+     * {@code call} tracks an attempt the load balancer statistics do not already see.
+     */
+    private Mono<Attempt> attempt(ServerWebExchange exchange, URI url, boolean hedge,
+        UpstreamInstanceRegistry.Call call, AtomicInteger started, AtomicInteger failed) {
+      HttpHeaders headers = HttpHeadersFilter.filterRequest(headersFilters.getIfAvailable(List::of), exchange);
+      boolean preserveHost = exchange.getAttributeOrDefault(PRESERVE_HOST_HEADER_ATTRIBUTE, false);
+
+      return webClient(exchange).method(exchange.getRequest().getMethod())
+          .uri(url)
+          .headers(h -> {
+            h.addAll(headers);
+            if (!preserveHost) {
+              h.remove(HttpHeaders.HOST);
+            }
+          })
+          .retrieve()
+          // Downstream error statuses are proxied as-is, not raised
+          .onStatus(status -> true, response -> Mono.empty())
+          .toEntityFlux(DataBuffer.class)
+          .map(response -> new Attempt(response, hedge))
+          .doOnNext(attempt -> {
+            if (call != null) {
+              call.onResponse(attempt.response().getStatusCode().value());
+            }
+          })
+          .doOnError(e -> {
+            if (call != null) {
+              call.onError();
+            }
+          })
+          .doOnCancel(() -> {
+            if (call != null) {
+              call.onCancel();
+            }
+          })
+          .onErrorResume(e -> failed.incrementAndGet() >= started.get() ? Mono.error(e) : Mono.never());
+    }
+
+    /**
+     * Another instance than the one the load balancer chose, or null.
+     */
+    private ServiceInstance otherInstance(ServerWebExchange exchange) {
+      Response<ServiceInstance> chosen = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+      return chosen != null && chosen.hasServer() ? instanceRegistry.chooseOther(chosen.getServer()) : null;
+    }
+
+    private URI withInstance(URI url, ServiceInstance instance) {
+      return UriComponentsBuilder.fromUri(url)
+          .scheme(instance.isSecure() ? "https" : "http")
+          .host(instance.getHost())
+          .port(instance.getPort())
+          .build(true)
+          .toUri();
+    }
+
+    /**
+     * Same client, connection pool and protocol as regular proxying of the route.
+     */
+    private WebClient webClient(ServerWebExchange exchange) {
+      Route route = exchange.getRequiredAttribute(GATEWAY_ROUTE_ATTR);
+      URI url = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+      return webClients.computeIfAbsent(upstreamHttpClients.forRoute(route, url),
+          client -> WebClient.builder().clientConnector(new ReactorClientHttpConnector(client)).build());
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, ResponseEntity<Flux<DataBuffer>> downstream) {
+      ServerHttpResponse response = exchange.getResponse();
+      response.setStatusCode(downstream.getStatusCode());
+      HttpHeaders headers = HttpHeadersFilter.filter(headersFilters.getIfAvailable(List::of),
+          downstream.getHeaders(), exchange, HttpHeadersFilter.Type.RESPONSE);
+      response.getHeaders().putAll(headers);
+      Flux<DataBuffer> body = downstream.getBody();
+      return body != null ? response.writeWith(body) : response.setComplete();
+    }
+
+    private long threshold() {
+      long now = System.nanoTime();
+      long last = thresholdRefreshedAt.get();
+      if (now - last >= THRESHOLD_REFRESH_NANOS && thresholdRefreshedAt.compareAndSet(last, now)) {
+        ValueAtPercentile[] percentiles = latency.takeSnapshot().percentileValues();
+        if (percentiles.length > 0 && latency.count() >= config.getMinSamples()) {
+          long observed = (long) percentiles[0].value(TimeUnit.NANOSECONDS);
+          long min = TimeUnit.MILLISECONDS.toNanos(config.getMinDelayMs());
+          thresholdNanos = Math.max(min, observed);
+        }
+      }
+      return thresholdNanos;
+    }
+
+    private Duration responseTimeout(ServerWebExchange exchange) {
+      Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+      Object value = route != null ? route.getMetadata().get(RESPONSE_TIMEOUT_ATTR) : null;
+      if (value instanceof Number number && number.longValue() > 0) {
+        return Duration.ofMillis(number.longValue());
+      }
+      if (value != null) {
+        try {
+          long millis = Long.parseLong(value.toString());
+          return millis > 0 ? Duration.ofMillis(millis) : null;
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      }
+      return null;
+    }
+  }
+
+  private record Attempt(ResponseEntity<Flux<DataBuffer>> response, boolean hedge) {
+  }
+
+  @Data
+  public static class Config implements HasRouteId {
+
+    /**
+     * Latency percentile after which a hedge is sent.
+     */
+    private double percentile = 0.95;
+
+    /**
+     * Hedge delay used until {@code min-samples} responses have been observed.
+     */
+    private long initialDelayMs = 200;
+
+    /**
+     * Lower bound of the hedge delay, so a fast route is not hedged on noise.
+     */
+    private long minDelayMs = 20;
+
+    private long minSamples = 100;
+
+    private int budgetPercent = 10;
+
+    private int maxBurst = 10;
+
+    private String routeId;
+  }
+}
@@ -0,0 +1,116 @@
+package tn.compta.gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load and health of one service instance, as seen by this gateway.
+ *
+ * Tracks requests in flight, consecutive failures and an EWMA of latency. An ejected
+ * instance receives no traffic until {@code ejectedUntil}; it then comes back with a weight
+ * that ramps from 10% to 100% over the slow-start period.
+ */
+final class InstanceStats {
+
+  private static final double LATENCY_ALPHA = 0.3;
+  private static final double MIN_WEIGHT = 0.1;
+
+  private final String key;
+  private final AtomicInteger outstanding = new AtomicInteger();
+
+  private int consecutiveFailures;
+  private double latencyEwmaNanos;
+  private long samples;
+  private int ejections;
+  private long ejectedUntilNanos;
+  private long reinstatedAtNanos;
+  private boolean ejected;
+
+  InstanceStats(String key) {
+    this.key = key;
+  }
+
+  String key() {
+    return key;
+  }
+
+  int outstanding() {
+    return outstanding.get();
+  }
+
+  void onStart() {
+    outstanding.incrementAndGet();
+  }
+
+  void onEnd() {
+    outstanding.decrementAndGet();
+  }
+
+  /**
+   * Records a completed request.
+   */
+  synchronized void onSample(boolean failed, long latencyNanos) {
+    if (failed) {
+      consecutiveFailures++;
+      return;
+    }
+    consecutiveFailures = 0;
+    latencyEwmaNanos = samples == 0
+        ? latencyNanos
+        : latencyEwmaNanos + LATENCY_ALPHA * (latencyNanos - latencyEwmaNanos);
+    samples++;
+  }
+
+  synchronized int consecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  synchronized double latencyEwmaNanos() {
+    return latencyEwmaNanos;
+  }
+
+  synchronized long samples() {
+    return samples;
+  }
+
+  synchronized boolean isEjected(long nowNanos) {
+    if (ejected && nowNanos - ejectedUntilNanos >= 0) {
+      // Ejection over: start fresh, with slow start
+      ejected = false;
+      reinstatedAtNanos = nowNanos;
+      consecutiveFailures = 0;
+      samples = 0;
+      latencyEwmaNanos = 0;
+    }
+    return ejected;
+  }
+
+  /**
+   * Ejects for {@code base * ejections}, capped. The count resets once the instance has
+   * stayed healthy for {@code max}.
+   */
+  synchronized long eject(long nowNanos, long baseNanos, long maxNanos) {
+    if (reinstatedAtNanos != 0 && nowNanos - reinstatedAtNanos > maxNanos) {
+      ejections = 0;
+    }
+    ejections++;
+    long duration = Math.min(maxNanos, baseNanos * ejections);
+    ejected = true;
+    ejectedUntilNanos = nowNanos + duration;
+    return duration;
+  }
+
+  /**
+   * Share of traffic relative to a healthy instance: 0 while ejected, ramping up during
+   * slow start, then 1.
+   */
+  synchronized double weight(long nowNanos, long slowStartNanos) {
+    if (isEjected(nowNanos)) {
+      return 0;
+    }
+    if (reinstatedAtNanos == 0 || slowStartNanos <= 0) {
+      return 1;
+    }
+    double progress = (double) (nowNanos - reinstatedAtNanos) / slowStartNanos;
+    return progress >= 1 ? 1 : MIN_WEIGHT + (1 - MIN_WEIGHT) * progress;
+  }
+}
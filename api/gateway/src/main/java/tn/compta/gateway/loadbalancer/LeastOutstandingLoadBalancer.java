@@ -0,0 +1,36 @@
+package tn.compta.gateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Load balancer of one service: power-of-two-choices on requests in flight, skipping
+ * ejected instances (see {@link UpstreamInstanceRegistry}).
+ */
+public class LeastOutstandingLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+  private final String serviceId;
+  private final ServiceInstanceListSupplier supplier;
+  private final UpstreamInstanceRegistry registry;
+
+  public LeastOutstandingLoadBalancer(String serviceId, ServiceInstanceListSupplier supplier,
+      UpstreamInstanceRegistry registry) {
+    this.serviceId = serviceId;
+    this.supplier = supplier;
+    this.registry = registry;
+  }
+
+  @Override
+  public Mono<Response<ServiceInstance>> choose(Request request) {
+    return supplier.get(request).next().map(instances -> {
+      ServiceInstance chosen = registry.choose(serviceId, instances);
+      return chosen != null ? new DefaultResponse(chosen) : new EmptyResponse();
+    });
+  }
+}
@@ -0,0 +1,59 @@
+package tn.compta.gateway.loadbalancer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+/**
+ * Reports each load-balanced request to {@link UpstreamInstanceRegistry}: in flight until the
+ * downstream answers, then a success, a failure (5xx, connection error, timeout) or, when the
+ * client went away, nothing.
+ *
+ * The load balancer lifecycle callbacks are not used because the gateway does not call them
+ * on cancellation, which would leave the instance's in-flight count too high forever.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoadBalancerStatsFilter implements GlobalFilter, Ordered {
+
+  private final UpstreamInstanceRegistry registry;
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    Response<ServiceInstance> chosen = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+    if (chosen == null || !chosen.hasServer()) {
+      return chain.filter(exchange);
+    }
+    UpstreamInstanceRegistry.Call call = registry.start(chosen.getServer());
+    // Headers received: the instance has answered, whatever the client does with the body
+    exchange.getResponse().beforeCommit(() -> {
+      call.onResponse(status(exchange));
+      return Mono.empty();
+    });
+    return chain.filter(exchange)
+        .doOnSuccess(v -> call.onResponse(status(exchange)))
+        .doOnError(e -> call.onError())
+        .doOnCancel(call::onCancel);
+  }
+
+  private static int status(ServerWebExchange exchange) {
+    HttpStatusCode status = exchange.getResponse().getStatusCode();
+    return status != null ? status.value() : 200;
+  }
+
+  @Override
+  public int getOrder() {
+    // Right after the load balancer has chosen the instance
+    return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+  }
+}
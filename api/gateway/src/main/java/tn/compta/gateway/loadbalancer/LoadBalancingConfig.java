@@ -0,0 +1,15 @@
+package tn.compta.gateway.loadbalancer;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Routes with an {@code lb://<service-id>} URI are balanced by {@link LeastOutstandingLoadBalancer}
+ * over the instances listed in {@code gateway.upstream.services.<service-id>}.
+ */
+@Configuration
+@EnableConfigurationProperties(UpstreamServicesProperties.class)
+@LoadBalancerClients(defaultConfiguration = UpstreamLoadBalancerConfiguration.class)
+public class LoadBalancingConfig {
+}
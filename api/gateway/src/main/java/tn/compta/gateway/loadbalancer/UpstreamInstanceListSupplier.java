@@ -0,0 +1,99 @@
+package tn.compta.gateway.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instances of one service, from {@code gateway.upstream.services.<service-id>.instances}.
+ *
+ * With {@code resolve-dns}, each URL host is expanded to all its addresses and re-resolved
+ * every {@code dns-refresh-ms}, so replicas behind a DNS name (headless service, round-robin
+ * record) are balanced individually. The list keeps its identity while it does not change,
+ * which lets {@link UpstreamInstanceRegistry} skip pruning.
+ */
+@Slf4j
+public class UpstreamInstanceListSupplier implements ServiceInstanceListSupplier, DisposableBean {
+
+  private final String serviceId;
+  private final List<URI> urls;
+  private final Disposable refresh;
+  private volatile List<ServiceInstance> instances;
+
+  public UpstreamInstanceListSupplier(String serviceId, UpstreamServicesProperties.Service service) {
+    this.serviceId = serviceId;
+    this.urls = service.getInstances().stream().map(String::trim).map(URI::create).toList();
+    if (urls.isEmpty()) {
+      log.warn("No instances configured for service {} (gateway.upstream.services.{}.instances)",
+          serviceId, serviceId);
+    }
+    if (service.isResolveDns()) {
+      this.instances = resolve();
+      this.refresh = Flux.interval(Duration.ofMillis(service.getDnsRefreshMs()), Schedulers.boundedElastic())
+          .subscribe(tick -> refresh());
+    } else {
+      this.instances = urls.stream().map(url -> instance(url, url.getHost())).toList();
+      this.refresh = null;
+    }
+    log.info("Service {}: {} instance(s){}", serviceId, instances.size(),
+        service.isResolveDns() ? " (DNS)" : "");
+  }
+
+  @Override
+  public String getServiceId() {
+    return serviceId;
+  }
+
+  @Override
+  public Flux<List<ServiceInstance>> get() {
+    return Flux.just(instances);
+  }
+
+  private void refresh() {
+    List<ServiceInstance> resolved = resolve();
+    if (!resolved.isEmpty() && !resolved.equals(instances)) {
+      log.info("Service {}: instances changed to {}", serviceId,
+          resolved.stream().map(UpstreamInstanceRegistry::key).toList());
+      instances = resolved;
+    }
+  }
+
+  private List<ServiceInstance> resolve() {
+    List<ServiceInstance> resolved = new ArrayList<>();
+    for (URI url : urls) {
+      try {
+        for (InetAddress address : InetAddress.getAllByName(url.getHost())) {
+          resolved.add(instance(url, address.getHostAddress()));
+        }
+      } catch (UnknownHostException e) {
+        log.warn("Cannot resolve {} for service {}: {}", url.getHost(), serviceId, e.getMessage());
+      }
+    }
+    return List.copyOf(resolved);
+  }
+
+  private ServiceInstance instance(URI url, String host) {
+    boolean secure = "https".equals(url.getScheme());
+    int port = url.getPort() != -1 ? url.getPort() : secure ? 443 : 80;
+    return new DefaultServiceInstance(serviceId + "-" + host + ":" + port, serviceId, host, port, secure);
+  }
+
+  @Override
+  public void destroy() {
+    if (refresh != null) {
+      refresh.dispose();
+    }
+  }
+}
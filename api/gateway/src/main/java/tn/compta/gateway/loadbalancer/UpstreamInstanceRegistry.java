@@ -0,0 +1,294 @@
+package tn.compta.gateway.loadbalancer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Per-instance load and passive outlier detection for load-balanced routes.
+ *
+ * Instances are chosen with power-of-two-choices: two random candidates are compared and
+ * the one with fewer requests in flight (divided by its slow-start weight) wins, which
+ * spreads load like least-outstanding without a global scan or herding on one instance.
+ *
+ * An instance is ejected after {@code consecutive-errors} 5xx/connection failures, or when
+ * its average latency exceeds {@code latency-factor} times the median of its peers. At most
+ * {@code max-ejection-percent} of a service's instances are ejected at once, and if every
+ * instance is unavailable they are all used anyway.
+ */
+@Slf4j
+@Component
+public class UpstreamInstanceRegistry {
+
+  private final UpstreamServicesProperties.OutlierDetection settings;
+  private final MeterRegistry meterRegistry;
+  private final LongSupplier nanoClock;
+  private final Map<String, ServiceState> services = new ConcurrentHashMap<>();
+
+  public UpstreamInstanceRegistry(UpstreamServicesProperties properties, MeterRegistry meterRegistry) {
+    this(properties.getOutlierDetection(), meterRegistry, System::nanoTime);
+  }
+
+  UpstreamInstanceRegistry(UpstreamServicesProperties.OutlierDetection settings) {
+    this(settings, new SimpleMeterRegistry(), System::nanoTime);
+  }
+
+  UpstreamInstanceRegistry(UpstreamServicesProperties.OutlierDetection settings,
+      MeterRegistry meterRegistry, LongSupplier nanoClock) {
+    this.settings = settings;
+    this.meterRegistry = meterRegistry;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Picks an instance among the current ones of a service, or null when there is none.
+   */
+  public ServiceInstance choose(String serviceId, List<ServiceInstance> instances) {
+    return choose(state(serviceId).update(instances), null);
+  }
+
+  /**
+   * Picks another instance of the same service than {@code excluded} (hedged requests),
+   * or null when it has no other instance.
+   */
+  public ServiceInstance chooseOther(ServiceInstance excluded) {
+    ServiceState state = services.get(excluded.getServiceId());
+    return state != null ? choose(state, key(excluded)) : null;
+  }
+
+  /**
+   * Starts tracking a request sent to {@code instance}. The returned call must be ended
+   * exactly once.
+   */
+  public Call start(ServiceInstance instance) {
+    ServiceState state = state(instance.getServiceId());
+    InstanceStats stats = state.stats(key(instance));
+    stats.onStart();
+    return new Call(state, stats, nanoClock.getAsLong());
+  }
+
+  private ServiceInstance choose(ServiceState state, String excludedKey) {
+    List<ServiceInstance> instances = state.instances;
+    long now = nanoClock.getAsLong();
+    long slowStart = TimeUnit.MILLISECONDS.toNanos(settings.getSlowStartMs());
+
+    List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+    List<Double> weights = new ArrayList<>(instances.size());
+    for (ServiceInstance instance : instances) {
+      String key = key(instance);
+      if (key.equals(excludedKey)) {
+        continue;
+      }
+      double weight = state.stats(key).weight(now, slowStart);
+      if (weight > 0) {
+        candidates.add(instance);
+        weights.add(weight);
+      }
+    }
+    if (candidates.isEmpty()) {
+      // Everything ejected: better an unhealthy instance than none
+      for (ServiceInstance instance : instances) {
+        if (!key(instance).equals(excludedKey)) {
+          candidates.add(instance);
+          weights.add(1.0);
+        }
+      }
+    }
+    if (candidates.size() <= 1) {
+      return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(candidates.size());
+    int second = random.nextInt(candidates.size() - 1);
+    if (second >= first) {
+      second++;
+    }
+    return score(state, candidates.get(first), weights.get(first))
+        <= score(state, candidates.get(second), weights.get(second))
+        ? candidates.get(first)
+        : candidates.get(second);
+  }
+
+  private static double score(ServiceState state, ServiceInstance instance, double weight) {
+    return (state.stats(key(instance)).outstanding() + 1) / weight;
+  }
+
+  private void onComplete(ServiceState state, InstanceStats stats, boolean failed, long latencyNanos) {
+    stats.onSample(failed, latencyNanos);
+    long now = nanoClock.getAsLong();
+    if (stats.isEjected(now)) {
+      return;
+    }
+    if (failed && stats.consecutiveFailures() >= settings.getConsecutiveErrors()) {
+      eject(state, stats, now, "errors");
+    } else if (!failed && isLatencyOutlier(state, stats, now)) {
+      eject(state, stats, now, "latency");
+    }
+  }
+
+  private boolean isLatencyOutlier(ServiceState state, InstanceStats stats, long now) {
+    double latency = stats.latencyEwmaNanos();
+    if (stats.samples() < settings.getMinSamples()
+        || latency < TimeUnit.MILLISECONDS.toNanos(settings.getMinLatencyMs())) {
+      return false;
+    }
+    List<Double> peers = new ArrayList<>();
+    for (InstanceStats peer : state.stats.values()) {
+      if (peer != stats && !peer.isEjected(now) && peer.samples() >= settings.getMinSamples()) {
+        peers.add(peer.latencyEwmaNanos());
+      }
+    }
+    if (peers.isEmpty()) {
+      return false;
+    }
+    Collections.sort(peers);
+    double median = peers.get(peers.size() / 2);
+    return latency > settings.getLatencyFactor() * median;
+  }
+
+  private void eject(ServiceState state, InstanceStats stats, long now, String reason) {
+    int total = state.instances.size();
+    long ejected = state.stats.values().stream().filter(s -> s.isEjected(now)).count();
+    if (ejected + 1 > (long) total * settings.getMaxEjectionPercent() / 100) {
+      log.debug("Not ejecting {} ({}): max ejection percent reached", stats.key(), reason);
+      return;
+    }
+    long duration = stats.eject(now,
+        TimeUnit.MILLISECONDS.toNanos(settings.getBaseEjectionMs()),
+        TimeUnit.MILLISECONDS.toNanos(settings.getMaxEjectionMs()));
+    state.ejections(stats.key(), reason).increment();
+    log.warn("Ejected instance {} of {} for {} ms ({})",
+        stats.key(), state.serviceId, TimeUnit.NANOSECONDS.toMillis(duration), reason);
+  }
+
+  private ServiceState state(String serviceId) {
+    return services.computeIfAbsent(serviceId, ServiceState::new);
+  }
+
+  static String key(ServiceInstance instance) {
+    return instance.getHost() + ":" + instance.getPort();
+  }
+
+  /**
+   * One request sent to an instance.
+   */
+  public final class Call {
+
+    private final ServiceState state;
+    private final InstanceStats stats;
+    private final long startNanos;
+    private final AtomicBoolean ended = new AtomicBoolean();
+
+    private Call(ServiceState state, InstanceStats stats, long startNanos) {
+      this.state = state;
+      this.stats = stats;
+      this.startNanos = startNanos;
+    }
+
+    /**
+     * The instance answered; 5xx statuses count as failures.
+     */
+    public void onResponse(int status) {
+      end(status >= 500);
+    }
+
+    /**
+     * Connection error or timeout.
+     */
+    public void onError() {
+      end(true);
+    }
+
+    /**
+     * Cancelled by the client: says nothing about the instance.
+     */
+    public void onCancel() {
+      if (ended.compareAndSet(false, true)) {
+        stats.onEnd();
+      }
+    }
+
+    private void end(boolean failed) {
+      if (ended.compareAndSet(false, true)) {
+        stats.onEnd();
+        onComplete(state, stats, failed, nanoClock.getAsLong() - startNanos);
+      }
+    }
+  }
+
+  /**
+   * Instances and stats of one service.
+   */
+  private final class ServiceState {
+
+    private final String serviceId;
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+    private final Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+    private volatile List<ServiceInstance> instances = List.of();
+
+    private ServiceState(String serviceId) {
+      this.serviceId = serviceId;
+    }
+
+    private ServiceState update(List<ServiceInstance> current) {
+      if (current != instances) {
+        instances = current;
+        Set<String> keys = current.stream().map(UpstreamInstanceRegistry::key).collect(Collectors.toSet());
+        for (String key : List.copyOf(stats.keySet())) {
+          if (!keys.contains(key)) {
+            stats.remove(key);
+            meters.getOrDefault(key, List.of()).forEach(meterRegistry::remove);
+            meters.remove(key);
+          }
+        }
+      }
+      return this;
+    }
+
+    private InstanceStats stats(String key) {
+      return stats.computeIfAbsent(key, k -> {
+        InstanceStats created = new InstanceStats(k);
+        long slowStart = TimeUnit.MILLISECONDS.toNanos(settings.getSlowStartMs());
+        meters.put(k, List.of(
+            Gauge.builder("gateway.lb.instance.outstanding", created, InstanceStats::outstanding)
+                .description("Requests in flight to the instance")
+                .tag("service", serviceId).tag("instance", k)
+                .register(meterRegistry),
+            Gauge.builder("gateway.lb.instance.weight", created, s -> s.weight(nanoClock.getAsLong(), slowStart))
+                .description("Share of traffic (0 = ejected, <1 = slow start)")
+                .tag("service", serviceId).tag("instance", k)
+                .register(meterRegistry),
+            Gauge.builder("gateway.lb.instance.latency", created, s -> s.latencyEwmaNanos() / 1_000_000)
+                .description("Average latency of the instance in ms (EWMA)")
+                .tag("service", serviceId).tag("instance", k)
+                .register(meterRegistry)));
+        return created;
+      });
+    }
+
+    private Counter ejections(String key, String reason) {
+      return Counter.builder("gateway.lb.ejections")
+          .description("Instances ejected by outlier detection")
+          .tag("service", serviceId).tag("instance", key).tag("reason", reason)
+          .register(meterRegistry);
+    }
+  }
+}
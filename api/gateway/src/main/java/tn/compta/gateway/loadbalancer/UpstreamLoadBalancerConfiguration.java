@@ -0,0 +1,35 @@
+package tn.compta.gateway.loadbalancer;
+
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Beans of each service's load balancer context (one child context per service id).
+ *
+ * Deliberately not a {@code @Configuration}: it is registered through
+ * {@link LoadBalancingConfig} and must not be picked up by the main context's scan.
+ */
+public class UpstreamLoadBalancerConfiguration {
+
+  @Bean
+  public ServiceInstanceListSupplier upstreamInstanceListSupplier(
+      Environment environment, UpstreamServicesProperties properties) {
+    String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+    UpstreamServicesProperties.Service service = properties.getServices().get(serviceId);
+    if (service == null) {
+      throw new IllegalStateException("No gateway.upstream.services." + serviceId
+          + " configured for lb://" + serviceId);
+    }
+    return new UpstreamInstanceListSupplier(serviceId, service);
+  }
+
+  @Bean
+  public ReactorServiceInstanceLoadBalancer leastOutstandingLoadBalancer(
+      Environment environment, ServiceInstanceListSupplier supplier, UpstreamInstanceRegistry registry) {
+    String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+    return new LeastOutstandingLoadBalancer(serviceId, supplier, registry);
+  }
+}
@@ -0,0 +1,79 @@
+package tn.compta.gateway.loadbalancer;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replicas of each downstream service ({@code gateway.upstream.services.<service-id>}) and
+ * outlier detection settings, for routes with an {@code lb://<service-id>} URI.
+ */
+@Data
+@ConfigurationProperties(prefix = "gateway.upstream")
+public class UpstreamServicesProperties {
+
+  private Map<String, Service> services = new LinkedHashMap<>();
+
+  private OutlierDetection outlierDetection = new OutlierDetection();
+
+  @Data
+  public static class Service {
+
+    /**
+     * Base URLs of the replicas (a comma-separated string is accepted).
+     */
+    private List<String> instances = new ArrayList<>();
+
+    /**
+     * Expand each URL host to all its DNS addresses (e.g. a headless service).
+     */
+    private boolean resolveDns = false;
+
+    private long dnsRefreshMs = 30_000;
+  }
+
+  @Data
+  public static class OutlierDetection {
+
+    /**
+     * Consecutive 5xx or connection errors that eject an instance.
+     */
+    private int consecutiveErrors = 5;
+
+    /**
+     * An instance whose average latency exceeds this multiple of its peers' median is ejected.
+     */
+    private double latencyFactor = 3.0;
+
+    /**
+     * Latencies below this are never considered a spike.
+     */
+    private long minLatencyMs = 200;
+
+    /**
+     * Completed requests needed before an instance's latency is compared.
+     */
+    private int minSamples = 20;
+
+    /**
+     * Ejection time; multiplied by the number of times the instance was ejected.
+     */
+    private long baseEjectionMs = 30_000;
+
+    private long maxEjectionMs = 300_000;
+
+    /**
+     * At most this share of a service's instances are ejected at once.
+     */
+    private int maxEjectionPercent = 50;
+
+    /**
+     * After ejection, the instance's share of traffic ramps up over this period.
+     */
+    private long slowStartMs = 30_000;
+  }
+}
@@ -0,0 +1,18 @@
+package tn.compta.gateway.logging;
+
+/**
+ * One access log record, captured on the event loop and formatted by {@link AccessLogWriter}.
+ *
+ * Holds the raw query string: masking happens on the writer thread.
+ *
+ * @param status HTTP status, or {@code 0} when the response completed without one
+ * @param headers already-masked request headers (debug only), or {@code null}
+ */
+public record AccessLogEvent(
+    String method,
+    String path,
+    String query,
+    int status,
+    long durationMs,
+    String headers) {
+}
@@ -0,0 +1,143 @@
+package tn.compta.gateway.logging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous access log pipeline.
+ *
+ * Request threads only {@link #offer(AccessLogEvent)} an event into a bounded ring buffer;
+ * a single daemon thread masks, formats and logs it. When the buffer is full the event is
+ * dropped and counted ({@code gateway.accesslog.dropped}) rather than blocking the event loop.
+ *
+ * Records go to the {@code tn.compta.gateway.access} logger, one line per request.
+ */
+@Slf4j
+@Component
+public class AccessLogWriter {
+
+  private static final Logger ACCESS_LOG = LoggerFactory.getLogger("tn.compta.gateway.access");
+
+  private final BlockingQueue<AccessLogEvent> queue;
+  private final long slowRequestThresholdMs;
+  private final Counter droppedCounter;
+  private final StringBuilder buffer = new StringBuilder(512);
+
+  private volatile boolean running = true;
+  private Thread writerThread;
+
+  public AccessLogWriter(
+      MeterRegistry meterRegistry,
+      @Value("${logging.access-log.queue-capacity:8192}") int queueCapacity,
+      @Value("${logging.slow-request-threshold-ms:5000}") long slowRequestThresholdMs) {
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.slowRequestThresholdMs = slowRequestThresholdMs;
+    this.droppedCounter = Counter.builder("gateway.accesslog.dropped")
+        .description("Access log records dropped because the buffer was full")
+        .register(meterRegistry);
+    Gauge.builder("gateway.accesslog.pending", queue, BlockingQueue::size)
+        .description("Access log records waiting for the writer thread")
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() {
+    writerThread = new Thread(this::drain, "access-log-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    writerThread.interrupt();
+    writerThread.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  /**
+   * Enqueues an event without blocking. Returns {@code false} if it was dropped.
+   */
+  public boolean offer(AccessLogEvent event) {
+    if (queue.offer(event)) {
+      return true;
+    }
+    droppedCounter.increment();
+    return false;
+  }
+
+  private void drain() {
+    while (running || !queue.isEmpty()) {
+      try {
+        AccessLogEvent event = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+        if (event != null) {
+          write(event);
+        }
+      } catch (InterruptedException e) {
+        // Shutdown: flush what is left, then exit
+        Thread.currentThread().interrupt();
+        running = false;
+      } catch (RuntimeException e) {
+        log.warn("Failed to write access log record: {}", e.getMessage());
+      }
+    }
+  }
+
+  private void write(AccessLogEvent event) {
+    if (!ACCESS_LOG.isInfoEnabled()) {
+      return;
+    }
+
+    StringBuilder line = buffer;
+    line.setLength(0);
+    line.append("method=").append(event.method())
+        .append(" path=").append(event.path());
+    if (event.query() != null && !event.query().isEmpty()) {
+      line.append('?');
+      SensitiveDataMasker.appendMaskedQuery(line, event.query());
+    }
+    line.append(" status=").append(event.status())
+        .append(" outcome=").append(outcome(event.status()))
+        .append(" duration_ms=").append(event.durationMs());
+    if (event.headers() != null) {
+      line.append(" headers=").append(event.headers());
+    }
+
+    boolean slow = event.durationMs() > slowRequestThresholdMs;
+    if (slow) {
+      line.append(" slow=true threshold_ms=").append(slowRequestThresholdMs);
+    }
+
+    String record = line.toString();
+    if (slow || event.status() == 0) {
+      ACCESS_LOG.warn(record);
+    } else {
+      ACCESS_LOG.info(record);
+    }
+  }
+
+  static String outcome(int status) {
+    if (status == 0) {
+      return "NO_STATUS";
+    } else if (status >= 200 && status < 300) {
+      return "OK";
+    } else if (status >= 300 && status < 400) {
+      return "REDIRECT";
+    } else if (status >= 400 && status < 500) {
+      return "CLIENT_ERROR";
+    } else {
+      return "SERVER_ERROR";
+    }
+  }
+}
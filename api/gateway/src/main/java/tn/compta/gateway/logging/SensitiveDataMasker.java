@@ -0,0 +1,112 @@
+package tn.compta.gateway.logging;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass masking of query parameters and headers, without regex, split or streams.
+ */
+public final class SensitiveDataMasker {
+
+  static final String MASK = "***";
+  static final String HEADER_MASK = "***MASKED***";
+
+  /**
+   * A parameter is sensitive when its name contains one of these (case-insensitive).
+   */
+  private static final String[] SENSITIVE_QUERY_PARAMS = {
+      "token",
+      "access_token",
+      "refresh_token",
+      "api_key",
+      "apikey",
+      "password",
+      "secret",
+      "key"
+  };
+
+  private static final String[] SENSITIVE_HEADERS = {
+      "authorization",
+      "cookie",
+      "set-cookie",
+      "x-csrf-token",
+      "x-api-key",
+      "x-auth-token",
+      "proxy-authorization",
+      "x-user-email"
+  };
+
+  private SensitiveDataMasker() {
+  }
+
+  /**
+   * Appends {@code query} to {@code out}, replacing the value of every sensitive parameter.
+   */
+  public static void appendMaskedQuery(StringBuilder out, String query) {
+    int length = query.length();
+    int start = 0;
+    while (start <= length) {
+      int end = query.indexOf('&', start);
+      if (end < 0) {
+        end = length;
+      }
+      int eq = query.indexOf('=', start);
+      if (eq >= 0 && eq < end && isSensitiveParam(query, start, eq)) {
+        out.append(query, start, eq + 1).append(MASK);
+      } else {
+        out.append(query, start, end);
+      }
+      if (end < length) {
+        out.append('&');
+      }
+      start = end + 1;
+    }
+  }
+
+  /**
+   * Whether the parameter name {@code query[start, end)} contains a sensitive key.
+   */
+  static boolean isSensitiveParam(String query, int start, int end) {
+    for (String sensitive : SENSITIVE_QUERY_PARAMS) {
+      int last = end - sensitive.length();
+      for (int i = start; i <= last; i++) {
+        if (query.regionMatches(true, i, sensitive, 0, sensitive.length())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public static boolean isSensitiveHeader(String headerName) {
+    for (String sensitive : SENSITIVE_HEADERS) {
+      if (sensitive.equalsIgnoreCase(headerName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Renders headers as {@code {name=[values], ...}} with sensitive values masked.
+   */
+  public static String maskHeaders(HttpHeaders headers) {
+    StringBuilder out = new StringBuilder(256).append('{');
+    boolean first = true;
+    for (Map.Entry<String, List<String>> entry : headers.headerSet()) {
+      if (!first) {
+        out.append(", ");
+      }
+      first = false;
+      out.append(entry.getKey()).append('=');
+      if (isSensitiveHeader(entry.getKey())) {
+        out.append('[').append(HEADER_MASK).append(']');
+      } else {
+        out.append(entry.getValue());
+      }
+    }
+    return out.append('}').toString();
+  }
+}
@@ -0,0 +1,168 @@
+package tn.compta.gateway.profiling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Records per-filter timings of sampled requests.
+ *
+ * For each filter invocation:
+ * <ul>
+ *   <li>{@code gateway.filter.queue}: time between the previous profiled filter handing the
+ *   request on and this filter starting (scheduler hops, async hand-offs)</li>
+ *   <li>{@code gateway.filter.self}: time spent in the filter itself, i.e. its total duration
+ *   minus the time spent downstream of it in the chain</li>
+ * </ul>
+ * Both are tagged with the filter name, its kind (web, global, route) and the route id.
+ * The sampling decision is taken once per request and shared by all filters.
+ */
+public class FilterProfiler {
+
+  private static final String SAMPLED_ATTR = FilterProfiler.class.getName() + ".sampled";
+  private static final String HANDOFF_ATTR = FilterProfiler.class.getName() + ".handoff";
+  private static final String NO_ROUTE = "none";
+
+  private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+  private final double sampleRate;
+  private final Map<String, Map<String, Timer[]>> timers = new ConcurrentHashMap<>();
+
+  private volatile MeterRegistry meterRegistry;
+
+  public FilterProfiler(ObjectProvider<MeterRegistry> meterRegistryProvider, double sampleRate) {
+    this.meterRegistryProvider = meterRegistryProvider;
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Starts timing a filter invocation, or returns {@code null} if the request is not sampled.
+   */
+  public Sample start(String filter, String kind, ServerWebExchange exchange) {
+    Boolean sampled = exchange.getAttribute(SAMPLED_ATTR);
+    if (sampled == null) {
+      sampled = sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+      exchange.getAttributes().put(SAMPLED_ATTR, sampled);
+    }
+    if (!sampled) {
+      return null;
+    }
+
+    long now = System.nanoTime();
+    Long handoff = exchange.getAttribute(HANDOFF_ATTR);
+    return new Sample(filter, kind, exchange, handoff != null ? now - handoff : 0, now);
+  }
+
+  private void record(Sample sample, long selfNanos) {
+    Route route = sample.exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+    String routeId = route != null ? route.getId() : NO_ROUTE;
+
+    Timer[] pair = timers(sample.filter, sample.kind, routeId);
+    if (pair == null) {
+      return;
+    }
+    pair[0].record(selfNanos, TimeUnit.NANOSECONDS);
+    pair[1].record(sample.queueNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Timer[] timers(String filter, String kind, String routeId) {
+    Map<String, Timer[]> byRoute = timers.get(filter);
+    if (byRoute == null) {
+      byRoute = timers.computeIfAbsent(filter, k -> new ConcurrentHashMap<>());
+    }
+    Timer[] pair = byRoute.get(routeId);
+    if (pair != null) {
+      return pair;
+    }
+
+    MeterRegistry registry = meterRegistry;
+    if (registry == null) {
+      registry = meterRegistryProvider.getIfAvailable();
+      if (registry == null) {
+        return null;
+      }
+      meterRegistry = registry;
+    }
+    MeterRegistry target = registry;
+    return byRoute.computeIfAbsent(routeId, r -> new Timer[] {
+        Timer.builder("gateway.filter.self")
+            .description("Time spent in a filter, excluding the rest of the chain")
+            .tags("filter", filter, "kind", kind, "route", r)
+            .publishPercentileHistogram()
+            .register(target),
+        Timer.builder("gateway.filter.queue")
+            .description("Time between the previous filter handing off and this filter starting")
+            .tags("filter", filter, "kind", kind, "route", r)
+            .publishPercentileHistogram()
+            .register(target)
+    });
+  }
+
+  /**
+   * Timing state of one filter invocation on a sampled request.
+   */
+  public final class Sample {
+
+    private final String filter;
+    private final String kind;
+    private final ServerWebExchange exchange;
+    private final long queueNanos;
+    private final long startedAt;
+
+    private long downstreamStartedAt;
+    private long downstreamEndedAt;
+
+    private Sample(String filter, String kind, ServerWebExchange exchange, long queueNanos, long startedAt) {
+      this.filter = filter;
+      this.kind = kind;
+      this.exchange = exchange;
+      this.queueNanos = queueNanos;
+      this.startedAt = startedAt;
+    }
+
+    /**
+     * Wraps the rest of the chain so that its duration is excluded from this filter's self time.
+     */
+    public Mono<Void> downstream(ServerWebExchange next, Supplier<Mono<Void>> chain) {
+      return Mono.defer(() -> {
+            long now = System.nanoTime();
+            if (downstreamStartedAt == 0) {
+              downstreamStartedAt = now;
+            }
+            next.getAttributes().put(HANDOFF_ATTR, now);
+            return chain.get();
+          })
+          // Before the signal propagates: the filter's own completion must see it
+          .doOnTerminate(this::markDownstreamEnd)
+          .doOnCancel(this::markDownstreamEnd);
+    }
+
+    private void markDownstreamEnd() {
+      downstreamEndedAt = System.nanoTime();
+    }
+
+    /**
+     * Records the timings once the filter's own publisher terminates.
+     */
+    public Mono<Void> finish(Mono<Void> filterResult) {
+      return filterResult.doFinally(signal -> {
+        long endedAt = System.nanoTime();
+        long total = endedAt - startedAt;
+        long downstream = downstreamStartedAt == 0
+            ? 0
+            : Math.max(downstreamEndedAt, downstreamStartedAt) - downstreamStartedAt;
+        record(this, Math.max(0, total - downstream));
+      });
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package tn.compta.gateway.profiling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.AopConfigException;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Wraps the gateway's filters with {@link FilterProfiler} instrumentation.
+ *
+ * <ul>
+ *   <li>{@link WebFilter} beans (security chain, CORS...) and {@link GlobalFilter} beans are
+ *   replaced by class-based proxies, so their type and order are unchanged</li>
+ *   <li>{@link GatewayFilterFactory} beans are proxied so that every route filter they create
+ *   (rate limiter, circuit breaker, retry...) is decorated</li>
+ * </ul>
+ * Beans that are already AOP proxies or cannot be subclassed are left untouched.
+ */
+@Slf4j
+public class FilterProfilingBeanPostProcessor implements BeanPostProcessor {
+
+  private final FilterProfiler profiler;
+
+  public FilterProfilingBeanPostProcessor(FilterProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (AopUtils.isAopProxy(bean)) {
+      return bean;
+    }
+    if (bean instanceof GlobalFilter) {
+      return proxy(bean, beanName, filterInterceptor(name(bean), "global"));
+    }
+    if (bean instanceof WebFilter) {
+      return proxy(bean, beanName, filterInterceptor(name(bean), "web"));
+    }
+    if (bean instanceof GatewayFilterFactory<?> factory) {
+      return proxy(bean, beanName, factoryInterceptor(factory.name()));
+    }
+    return bean;
+  }
+
+  private MethodInterceptor filterInterceptor(String name, String kind) {
+    return invocation -> {
+      Object[] args = invocation.getArguments();
+      if (!"filter".equals(invocation.getMethod().getName()) || args.length != 2
+          || !(args[0] instanceof ServerWebExchange exchange)) {
+        return invocation.proceed();
+      }
+
+      FilterProfiler.Sample sample = profiler.start(name, kind, exchange);
+      if (sample == null) {
+        return invocation.proceed();
+      }
+
+      if (args[1] instanceof GatewayFilterChain chain) {
+        args[1] = (GatewayFilterChain) next -> sample.downstream(next, () -> chain.filter(next));
+      } else if (args[1] instanceof WebFilterChain chain) {
+        args[1] = (WebFilterChain) next -> sample.downstream(next, () -> chain.filter(next));
+      }
+      @SuppressWarnings("unchecked")
+      Mono<Void> result = (Mono<Void>) invocation.proceed();
+      return sample.finish(result);
+    };
+  }
+
+  private MethodInterceptor factoryInterceptor(String name) {
+    return invocation -> {
+      Object result = invocation.proceed();
+      if ("apply".equals(invocation.getMethod().getName()) && result instanceof GatewayFilter filter) {
+        return ProfiledGatewayFilter.wrap(filter, name, profiler);
+      }
+      return result;
+    };
+  }
+
+  private Object proxy(Object bean, String beanName, MethodInterceptor interceptor) {
+    try {
+      ProxyFactory proxyFactory = new ProxyFactory(bean);
+      proxyFactory.setProxyTargetClass(true);
+      proxyFactory.addAdvice(interceptor);
+      return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    } catch (AopConfigException | IllegalArgumentException e) {
+      log.debug("Filter {} cannot be profiled: {}", beanName, e.getMessage());
+      return bean;
+    }
+  }
+
+  private static String name(Object bean) {
+    return bean.getClass().getSimpleName();
+  }
+}
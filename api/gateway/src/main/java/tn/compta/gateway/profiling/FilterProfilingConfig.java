@@ -0,0 +1,31 @@
+package tn.compta.gateway.profiling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Opt-in per-filter timing profiler ({@code gateway.profiling.enabled=true}).
+ *
+ * Only {@code sample-rate} of requests are timed, so it can stay enabled in production.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "gateway.profiling", name = "enabled", havingValue = "true")
+public class FilterProfilingConfig {
+
+  /**
+   * Static: bean post-processors must not force early initialization of this configuration.
+   */
+  @Bean
+  public static FilterProfilingBeanPostProcessor filterProfilingBeanPostProcessor(
+      ObjectProvider<MeterRegistry> meterRegistry,
+      @Value("${gateway.profiling.sample-rate:0.01}") double sampleRate) {
+    log.info("Gateway filter profiling enabled (sample rate: {})", sampleRate);
+    return new FilterProfilingBeanPostProcessor(new FilterProfiler(meterRegistry, sampleRate));
+  }
+}
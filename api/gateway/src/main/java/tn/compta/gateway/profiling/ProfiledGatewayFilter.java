@@ -0,0 +1,56 @@
+package tn.compta.gateway.profiling;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Route filter decorator that reports its timings to {@link FilterProfiler}.
+ */
+final class ProfiledGatewayFilter implements GatewayFilter {
+
+  private final GatewayFilter delegate;
+  private final String name;
+  private final FilterProfiler profiler;
+
+  private ProfiledGatewayFilter(GatewayFilter delegate, String name, FilterProfiler profiler) {
+    this.delegate = delegate;
+    this.name = name;
+    this.profiler = profiler;
+  }
+
+  /**
+   * Wraps a filter produced by a route filter factory, keeping its order if it has one.
+   */
+  static GatewayFilter wrap(GatewayFilter filter, String name, FilterProfiler profiler) {
+    if (filter instanceof ProfiledGatewayFilter) {
+      return filter;
+    }
+    if (filter instanceof OrderedGatewayFilter ordered && ordered.getDelegate() instanceof ProfiledGatewayFilter) {
+      return filter;
+    }
+    GatewayFilter profiled = new ProfiledGatewayFilter(filter, name, profiler);
+    if (filter instanceof Ordered ordered) {
+      return new OrderedGatewayFilter(profiled, ordered.getOrder());
+    }
+    return profiled;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    FilterProfiler.Sample sample = profiler.start(name, "route", exchange);
+    if (sample == null) {
+      return delegate.filter(exchange, chain);
+    }
+    return sample.finish(delegate.filter(exchange,
+        next -> sample.downstream(next, () -> chain.filter(next))));
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
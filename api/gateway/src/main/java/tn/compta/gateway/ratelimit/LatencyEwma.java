@@ -0,0 +1,46 @@
+package tn.compta.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free exponentially weighted moving average of downstream latency.
+ */
+final class LatencyEwma {
+
+  private final double alpha;
+  private final AtomicLong averageBits = new AtomicLong(Double.doubleToRawLongBits(-1));
+
+  LatencyEwma(double alpha) {
+    this.alpha = alpha;
+  }
+
+  void record(long nanos) {
+    while (true) {
+      long bits = averageBits.get();
+      double current = Double.longBitsToDouble(bits);
+      double next = current < 0 ? nanos : current + alpha * (nanos - current);
+      if (averageBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Average latency in nanoseconds, or {@code -1} before the first sample.
+   */
+  double average() {
+    return Double.longBitsToDouble(averageBits.get());
+  }
+
+  /**
+   * How many times slower than {@code targetNanos} the downstream currently is,
+   * clamped to {@code [1, max]}.
+   */
+  double multiplier(long targetNanos, double max) {
+    double average = average();
+    if (average <= targetNanos) {
+      return 1.0;
+    }
+    return Math.min(max, average / targetNanos);
+  }
+}
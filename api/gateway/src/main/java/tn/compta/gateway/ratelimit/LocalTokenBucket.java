@@ -0,0 +1,125 @@
+package tn.compta.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free, allocation-free token bucket (GCRA formulation).
+ *
+ * The whole bucket state is a single "theoretical arrival time" updated by CAS:
+ * each token moves it forward by one emission interval, and a request is allowed
+ * while it stays within {@code burstCapacity} intervals of the current time.
+ *
+ * The bucket also tracks tokens consumed locally but not yet reported to Redis,
+ * and the state of the current global window (accessed only by the sync loop).
+ */
+public final class LocalTokenBucket {
+
+  private final long emissionIntervalNanos;
+  private final long burstToleranceNanos;
+  private final LongSupplier clock;
+
+  private final AtomicLong theoreticalArrival;
+  private final AtomicLong unsynced = new AtomicLong();
+  private volatile long lastAccessNanos;
+
+  // Global window bookkeeping, owned by the sync loop
+  private long syncWindow = -1;
+  private long localInWindow;
+  private long remoteSeenInWindow;
+
+  public LocalTokenBucket(double replenishRate, long burstCapacity, LongSupplier clock) {
+    if (replenishRate <= 0 || burstCapacity <= 0) {
+      throw new IllegalArgumentException("replenishRate and burstCapacity must be positive");
+    }
+    this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / replenishRate));
+    this.burstToleranceNanos = emissionIntervalNanos * burstCapacity;
+    this.clock = clock;
+    long now = clock.getAsLong();
+    this.theoreticalArrival = new AtomicLong(now);
+    this.lastAccessNanos = now;
+  }
+
+  /**
+   * Tries to take {@code cost} tokens.
+   *
+   * @return the tokens remaining after consumption, or {@code -1} if denied
+   */
+  public long tryConsume(long cost) {
+    while (true) {
+      long now = clock.getAsLong();
+      lastAccessNanos = now;
+      long tat = theoreticalArrival.get();
+      long newTat = Math.max(tat, now) + cost * emissionIntervalNanos;
+      long debt = newTat - now;
+      if (debt > burstToleranceNanos) {
+        return -1;
+      }
+      if (theoreticalArrival.compareAndSet(tat, newTat)) {
+        unsynced.addAndGet(cost);
+        return (burstToleranceNanos - debt) / emissionIntervalNanos;
+      }
+    }
+  }
+
+  /**
+   * Removes tokens consumed elsewhere (other gateway replicas), never below empty.
+   */
+  public void forceConsume(long tokens) {
+    if (tokens <= 0) {
+      return;
+    }
+    while (true) {
+      long now = clock.getAsLong();
+      long tat = theoreticalArrival.get();
+      long newTat = Math.min(Math.max(tat, now) + tokens * emissionIntervalNanos,
+          now + burstToleranceNanos);
+      if (newTat <= tat || theoreticalArrival.compareAndSet(tat, newTat)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Tokens currently available, without consuming any.
+   */
+  public long available() {
+    long now = clock.getAsLong();
+    long debt = Math.max(theoreticalArrival.get(), now) - now;
+    return Math.max(0, (burstToleranceNanos - debt) / emissionIntervalNanos);
+  }
+
+  public long drainUnsynced() {
+    return unsynced.getAndSet(0);
+  }
+
+  public void restoreUnsynced(long tokens) {
+    unsynced.addAndGet(tokens);
+  }
+
+  public boolean isActiveSince(long nanos) {
+    return lastAccessNanos >= nanos || unsynced.get() > 0;
+  }
+
+  public boolean isIdleSince(long nanos) {
+    return lastAccessNanos < nanos && unsynced.get() == 0;
+  }
+
+  /**
+   * Applies the global consumption reported by Redis for {@code window}.
+   * Tokens consumed by other replicas since the last sync are removed from this bucket.
+   */
+  void applyGlobalTotal(long window, long reportedDelta, long globalTotal) {
+    if (window != syncWindow) {
+      syncWindow = window;
+      localInWindow = 0;
+      remoteSeenInWindow = 0;
+    }
+    localInWindow += reportedDelta;
+    long remote = globalTotal - localInWindow;
+    if (remote > remoteSeenInWindow) {
+      forceConsume(remote - remoteSeenInWindow);
+      remoteSeenInWindow = remote;
+    }
+  }
+}
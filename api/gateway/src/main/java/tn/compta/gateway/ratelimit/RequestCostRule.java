@@ -0,0 +1,48 @@
+package tn.compta.gateway.ratelimit;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * Cost charged to the rate limit budget for one operation.
+ *
+ * Declared as {@code "<METHOD> <path-pattern>=<cost>"}, e.g. {@code "GET /invoices/{id}/export=10"}.
+ * The method may be {@code *} to match any method.
+ */
+public record RequestCostRule(HttpMethod method, PathPattern pattern, int cost) {
+
+  public RequestCostRule {
+    if (cost < 1) {
+      throw new IllegalArgumentException("Request cost must be at least 1: " + cost);
+    }
+  }
+
+  public static RequestCostRule parse(String definition) {
+    int eq = definition.lastIndexOf('=');
+    int space = definition.indexOf(' ');
+    if (eq < 0 || space < 0 || space > eq) {
+      throw new IllegalArgumentException(
+          "Invalid cost rule '" + definition + "', expected '<METHOD> <path-pattern>=<cost>'");
+    }
+
+    String method = definition.substring(0, space).trim();
+    String path = definition.substring(space + 1, eq).trim();
+    int cost = Integer.parseInt(definition.substring(eq + 1).trim());
+
+    return new RequestCostRule(
+        "*".equals(method) ? null : HttpMethod.valueOf(method.toUpperCase()),
+        PathPatternParser.defaultInstance.parse(path),
+        cost);
+  }
+
+  public boolean matches(HttpMethod requestMethod, PathContainer path) {
+    return (method == null || method.equals(requestMethod)) && pattern.matches(path);
+  }
+
+  @Override
+  public String toString() {
+    return (method == null ? "*" : method.name()) + " " + pattern.getPatternString() + "=" + cost;
+  }
+}
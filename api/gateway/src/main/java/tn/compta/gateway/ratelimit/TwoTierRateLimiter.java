@@ -0,0 +1,292 @@
+package tn.compta.gateway.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Two-tier rate limiter: in-process token buckets in front of Redis.
+ *
+ * Each (route, key) pair gets a lock-free {@link LocalTokenBucket} that answers
+ * {@code isAllowed} without any network hop. Every {@code sync-interval} the tokens
+ * consumed locally are pushed to Redis in a single script call covering every bucket
+ * with new consumption; the same call returns the global consumption for the current
+ * window of each recently active bucket, and tokens consumed by other gateway replicas
+ * are removed from the local bucket. Global limits are therefore enforced with at
+ * most one sync interval of lag. A tick with nothing to push sends nothing.
+ *
+ * When Redis is unreachable the limiter either keeps answering from the local tier
+ * ({@code fail-mode: open}) or denies every request ({@code fail-mode: closed}).
+ *
+ * Per-route configuration uses the {@code two-tier-rate-limiter.*} filter args,
+ * mirroring {@code redis-rate-limiter.*}.
+ */
+@Slf4j
+@Primary
+@Component
+public class TwoTierRateLimiter extends AbstractRateLimiter<TwoTierRateLimiter.Config> {
+
+  public static final String CONFIGURATION_PROPERTY_NAME = "two-tier-rate-limiter";
+
+  public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+  public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+  public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+  public static final String REQUESTED_TOKENS_HEADER = "X-RateLimit-Requested-Tokens";
+
+  private static final long WINDOW_MS = 1000;
+
+  /**
+   * Adds each bucket's batched consumption to its window counter (ARGV[i + 1] to KEYS[i],
+   * read-only when zero) and returns every global total, in key order.
+   * All keys share one hash tag so that the script stays single-slot on a Redis cluster.
+   */
+  @SuppressWarnings("rawtypes")
+  private static final RedisScript<List> SYNC_SCRIPT = RedisScript.of("""
+      local totals = {}
+      for i, key in ipairs(KEYS) do
+        local delta = tonumber(ARGV[i + 1])
+        if delta > 0 then
+          totals[i] = redis.call('INCRBY', key, delta)
+          redis.call('PEXPIRE', key, ARGV[1])
+        else
+          totals[i] = tonumber(redis.call('GET', key) or '0')
+        end
+      end
+      return totals
+      """, List.class);
+
+  /**
+   * One round trip to Redis: adds each delta to its key and returns every key's total, in order.
+   */
+  @FunctionalInterface
+  interface WindowCounters {
+    Mono<List<Long>> addAndGet(List<String> keys, List<Long> deltas);
+  }
+
+  public enum FailMode { OPEN, CLOSED }
+
+  private final WindowCounters windowCounters;
+  private final LongSupplier clock;
+  private final Map<String, LocalTokenBucket> buckets = new ConcurrentHashMap<>();
+  private final Config defaultConfig;
+  private final Duration syncInterval;
+  private final long idleTimeoutNanos;
+  private final FailMode failMode;
+
+  private final Counter allowedCounter;
+  private final Counter deniedCounter;
+  private final Counter syncErrorCounter;
+
+  private volatile boolean redisAvailable = true;
+  private Disposable syncLoop;
+
+  public TwoTierRateLimiter(
+      ReactiveStringRedisTemplate redisTemplate,
+      ConfigurationService configurationService,
+      MeterRegistry meterRegistry,
+      @Value("${gateway.rate-limit.default-replenish-rate:10}") int defaultReplenishRate,
+      @Value("${gateway.rate-limit.default-burst-capacity:20}") int defaultBurstCapacity,
+      @Value("${gateway.rate-limit.sync-interval-ms:100}") long syncIntervalMs,
+      @Value("${gateway.rate-limit.idle-timeout-ms:60000}") long idleTimeoutMs,
+      @Value("${gateway.rate-limit.fail-mode:OPEN}") FailMode failMode) {
+    this(redisCounters(redisTemplate), System::nanoTime, configurationService, meterRegistry,
+        defaultReplenishRate, defaultBurstCapacity, syncIntervalMs, idleTimeoutMs, failMode);
+  }
+
+  TwoTierRateLimiter(WindowCounters windowCounters, LongSupplier clock,
+      ConfigurationService configurationService, MeterRegistry meterRegistry,
+      int defaultReplenishRate, int defaultBurstCapacity, long syncIntervalMs, long idleTimeoutMs,
+      FailMode failMode) {
+    super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+    this.windowCounters = windowCounters;
+    this.clock = clock;
+    this.defaultConfig = new Config();
+    this.defaultConfig.setReplenishRate(defaultReplenishRate);
+    this.defaultConfig.setBurstCapacity(defaultBurstCapacity);
+    this.syncInterval = Duration.ofMillis(syncIntervalMs);
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+    this.failMode = failMode;
+
+    this.allowedCounter = Counter.builder("gateway.ratelimit.requests")
+        .tag("result", "allowed").register(meterRegistry);
+    this.deniedCounter = Counter.builder("gateway.ratelimit.requests")
+        .tag("result", "denied").register(meterRegistry);
+    this.syncErrorCounter = Counter.builder("gateway.ratelimit.sync.errors")
+        .description("Failed batches of local consumption pushed to Redis")
+        .register(meterRegistry);
+    Gauge.builder("gateway.ratelimit.local.buckets", buckets, Map::size)
+        .register(meterRegistry);
+    Gauge.builder("gateway.ratelimit.redis.available", this, l -> l.redisAvailable ? 1 : 0)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() {
+    log.info("Starting two-tier rate limiter (sync interval: {}, fail mode: {})", syncInterval, failMode);
+    syncLoop = Flux.interval(syncInterval)
+        .onBackpressureDrop()
+        .concatMap(tick -> syncAll())
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (syncLoop != null) {
+      syncLoop.dispose();
+    }
+  }
+
+  @Override
+  public Mono<Response> isAllowed(String routeId, String id) {
+    return Mono.just(check(routeId, id, 1));
+  }
+
+  /**
+   * Takes {@code cost} tokens from the local bucket of (route, id).
+   * A cost above the burst capacity is charged as a full bucket, so it can still pass once.
+   */
+  Response check(String routeId, String id, long requestedCost) {
+    Config config = getConfig().getOrDefault(routeId, defaultConfig);
+    long cost = Math.min(requestedCost, config.getBurstCapacity());
+
+    if (!redisAvailable && failMode == FailMode.CLOSED) {
+      deniedCounter.increment();
+      return new Response(false, headers(config, 0, cost));
+    }
+
+    LocalTokenBucket bucket = buckets.computeIfAbsent(routeId + ":" + id,
+        k -> new LocalTokenBucket(config.getReplenishRate(), config.getBurstCapacity(), clock));
+
+    long remaining = bucket.tryConsume(cost);
+    boolean allowed = remaining >= 0;
+    if (allowed) {
+      allowedCounter.increment();
+    } else {
+      deniedCounter.increment();
+      log.debug("Rate limit exceeded for route {} key {}", routeId, id);
+    }
+    return new Response(allowed, headers(config, allowed ? remaining : bucket.available(), cost));
+  }
+
+  private Map<String, String> headers(Config config, long remaining, long cost) {
+    return Map.of(
+        REMAINING_HEADER, Long.toString(remaining),
+        REPLENISH_RATE_HEADER, Integer.toString(config.getReplenishRate()),
+        BURST_CAPACITY_HEADER, Integer.toString(config.getBurstCapacity()),
+        REQUESTED_TOKENS_HEADER, Long.toString(cost));
+  }
+
+  /**
+   * Pushes local consumption to Redis and pulls back the global totals, in one round trip.
+   *
+   * Only buckets with unsynced tokens trigger a call; buckets active in the last two windows
+   * ride along read-only to learn what other replicas consumed. A failed call puts the tokens
+   * back, so the next tick retries it, and Redis is marked available again only once a call
+   * has actually returned.
+   */
+  Mono<Void> syncAll() {
+    long window = System.currentTimeMillis() / WINDOW_MS;
+    long now = clock.getAsLong();
+    long idleBefore = now - idleTimeoutNanos;
+    long activeSince = now - TimeUnit.MILLISECONDS.toNanos(WINDOW_MS * 2);
+
+    buckets.entrySet().removeIf(entry -> entry.getValue().isIdleSince(idleBefore));
+
+    List<LocalTokenBucket> batch = new ArrayList<>();
+    List<String> keys = new ArrayList<>();
+    List<Long> deltas = new ArrayList<>();
+    boolean pending = false;
+    for (Map.Entry<String, LocalTokenBucket> entry : buckets.entrySet()) {
+      LocalTokenBucket bucket = entry.getValue();
+      if (!bucket.isActiveSince(activeSince)) {
+        continue;
+      }
+      long delta = bucket.drainUnsynced();
+      pending |= delta > 0;
+      batch.add(bucket);
+      keys.add("request_rate_limiter.{two-tier}." + entry.getKey() + ".consumed." + window);
+      deltas.add(delta);
+    }
+
+    if (!pending) {
+      return Mono.empty();
+    }
+
+    return windowCounters.addAndGet(keys, deltas)
+        .doOnNext(totals -> {
+          for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).applyGlobalTotal(window, deltas.get(i), totals.get(i));
+          }
+          if (!redisAvailable) {
+            log.info("Redis reachable again, rate limits are global");
+            redisAvailable = true;
+          }
+        })
+        .then()
+        .onErrorResume(e -> {
+          for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).restoreUnsynced(deltas.get(i));
+          }
+          syncErrorCounter.increment();
+          if (redisAvailable) {
+            log.warn("Redis unreachable for rate limit sync ({}), fail mode {}", e.getMessage(), failMode);
+            redisAvailable = false;
+          }
+          return Mono.empty();
+        });
+  }
+
+  private static WindowCounters redisCounters(ReactiveStringRedisTemplate redisTemplate) {
+    return (keys, deltas) -> {
+      List<String> args = new ArrayList<>(deltas.size() + 1);
+      args.add(Long.toString(WINDOW_MS * 2));
+      deltas.forEach(delta -> args.add(Long.toString(delta)));
+      return redisTemplate.execute(SYNC_SCRIPT, keys, args)
+          .cast(Object.class)
+          .flatMapIterable(TwoTierRateLimiter::flatten)
+          .map(total -> total instanceof Number number ? number.longValue() : Long.parseLong(total.toString()))
+          .collectList();
+    };
+  }
+
+  /**
+   * The script's reply may come back as one list or as its elements, depending on the driver.
+   */
+  private static List<?> flatten(Object result) {
+    return result instanceof List<?> list ? list : List.of(result);
+  }
+
+  public boolean isRedisAvailable() {
+    return redisAvailable;
+  }
+
+  @Data
+  public static class Config {
+
+    private int replenishRate;
+
+    private int burstCapacity = 1;
+  }
+}
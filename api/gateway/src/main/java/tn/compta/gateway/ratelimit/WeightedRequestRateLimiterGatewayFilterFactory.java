@@ -0,0 +1,166 @@
+package tn.compta.gateway.ratelimit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter that charges a cost per operation instead of one token per request.
+ *
+ * Each route declares cost rules ({@code "<METHOD> <path-pattern>=<cost>"}); the first
+ * matching rule gives the cost, otherwise {@code default-cost}. With {@code latency-weighted}
+ * the cost is multiplied by how much slower than {@code target-latency-ms} the operation
+ * currently answers (EWMA, capped at {@code max-cost-multiplier}), so an endpoint that is
+ * already saturating its service gets more expensive.
+ *
+ * Tokens are taken from the {@link TwoTierRateLimiter} buckets; bucket sizes come from the
+ * same {@code two-tier-rate-limiter.*} args as {@code RequestRateLimiter}. The
+ * {@code X-RateLimit-*} headers report the remaining budget and the cost charged.
+ */
+@Slf4j
+@Component
+public class WeightedRequestRateLimiterGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<WeightedRequestRateLimiterGatewayFilterFactory.Config> {
+
+  private static final double EWMA_ALPHA = 0.2;
+
+  private final TwoTierRateLimiter rateLimiter;
+  private final KeyResolver defaultKeyResolver;
+  private final MeterRegistry meterRegistry;
+
+  public WeightedRequestRateLimiterGatewayFilterFactory(
+      TwoTierRateLimiter rateLimiter,
+      KeyResolver userKeyResolver,
+      MeterRegistry meterRegistry) {
+    super(Config.class);
+    this.rateLimiter = rateLimiter;
+    this.defaultKeyResolver = userKeyResolver;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "WeightedRequestRateLimiter";
+  }
+
+  @Override
+  public GatewayFilter apply(Config config) {
+    KeyResolver keyResolver = config.getKeyResolver() != null ? config.getKeyResolver() : defaultKeyResolver;
+    String routeId = config.getRouteId();
+    List<RequestCostRule> rules = config.getCosts().stream().map(RequestCostRule::parse).toList();
+
+    // One latency average per rule, plus one for requests charged the default cost
+    LatencyEwma[] latencies = new LatencyEwma[rules.size() + 1];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new LatencyEwma(EWMA_ALPHA);
+    }
+    long targetNanos = TimeUnit.MILLISECONDS.toNanos(config.getTargetLatencyMs());
+
+    DistributionSummary costSummary = DistributionSummary.builder("gateway.ratelimit.cost")
+        .description("Tokens charged per request")
+        .tag("route", String.valueOf(routeId))
+        .register(meterRegistry);
+
+    log.info("Weighted rate limiting for route {}: default cost {}, rules {}",
+        routeId, config.getDefaultCost(), rules);
+
+    return (exchange, chain) -> keyResolver.resolve(exchange)
+        .defaultIfEmpty(KeyResolver.EMPTY_KEY)
+        .flatMap(key -> {
+          if (KeyResolver.EMPTY_KEY.equals(key)) {
+            if (config.isDenyEmptyKey()) {
+              return deny(exchange, config.getEmptyKeyStatus());
+            }
+            return chain.filter(exchange);
+          }
+
+          int ruleIndex = matchRule(rules, exchange.getRequest());
+          int baseCost = ruleIndex < rules.size() ? rules.get(ruleIndex).cost() : config.getDefaultCost();
+          LatencyEwma latency = latencies[ruleIndex];
+
+          long cost = baseCost;
+          if (config.isLatencyWeighted()) {
+            cost = (long) Math.ceil(baseCost * latency.multiplier(targetNanos, config.getMaxCostMultiplier()));
+          }
+          costSummary.record(cost);
+
+          RateLimiter.Response response = rateLimiter.check(routeId, key, cost);
+          ServerHttpResponse httpResponse = exchange.getResponse();
+          response.getHeaders().forEach(httpResponse.getHeaders()::set);
+
+          if (!response.isAllowed()) {
+            log.debug("Request denied for key {} on route {} (cost {})", key, routeId, cost);
+            return deny(exchange, config.getStatusCode());
+          }
+
+          if (!config.isLatencyWeighted()) {
+            return chain.filter(exchange);
+          }
+          long start = System.nanoTime();
+          return chain.filter(exchange)
+              .doOnSuccess(v -> latency.record(System.nanoTime() - start));
+        });
+  }
+
+  /**
+   * Index of the first matching rule, or {@code rules.size()} when none matches.
+   */
+  private static int matchRule(List<RequestCostRule> rules, ServerHttpRequest request) {
+    if (rules.isEmpty()) {
+      return 0;
+    }
+    PathContainer path = request.getPath().pathWithinApplication();
+    for (int i = 0; i < rules.size(); i++) {
+      if (rules.get(i).matches(request.getMethod(), path)) {
+        return i;
+      }
+    }
+    return rules.size();
+  }
+
+  private static Mono<Void> deny(ServerWebExchange exchange, HttpStatus status) {
+    exchange.getResponse().setStatusCode(status);
+    return exchange.getResponse().setComplete();
+  }
+
+  @Data
+  public static class Config implements HasRouteId {
+
+    private KeyResolver keyResolver;
+
+    private int defaultCost = 1;
+
+    private List<String> costs = new ArrayList<>();
+
+    private boolean latencyWeighted = false;
+
+    private long targetLatencyMs = 200;
+
+    private double maxCostMultiplier = 4.0;
+
+    private HttpStatus statusCode = HttpStatus.TOO_MANY_REQUESTS;
+
+    private boolean denyEmptyKey = true;
+
+    private HttpStatus emptyKeyStatus = HttpStatus.FORBIDDEN;
+
+    private String routeId;
+  }
+}
@@ -0,0 +1,224 @@
+package tn.compta.gateway.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import tn.compta.gateway.routing.StreamingRoutes;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.cacheRequestBodyAndRequest;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.reset;
+
+/**
+ * Retries transient downstream failures within a per-route {@link RetryBudget}.
+ *
+ * A request is retried on one of {@code statuses}, a connection error or a timeout, up to
+ * {@code retries} times, but only while the route's budget allows it: retries are capped at
+ * {@code budget-percent} of recent successful requests (plus {@code min-retries-per-second}).
+ * A blip is retried transparently; a real outage gets no more traffic than the clients send.
+ * Backoff is exponential with full jitter, so retries of concurrent requests do not line up.
+ *
+ * Each retry goes through the load balancer again, usually reaching another instance.
+ */
+@Slf4j
+@Component
+public class BudgetedRetryGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<BudgetedRetryGatewayFilterFactory.Config> {
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+  public BudgetedRetryGatewayFilterFactory(MeterRegistry meterRegistry) {
+    super(Config.class);
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "BudgetedRetry";
+  }
+
+  @Override
+  public GatewayFilter apply(Config config) {
+    String routeId = String.valueOf(config.getRouteId());
+    RetryBudget budget = new RetryBudget(config.getBudgetPercent() / 100.0,
+        config.getMinRetriesPerSecond(), config.getBudgetWindowMs(), System::nanoTime);
+
+    // Routes are rebuilt on refresh: the gauge reads the current budget of the route
+    if (budgets.put(routeId, budget) == null) {
+      Gauge.builder("gateway.retry.budget", budgets, map -> {
+            RetryBudget current = map.get(routeId);
+            return current != null ? current.available() : Double.NaN;
+          })
+          .description("Retries currently allowed by the route's retry budget")
+          .tag("route", routeId)
+          .register(meterRegistry);
+    }
+    RouteRetry retry = new RouteRetry(routeId, config, budget);
+    log.info("Budgeted retry for route {}: {} retries max, budget {}% (+{}/s)",
+        routeId, config.getRetries(), config.getBudgetPercent(), config.getMinRetriesPerSecond());
+
+    return (exchange, chain) -> {
+      HttpMethod method = exchange.getRequest().getMethod();
+      if (!config.getMethods().contains(method)) {
+        return chain.filter(exchange);
+      }
+      if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+        return retry.attempt(exchange, chain, 0);
+      }
+      if (StreamingRoutes.isStreaming(exchange)) {
+        // Replaying would mean buffering the whole upload
+        return chain.filter(exchange);
+      }
+      // The body is read once and replayed on each attempt
+      return cacheRequestBodyAndRequest(exchange,
+          request -> retry.attempt(exchange.mutate().request(request).build(), chain, 0));
+    };
+  }
+
+  private final class RouteRetry {
+
+    private final String routeId;
+    private final Config config;
+    private final RetryBudget budget;
+    private final Counter retried;
+    private final Counter denied;
+
+    private RouteRetry(String routeId, Config config, RetryBudget budget) {
+      this.routeId = routeId;
+      this.config = config;
+      this.budget = budget;
+      this.retried = retryCounter("retried");
+      this.denied = retryCounter("denied");
+    }
+
+    private Counter retryCounter(String result) {
+      return Counter.builder("gateway.retry.requests")
+          .description("Retries sent, or refused by the retry budget")
+          .tag("route", routeId)
+          .tag("result", result)
+          .register(meterRegistry);
+    }
+
+    private Mono<Void> attempt(ServerWebExchange exchange, GatewayFilterChain chain, int iteration) {
+      return chain.filter(exchange).materialize().flatMap(signal -> {
+        Throwable error = signal.getThrowable();
+        Mono<Void> outcome = error != null ? Mono.error(error) : Mono.empty();
+        if (!isRetryable(exchange, error)) {
+          budget.onSuccess();
+          return outcome;
+        }
+        if (iteration >= config.getRetries() || exchange.getResponse().isCommitted()) {
+          return outcome;
+        }
+        if (!budget.tryRetry()) {
+          denied.increment();
+          log.debug("Retry budget of route {} spent, not retrying {}", routeId, exchange.getRequest().getPath());
+          return outcome;
+        }
+        retried.increment();
+        discardAttempt(exchange);
+        Duration backoff = backoff(iteration);
+        log.debug("Retrying {} on route {} in {}ms (attempt {})",
+            exchange.getRequest().getPath(), routeId, backoff.toMillis(), iteration + 2);
+        return Mono.delay(backoff).then(Mono.defer(() -> attempt(exchange, chain, iteration + 1)));
+      });
+    }
+
+    private boolean isRetryable(ServerWebExchange exchange, Throwable error) {
+      if (error == null) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        return status != null && config.getStatuses().contains(HttpStatus.resolve(status.value()));
+      }
+      for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+        if (cause instanceof IOException || cause instanceof TimeoutException) {
+          return true;
+        }
+        if (cause instanceof ResponseStatusException e
+            && config.getStatuses().contains(HttpStatus.resolve(e.getStatusCode().value()))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Full jitter: uniform between 0 and the exponential backoff of this attempt.
+     */
+    private Duration backoff(int iteration) {
+      double ceiling = Math.min(config.getMaxBackoffMs(),
+          config.getFirstBackoffMs() * Math.pow(config.getFactor(), iteration));
+      return Duration.ofMillis((long) (ThreadLocalRandom.current().nextDouble() * ceiling));
+    }
+  }
+
+  /**
+   * Forgets the failed attempt: its response headers and routing state, and closes its
+   * connection, whose body will never be read.
+   */
+  private static void discardAttempt(ServerWebExchange exchange) {
+    Connection connection = exchange.getAttribute(CLIENT_RESPONSE_CONN_ATTR);
+    if (connection != null) {
+      connection.dispose();
+      exchange.getAttributes().remove(CLIENT_RESPONSE_CONN_ATTR);
+    }
+    exchange.getResponse().setStatusCode(null);
+    reset(exchange);
+  }
+
+  @Data
+  public static class Config implements HasRouteId {
+
+    private int retries = 3;
+
+    private List<HttpStatus> statuses = List.of(
+        HttpStatus.BAD_GATEWAY, HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.GATEWAY_TIMEOUT);
+
+    private List<HttpMethod> methods = List.of(HttpMethod.GET);
+
+    /**
+     * Retries allowed, as a percentage of recent successful requests.
+     */
+    private int budgetPercent = 20;
+
+    /**
+     * Retries always allowed, whatever the traffic.
+     */
+    private double minRetriesPerSecond = 5;
+
+    /**
+     * How long a successful request counts towards the budget (exponential decay).
+     */
+    private long budgetWindowMs = 10_000;
+
+    private long firstBackoffMs = 10;
+
+    private long maxBackoffMs = 200;
+
+    private double factor = 2;
+
+    private String routeId;
+  }
+}
@@ -0,0 +1,74 @@
+package tn.compta.gateway.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that caps retries at a share of recent successful requests.
+ *
+ * Each successful request deposits {@code ratio} tokens and each retry withdraws one. Deposits
+ * decay exponentially over {@code window}, so the balance reflects recent traffic only: when a
+ * service starts failing, successes stop and the budget drains instead of multiplying load.
+ * A small reserve of {@code minPerSecond} retries is always available so that low-traffic
+ * routes can still ride out a blip.
+ */
+class RetryBudget {
+
+  private final double ratio;
+  private final double minPerSecond;
+  private final double windowNanos;
+  private final LongSupplier nanoClock;
+
+  private double balance;
+  private double reserve;
+  private long updatedAt;
+
+  RetryBudget(double ratio, double minPerSecond, long windowMillis, LongSupplier nanoClock) {
+    this.ratio = ratio;
+    this.minPerSecond = minPerSecond;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.nanoClock = nanoClock;
+    this.reserve = minPerSecond;
+    this.updatedAt = nanoClock.getAsLong();
+  }
+
+  /**
+   * A request completed without needing a retry.
+   */
+  synchronized void onSuccess() {
+    refresh();
+    balance += ratio;
+  }
+
+  /**
+   * Takes one retry from the budget, or returns false when it is spent.
+   */
+  synchronized boolean tryRetry() {
+    refresh();
+    if (balance >= 1) {
+      balance -= 1;
+      return true;
+    }
+    if (reserve >= 1) {
+      reserve -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  synchronized double available() {
+    refresh();
+    return balance + reserve;
+  }
+
+  private void refresh() {
+    long now = nanoClock.getAsLong();
+    long elapsed = now - updatedAt;
+    if (elapsed <= 0) {
+      return;
+    }
+    updatedAt = now;
+    balance *= Math.exp(-elapsed / windowNanos);
+    reserve = Math.min(minPerSecond, reserve + minPerSecond * elapsed / TimeUnit.SECONDS.toNanos(1));
+  }
+}
@@ -0,0 +1,38 @@
+package tn.compta.gateway.routing;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+/**
+ * {@link NettyRoutingFilter} that proxies each route with the client chosen by
+ * {@link UpstreamHttpClients} (HTTP/1.1 or h2c).
+ */
+public class ProtocolAwareNettyRoutingFilter extends NettyRoutingFilter {
+
+  private final UpstreamHttpClients upstreamHttpClients;
+
+  public ProtocolAwareNettyRoutingFilter(
+      HttpClient httpClient,
+      ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+      HttpClientProperties properties,
+      UpstreamHttpClients upstreamHttpClients) {
+    super(httpClient, headersFiltersProvider, properties);
+    this.upstreamHttpClients = upstreamHttpClients;
+  }
+
+  @Override
+  protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+    URI target = exchange.getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR);
+    return upstreamHttpClients.forRoute(route, target);
+  }
+}
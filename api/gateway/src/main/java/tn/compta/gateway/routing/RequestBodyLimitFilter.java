@@ -0,0 +1,79 @@
+package tn.compta.gateway.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Enforces the {@code max-request-bytes} route metadata.
+ *
+ * A declared Content-Length above the limit is rejected with 413 before anything is sent
+ * downstream. Chunked bodies are counted as they stream through and the upload is aborted
+ * with 413 as soon as the limit is crossed, without ever buffering the body.
+ */
+@Slf4j
+@Component
+public class RequestBodyLimitFilter implements GlobalFilter, Ordered {
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+    Long limit = route != null ? StreamingRoutes.longMetadata(route, StreamingRoutes.MAX_REQUEST_BYTES_ATTR) : null;
+    if (limit == null) {
+      return chain.filter(exchange);
+    }
+
+    ServerHttpRequest request = exchange.getRequest();
+    long contentLength = request.getHeaders().getContentLength();
+    if (contentLength > limit) {
+      log.debug("Rejecting {} bytes body on route {} (max {})", contentLength, route.getId(), limit);
+      return Mono.error(tooLarge(limit));
+    }
+    if (contentLength >= 0) {
+      // Netty does not read past the declared length
+      return chain.filter(exchange);
+    }
+
+    ServerHttpRequest limited = new ServerHttpRequestDecorator(request) {
+      @Override
+      public Flux<DataBuffer> getBody() {
+        AtomicLong received = new AtomicLong();
+        return super.getBody().handle((buffer, sink) -> {
+          if (received.addAndGet(buffer.readableByteCount()) > limit) {
+            DataBufferUtils.release(buffer);
+            sink.error(tooLarge(limit));
+          } else {
+            sink.next(buffer);
+          }
+        });
+      }
+    };
+    return chain.filter(exchange.mutate().request(limited).build());
+  }
+
+  private static ResponseStatusException tooLarge(long limit) {
+    return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Request body exceeds " + limit + " bytes");
+  }
+
+  @Override
+  public int getOrder() {
+    // Before route filters that might read the body
+    return Ordered.HIGHEST_PRECEDENCE + 3;
+  }
+}
@@ -0,0 +1,159 @@
+package tn.compta.gateway.routing;
+
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection limit of a route's upstream pool that can change while the pool is in use.
+ *
+ * Reactor Netty fixes {@code maxConnections} when a pool is built, so the limit is given to
+ * the pool as its allocation strategy instead. The pool keeps one sub-pool per service instance
+ * and copies the strategy for each: like {@code max-connections}, the limit applies per instance.
+ * Lowering it closes nothing; the pool stops opening connections until enough of them have
+ * been released or evicted as idle.
+ *
+ * {@link #adjust} is the resize step run by {@link RouteConnectionPools}: it grows the limit
+ * quickly when acquires hit it and had to wait, and shrinks it slowly after a run of quiet
+ * intervals, always within {@code [minLimit, maxLimit]}.
+ */
+public final class ResizablePoolLimit {
+
+  private final int minLimit;
+  private final int maxLimit;
+  private volatile int limit;
+  private final LongAdder limitReached = new LongAdder();
+
+  // Controller state, only touched by the resize loop
+  private long lastLimitReached;
+  private int quietIntervals;
+
+  ResizablePoolLimit(int initialLimit, int minLimit, int maxLimit) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Invalid pool limit bounds [" + minLimit + ", " + maxLimit + "]");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = clamp(initialLimit);
+  }
+
+  static ResizablePoolLimit fixed(int limit) {
+    return new ResizablePoolLimit(limit, limit, limit);
+  }
+
+  /**
+   * A new strategy bound to this limit, for one pool.
+   */
+  ConnectionProvider.AllocationStrategy<?> allocationStrategy() {
+    return new Strategy();
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  /**
+   * Times a pool asked for a connection and was refused because the limit was reached.
+   */
+  public long limitReached() {
+    return limitReached.sum();
+  }
+
+  /**
+   * One resize step.
+   *
+   * @param acquireWaitMillis mean time acquires waited for a connection during the interval
+   * @param activeConnections connections in use at the end of the interval (busiest instance)
+   * @return the new limit
+   */
+  int adjust(double acquireWaitMillis, int activeConnections, double targetAcquireWaitMillis,
+      int quietIntervalsBeforeShrink) {
+    long reached = limitReached.sum();
+    boolean saturated = reached > lastLimitReached;
+    lastLimitReached = reached;
+
+    int current = limit;
+    if (saturated && acquireWaitMillis > targetAcquireWaitMillis) {
+      quietIntervals = 0;
+      return resize(current + Math.max(1, current / 4));
+    }
+    if (saturated || activeConnections * 2 > current) {
+      quietIntervals = 0;
+      return current;
+    }
+    if (++quietIntervals < quietIntervalsBeforeShrink) {
+      return current;
+    }
+    quietIntervals = 0;
+    return resize(Math.max(activeConnections * 2, current - Math.max(1, current / 10)));
+  }
+
+  private int resize(int target) {
+    int resized = clamp(target);
+    limit = resized;
+    return resized;
+  }
+
+  private int clamp(int value) {
+    return Math.max(minLimit, Math.min(maxLimit, value));
+  }
+
+  /**
+   * Permits of one pool: one per open connection, idle or in use.
+   */
+  private final class Strategy implements ConnectionProvider.AllocationStrategy<Strategy> {
+
+    private final AtomicInteger granted = new AtomicInteger();
+
+    @Override
+    public Strategy copy() {
+      return new Strategy();
+    }
+
+    @Override
+    public int estimatePermitCount() {
+      // Polled by the pool on every acquire and release: a probe, not a refusal
+      return Math.max(0, limit - granted.get());
+    }
+
+    @Override
+    public int getPermits(int desired) {
+      if (desired <= 0) {
+        return 0;
+      }
+      for (;;) {
+        int current = granted.get();
+        int available = limit - current;
+        if (available <= 0) {
+          limitReached.increment();
+          return 0;
+        }
+        int permits = Math.min(desired, available);
+        if (granted.compareAndSet(current, current + permits)) {
+          return permits;
+        }
+      }
+    }
+
+    @Override
+    public int permitGranted() {
+      return granted.get();
+    }
+
+    @Override
+    public int permitMinimum() {
+      return 0;
+    }
+
+    @Override
+    public int permitMaximum() {
+      return limit;
+    }
+
+    @Override
+    public void returnPermits(int returned) {
+      granted.updateAndGet(current -> Math.max(0, current - returned));
+    }
+  }
+}
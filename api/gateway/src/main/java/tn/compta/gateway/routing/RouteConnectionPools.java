@@ -0,0 +1,217 @@
+package tn.compta.gateway.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One HTTP/1.1 connection pool per route, instead of a single pool shared by every service.
+ *
+ * Each pool is named after its route, so Reactor Netty's pool meters
+ * ({@code reactor.netty.connection.provider.active|idle|pending.connections} and the acquire
+ * time {@code reactor.netty.connection.provider.pending.connections.time}) are tagged
+ * {@code name=<route id>}. A slow service exhausts its own pool, not the others'. Acquires
+ * that cannot get a connection fail after {@code pending-acquire-timeout-ms} instead of
+ * stalling for 45 seconds.
+ *
+ * The per-instance limit is {@code max-connections}, or the route's {@code pool-max-connections}
+ * metadata. With {@code auto-size.enabled}, it is resized every {@code interval-ms} within
+ * {@code [min-connections, max-connections]} (see {@link ResizablePoolLimit#adjust}), from the
+ * acquire wait time and the connections in use.
+ */
+@Slf4j
+@Component
+public class RouteConnectionPools {
+
+  public static final String POOL_MAX_CONNECTIONS_ATTR = "pool-max-connections";
+
+  static final String ACTIVE_CONNECTIONS = "reactor.netty.connection.provider.active.connections";
+  static final String ACQUIRE_TIME = "reactor.netty.connection.provider.pending.connections.time";
+
+  private final MeterRegistry meterRegistry;
+  private final int maxConnections;
+  private final Duration pendingAcquireTimeout;
+  private final int maxPendingAcquires;
+  private final Duration maxIdleTime;
+  private final Duration evictInterval;
+  private final boolean autoSize;
+  private final int autoSizeMinConnections;
+  private final int autoSizeMaxConnections;
+  private final Duration autoSizeInterval;
+  private final double targetAcquireWaitMillis;
+  private final int quietIntervalsBeforeShrink;
+  private final Map<String, RoutePool> pools = new ConcurrentHashMap<>();
+
+  private Disposable resizeLoop;
+
+  public RouteConnectionPools(
+      MeterRegistry meterRegistry,
+      @Value("${gateway.upstream.pool.max-connections:100}") int maxConnections,
+      @Value("${gateway.upstream.pool.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+      @Value("${gateway.upstream.pool.max-pending-acquires:1000}") int maxPendingAcquires,
+      @Value("${gateway.upstream.pool.max-idle-time-ms:30000}") long maxIdleTimeMs,
+      @Value("${gateway.upstream.pool.evict-interval-ms:30000}") long evictIntervalMs,
+      @Value("${gateway.upstream.pool.auto-size.enabled:false}") boolean autoSize,
+      @Value("${gateway.upstream.pool.auto-size.min-connections:10}") int autoSizeMinConnections,
+      @Value("${gateway.upstream.pool.auto-size.max-connections:500}") int autoSizeMaxConnections,
+      @Value("${gateway.upstream.pool.auto-size.interval-ms:5000}") long autoSizeIntervalMs,
+      @Value("${gateway.upstream.pool.auto-size.target-acquire-wait-ms:5}") double targetAcquireWaitMillis,
+      @Value("${gateway.upstream.pool.auto-size.quiet-intervals-before-shrink:6}") int quietIntervalsBeforeShrink) {
+    this.meterRegistry = meterRegistry;
+    this.maxConnections = maxConnections;
+    this.pendingAcquireTimeout = Duration.ofMillis(pendingAcquireTimeoutMs);
+    this.maxPendingAcquires = maxPendingAcquires;
+    this.maxIdleTime = Duration.ofMillis(maxIdleTimeMs);
+    this.evictInterval = Duration.ofMillis(evictIntervalMs);
+    this.autoSize = autoSize;
+    this.autoSizeMinConnections = autoSizeMinConnections;
+    this.autoSizeMaxConnections = autoSizeMaxConnections;
+    this.autoSizeInterval = Duration.ofMillis(autoSizeIntervalMs);
+    this.targetAcquireWaitMillis = targetAcquireWaitMillis;
+    this.quietIntervalsBeforeShrink = quietIntervalsBeforeShrink;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!autoSize) {
+      return;
+    }
+    log.info("Upstream pools resized every {} within [{}, {}] connections (target acquire wait {} ms)",
+        autoSizeInterval, autoSizeMinConnections, autoSizeMaxConnections, targetAcquireWaitMillis);
+    resizeLoop = Flux.interval(autoSizeInterval)
+        .onBackpressureDrop()
+        .subscribe(tick -> pools.values().forEach(this::resize));
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (resizeLoop != null) {
+      resizeLoop.dispose();
+    }
+    pools.values().forEach(pool -> pool.provider.disposeLater().block(Duration.ofSeconds(5)));
+  }
+
+  /**
+   * The connection pool of this route, created on first use.
+   */
+  public ConnectionProvider provider(Route route) {
+    return pools.computeIfAbsent(route.getId(), id -> new RoutePool(id, limitFor(route))).provider;
+  }
+
+  private ResizablePoolLimit limitFor(Route route) {
+    Object value = route.getMetadata().get(POOL_MAX_CONNECTIONS_ATTR);
+    int initial = value instanceof Number number ? number.intValue()
+        : value != null ? Integer.parseInt(value.toString()) : maxConnections;
+    if (!autoSize) {
+      return ResizablePoolLimit.fixed(initial);
+    }
+    return new ResizablePoolLimit(initial, autoSizeMinConnections, autoSizeMaxConnections);
+  }
+
+  private void resize(RoutePool pool) {
+    try {
+      int before = pool.limit.limit();
+      int after = pool.limit.adjust(pool.acquireWaitMillis(), pool.activeConnections(),
+          targetAcquireWaitMillis, quietIntervalsBeforeShrink);
+      if (after > before) {
+        pool.grown.increment();
+        log.info("Upstream pool {} grown from {} to {} connections", pool.routeId, before, after);
+      } else if (after < before) {
+        pool.shrunk.increment();
+        log.info("Upstream pool {} shrunk from {} to {} connections", pool.routeId, before, after);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not resize upstream pool {}: {}", pool.routeId, e.getMessage());
+    }
+  }
+
+  /**
+   * A route's pool, its limit and the meters the resize loop reads.
+   */
+  private final class RoutePool {
+
+    private final String routeId;
+    private final ResizablePoolLimit limit;
+    private final ConnectionProvider provider;
+    private final Counter grown;
+    private final Counter shrunk;
+    private long lastAcquires;
+    private double lastAcquireMillis;
+
+    private RoutePool(String routeId, ResizablePoolLimit limit) {
+      this.routeId = routeId;
+      this.limit = limit;
+      this.provider = ConnectionProvider.builder(routeId)
+          .allocationStrategy(limit.allocationStrategy())
+          .pendingAcquireTimeout(pendingAcquireTimeout)
+          .pendingAcquireMaxCount(maxPendingAcquires)
+          .maxIdleTime(maxIdleTime)
+          .evictInBackground(evictInterval)
+          .metrics(true)
+          .build();
+
+      Gauge.builder("gateway.upstream.pool.limit", limit, ResizablePoolLimit::limit)
+          .description("Connection limit per service instance of the route's pool")
+          .tag("route", routeId)
+          .register(meterRegistry);
+      FunctionCounter.builder("gateway.upstream.pool.limit.reached", limit, ResizablePoolLimit::limitReached)
+          .description("Times the route's pool could not open a connection because of its limit")
+          .tag("route", routeId)
+          .register(meterRegistry);
+      this.grown = resizes("up");
+      this.shrunk = resizes("down");
+      log.info("Upstream pool for route {}: {} connections per instance{}", routeId, limit.limit(),
+          autoSize ? " (auto-sized)" : "");
+    }
+
+    private Counter resizes(String direction) {
+      return Counter.builder("gateway.upstream.pool.resizes")
+          .tag("route", routeId)
+          .tag("direction", direction)
+          .register(meterRegistry);
+    }
+
+    /**
+     * Mean acquire time since the previous call, over every instance of the route.
+     */
+    private double acquireWaitMillis() {
+      long acquires = 0;
+      double totalMillis = 0;
+      for (Timer timer : meterRegistry.find(ACQUIRE_TIME).tag("name", routeId).timers()) {
+        acquires += timer.count();
+        totalMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+      }
+      long newAcquires = acquires - lastAcquires;
+      double newMillis = totalMillis - lastAcquireMillis;
+      lastAcquires = acquires;
+      lastAcquireMillis = totalMillis;
+      return newAcquires > 0 ? newMillis / newAcquires : 0;
+    }
+
+    /**
+     * Connections in use on the busiest instance of the route.
+     */
+    private int activeConnections() {
+      return (int) meterRegistry.find(ACTIVE_CONNECTIONS).tag("name", routeId).gauges().stream()
+          .mapToDouble(Gauge::value)
+          .max()
+          .orElse(0);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package tn.compta.gateway.routing;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Route metadata for large bodies (documents, exports).
+ *
+ * <ul>
+ *   <li>{@code streaming: true}: bodies are proxied buffer by buffer and never aggregated;
+ *   filters that read or copy bodies (response cache, coalescing, hedging, body replay for
+ *   retries) step aside for the route;</li>
+ *   <li>{@code chunk-bytes}: size of the buffers read from the downstream connection
+ *   (streaming routes only);</li>
+ *   <li>{@code max-request-bytes}: request body limit, enforced on any route.</li>
+ * </ul>
+ */
+public final class StreamingRoutes {
+
+  public static final String STREAMING_ATTR = "streaming";
+  public static final String CHUNK_BYTES_ATTR = "chunk-bytes";
+  public static final String MAX_REQUEST_BYTES_ATTR = "max-request-bytes";
+
+  private StreamingRoutes() {
+  }
+
+  public static boolean isStreaming(Route route) {
+    return route != null && Boolean.parseBoolean(String.valueOf(route.getMetadata().get(STREAMING_ATTR)));
+  }
+
+  public static boolean isStreaming(ServerWebExchange exchange) {
+    return isStreaming((Route) exchange.getAttribute(GATEWAY_ROUTE_ATTR));
+  }
+
+  /**
+   * Numeric metadata value, or null when absent.
+   */
+  static Long longMetadata(Route route, String name) {
+    Object value = route.getMetadata().get(name);
+    if (value instanceof Number number) {
+      return number.longValue();
+    }
+    return value != null ? Long.valueOf(value.toString().trim()) : null;
+  }
+}
@@ -0,0 +1,178 @@
+package tn.compta.gateway.routing;
+
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.Http2AllocationStrategy;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpResponseDecoderSpec;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+
+/**
+ * Chooses the HTTP client used to reach a route's downstream.
+ *
+ * Routes use HTTP/1.1 over their own connection pool (see {@link RouteConnectionPools}) unless
+ * their metadata sets {@code upstream-protocol}:
+ * <ul>
+ *   <li>{@code h2c}: HTTP/2 over cleartext negotiated with an HTTP/1.1 Upgrade on each new
+ *   connection, falling back to HTTP/1.1 when the service does not support it;</li>
+ *   <li>{@code h2c-prior-knowledge}: HTTP/2 from the first byte (the service must speak h2c).</li>
+ * </ul>
+ * The setting is ignored for {@code https} targets, which keep the gateway's client.
+ * Streaming routes (see {@link StreamingRoutes}) may also set {@code chunk-bytes}.
+ * HTTP/2 routes share a separate pool where each connection carries up to
+ * {@code gateway.upstream.h2c.max-concurrent-streams} multiplexed requests, so a handful of
+ * long-lived sockets per service replaces hundreds of HTTP/1.1 connections.
+ */
+@Slf4j
+@Component
+public class UpstreamHttpClients implements DisposableBean {
+
+  public static final String UPSTREAM_PROTOCOL_ATTR = "upstream-protocol";
+
+  private final HttpClient http1Client;
+  private final HttpClientProperties properties;
+  private final ConnectionProvider h2cConnectionProvider;
+  private final RouteConnectionPools routePools;
+  private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+  public UpstreamHttpClients(
+      HttpClient gatewayHttpClient,
+      HttpClientProperties properties,
+      RouteConnectionPools routePools,
+      @Value("${gateway.upstream.h2c.max-connections:8}") int maxConnections,
+      @Value("${gateway.upstream.h2c.max-concurrent-streams:100}") int maxConcurrentStreams,
+      @Value("${gateway.upstream.h2c.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+      @Value("${gateway.upstream.h2c.max-idle-time-ms:300000}") long maxIdleTimeMs) {
+    this.http1Client = gatewayHttpClient;
+    this.properties = properties;
+    this.routePools = routePools;
+    this.h2cConnectionProvider = ConnectionProvider.builder("gateway-h2c")
+        .maxConnections(maxConnections)
+        .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+        .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+        .allocationStrategy(Http2AllocationStrategy.builder()
+            .maxConnections(maxConnections)
+            .minConnections(1)
+            .maxConcurrentStreams(maxConcurrentStreams)
+            .build())
+        .metrics(true)
+        .build();
+    log.info("h2c upstream pool: max {} connections x {} streams", maxConnections, maxConcurrentStreams);
+  }
+
+  /**
+   * Returns the client for this route, with the route's {@code connect-timeout} applied.
+   * {@code target} is the resolved request URL (an instance for {@code lb://} routes).
+   */
+  public HttpClient forRoute(Route route, URI target) {
+    Object protocol = route.getMetadata().getOrDefault(UPSTREAM_PROTOCOL_ATTR, "http1");
+    if ("https".equals(target.getScheme())) {
+      // Route pools and h2c are cleartext only: TLS upstreams keep the gateway's client
+      protocol = "tls";
+    }
+    Integer connectTimeout = connectTimeout(route);
+    Long chunkBytes = StreamingRoutes.isStreaming(route)
+        ? StreamingRoutes.longMetadata(route, StreamingRoutes.CHUNK_BYTES_ATTR)
+        : null;
+    if ("tls".equals(protocol.toString()) && connectTimeout == null && chunkBytes == null) {
+      return http1Client;
+    }
+    // Built once per route: each HttpClient derivation copies its configuration
+    String name = protocol.toString();
+    return clients.computeIfAbsent(route.getId() + '|' + name + '|' + connectTimeout + '|' + chunkBytes,
+        key -> {
+          HttpClient client = switch (name) {
+            case "tls" -> connectTimeout != null
+                ? http1Client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                : http1Client;
+            case "http1" -> routeHttp1Client(route, connectTimeout);
+            case "h2c" -> h2cClient(route.getId(), false, connectTimeout);
+            case "h2c-prior-knowledge" -> h2cClient(route.getId(), true, connectTimeout);
+            default -> throw new IllegalArgumentException(
+                "Unknown upstream-protocol '" + name + "' for route " + route.getId());
+          };
+          return chunkBytes != null ? withChunkSize(route.getId(), client, chunkBytes.intValue()) : client;
+        });
+  }
+
+  /**
+   * Reads the downstream body in buffers of up to {@code chunkBytes}, passed as-is to the
+   * client connection: fewer, larger pooled direct buffers for large downloads.
+   */
+  private HttpClient withChunkSize(String routeId, HttpClient client, int chunkBytes) {
+    log.info("Route {} streams bodies in chunks of up to {} bytes", routeId, chunkBytes);
+    return client
+        .option(ChannelOption.RCVBUF_ALLOCATOR,
+            new AdaptiveRecvByteBufAllocator(Math.min(1024, chunkBytes), chunkBytes, chunkBytes))
+        .httpResponseDecoder(spec -> headerLimits(spec).maxChunkSize(chunkBytes));
+  }
+
+  /**
+   * A new decoder spec: keeps the gateway's header limits.
+   */
+  private HttpResponseDecoderSpec headerLimits(HttpResponseDecoderSpec spec) {
+    if (properties.getMaxInitialLineLength() != null) {
+      spec.maxInitialLineLength((int) properties.getMaxInitialLineLength().toBytes());
+    }
+    if (properties.getMaxHeaderSize() != null) {
+      spec.maxHeaderSize((int) properties.getMaxHeaderSize().toBytes());
+    }
+    return spec;
+  }
+
+  private HttpClient routeHttp1Client(Route route, Integer connectTimeout) {
+    HttpClient client = HttpClient.create(routePools.provider(route))
+        .compress(properties.isCompression())
+        .httpResponseDecoder(this::headerLimits);
+    if (properties.isWiretap()) {
+      client = client.wiretap(true);
+    }
+    Integer timeout = connectTimeout != null ? connectTimeout : properties.getConnectTimeout();
+    if (timeout != null) {
+      client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeout);
+    }
+    return client;
+  }
+
+  private HttpClient h2cClient(String routeId, boolean priorKnowledge, Integer connectTimeout) {
+    HttpClient client = HttpClient.create(h2cConnectionProvider)
+        .protocol(priorKnowledge
+            ? new HttpProtocol[] {HttpProtocol.H2C}
+            : new HttpProtocol[] {HttpProtocol.H2C, HttpProtocol.HTTP11})
+        .compress(properties.isCompression());
+    Integer timeout = connectTimeout != null ? connectTimeout : properties.getConnectTimeout();
+    if (timeout != null) {
+      client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeout);
+    }
+    log.info("Route {} uses HTTP/2 cleartext upstream ({})", routeId,
+        priorKnowledge ? "prior knowledge" : "upgrade, HTTP/1.1 fallback");
+    return client;
+  }
+
+  private static Integer connectTimeout(Route route) {
+    Object value = route.getMetadata().get(CONNECT_TIMEOUT_ATTR);
+    if (value instanceof Number number) {
+      return number.intValue();
+    }
+    return value != null ? Integer.valueOf(value.toString()) : null;
+  }
+
+  @Override
+  public void destroy() {
+    h2cConnectionProvider.disposeLater().block(Duration.ofSeconds(5));
+  }
+}
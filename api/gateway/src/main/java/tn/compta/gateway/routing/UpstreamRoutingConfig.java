@@ -0,0 +1,31 @@
+package tn.compta.gateway.routing;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+
+/**
+ * Replaces the gateway's routing filter with {@link ProtocolAwareNettyRoutingFilter}.
+ *
+ * The default one is disabled with
+ * {@code spring.cloud.gateway.server.webflux.global-filter.netty-routing.enabled=false};
+ * the bean keeps its name so that startup fails if both were ever registered.
+ */
+@Configuration
+public class UpstreamRoutingConfig {
+
+  @Bean
+  public NettyRoutingFilter routingFilter(
+      HttpClient gatewayHttpClient,
+      ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+      HttpClientProperties properties,
+      UpstreamHttpClients upstreamHttpClients) {
+    return new ProtocolAwareNettyRoutingFilter(gatewayHttpClient, headersFilters, properties, upstreamHttpClients);
+  }
+}
@@ -0,0 +1,57 @@
+package tn.compta.gateway.security;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable view of the claims of the verified bearer token.
+ *
+ * Built once per request after authentication and published as the
+ * {@link #ATTRIBUTE} exchange attribute, so that gateway filters and the rate-limit
+ * key resolver never re-parse the token or query the reactive security context.
+ */
+public record GatewayClaims(
+    String algorithm,
+    String subject,
+    String username,
+    String email,
+    List<String> roles,
+    String tenantId,
+    String issuer,
+    String tokenId,
+    Instant issuedAt,
+    Instant expiresAt
+) {
+
+  public static final String ATTRIBUTE = GatewayClaims.class.getName();
+
+  public GatewayClaims {
+    roles = roles == null ? List.of() : List.copyOf(roles);
+  }
+
+  public static GatewayClaims fromJwt(Jwt jwt) {
+    Object algorithm = jwt.getHeaders().get("alg");
+    return new GatewayClaims(
+        algorithm != null ? algorithm.toString() : null,
+        jwt.getSubject(),
+        jwt.getClaimAsString("username"),
+        jwt.getClaimAsString("email"),
+        jwt.getClaimAsStringList("roles"),
+        jwt.getClaimAsString("tenantId"),
+        jwt.getClaimAsString("iss"),
+        jwt.getId(),
+        jwt.getIssuedAt(),
+        jwt.getExpiresAt()
+    );
+  }
+
+  /**
+   * Returns the claims of the authenticated caller, or null for anonymous requests.
+   */
+  public static GatewayClaims from(ServerWebExchange exchange) {
+    return exchange.getAttribute(ATTRIBUTE);
+  }
+}
@@ -0,0 +1,29 @@
+package tn.compta.gateway.security;
+
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Publishes the {@link GatewayClaims} of the authenticated caller as an exchange attribute.
+ *
+ * Registered in the security chain right after authentication: this is the only place
+ * where the reactive security context is read for a request.
+ */
+public class GatewayClaimsWebFilter implements WebFilter {
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    return ReactiveSecurityContextHolder.getContext()
+        .doOnNext(context -> {
+          if (context.getAuthentication() instanceof JwtAuthenticationToken token
+              && token.isAuthenticated()) {
+            exchange.getAttributes().put(GatewayClaims.ATTRIBUTE, GatewayClaims.fromJwt(token.getToken()));
+          }
+        })
+        .then(Mono.defer(() -> chain.filter(exchange)));
+  }
+}
@@ -0,0 +1,147 @@
+package tn.compta.gateway.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.config.OAuth2TokenValidator;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Single decode stage for every bearer token reaching the gateway.
+ *
+ * The token is parsed exactly once and dispatched on its {@code alg} header:
+ * <ul>
+ *   <li>HS256 - tokens issued by auth-service, verified with the shared secret</li>
+ *   <li>RS256 - tokens issued by the OAuth2 server, verified through
+ *       {@link OAuth2TokenValidator} (JWKS keys and verified-token cache)</li>
+ * </ul>
+ * RS256 tokens already present in the {@link VerifiedTokenCache} are not parsed at all.
+ * Verified tokens of either kind are then rejected if listed in the {@link TokenRevocationList}.
+ */
+@Slf4j
+public class GatewayJwtDecoder implements ReactiveJwtDecoder {
+
+  private final MACVerifier macVerifier;
+  private final org.springframework.security.oauth2.core.OAuth2TokenValidator<Jwt> hmacValidator;
+  private final org.springframework.security.oauth2.core.OAuth2TokenValidator<Jwt> rsaValidator;
+  private final OAuth2TokenValidator oauth2TokenValidator;
+  private final VerifiedTokenCache verifiedTokenCache;
+  private final TokenRevocationList revocationList;
+
+  public GatewayJwtDecoder(
+      byte[] hmacSecret,
+      String hmacIssuer,
+      OAuth2TokenValidator oauth2TokenValidator,
+      VerifiedTokenCache verifiedTokenCache,
+      TokenRevocationList revocationList) {
+    try {
+      this.macVerifier = new MACVerifier(hmacSecret);
+    } catch (JOSEException e) {
+      throw new IllegalStateException("Invalid HS256 secret: " + e.getMessage(), e);
+    }
+    this.hmacValidator = JwtValidators.createDefaultWithIssuer(hmacIssuer);
+    this.rsaValidator = JwtValidators.createDefault();
+    this.oauth2TokenValidator = oauth2TokenValidator;
+    this.verifiedTokenCache = verifiedTokenCache;
+    this.revocationList = revocationList;
+  }
+
+  @Override
+  public Mono<Jwt> decode(String token) {
+    return verify(token).map(this::rejectIfRevoked);
+  }
+
+  private Mono<Jwt> verify(String token) {
+    String digest = verifiedTokenCache.digest(token);
+    VerifiedTokenCache.VerifiedToken cached = verifiedTokenCache.get(digest);
+    if (cached != null) {
+      return Mono.just(toJwt(token, Map.of("alg", JWSAlgorithm.RS256.getName(), "kid",
+          cached.keyId()), cached.claims()));
+    }
+
+    SignedJWT jwt;
+    try {
+      jwt = SignedJWT.parse(token);
+    } catch (ParseException e) {
+      return Mono.error(new BadJwtException("Malformed token: " + e.getMessage(), e));
+    }
+
+    JWSAlgorithm algorithm = jwt.getHeader().getAlgorithm();
+    if (JWSAlgorithm.HS256.equals(algorithm)) {
+      return Mono.fromCallable(() -> decodeHmac(token, jwt));
+    }
+    if (JWSAlgorithm.RS256.equals(algorithm)) {
+      return decodeRsa(token, jwt, digest);
+    }
+    return Mono.error(new BadJwtException("Unsupported JWT algorithm: " + algorithm));
+  }
+
+  private Jwt rejectIfRevoked(Jwt jwt) {
+    if (revocationList.isRevoked(jwt.getSubject(), jwt.getId(), jwt.getIssuedAt())) {
+      throw new BadJwtException("Token has been revoked");
+    }
+    return jwt;
+  }
+
+  private Jwt decodeHmac(String token, SignedJWT jwt) {
+    try {
+      if (!jwt.verify(macVerifier)) {
+        throw new BadJwtException("Invalid JWT signature");
+      }
+      return validate(toJwt(token, jwt.getHeader().toJSONObject(), jwt.getJWTClaimsSet()),
+          hmacValidator);
+    } catch (JOSEException | ParseException e) {
+      throw new BadJwtException("Invalid JWT: " + e.getMessage(), e);
+    }
+  }
+
+  private Mono<Jwt> decodeRsa(String token, SignedJWT jwt, String digest) {
+    return oauth2TokenValidator.verify(jwt, digest)
+        .switchIfEmpty(Mono.error(() -> new BadJwtException("Invalid or expired RS256 token")))
+        .map(claims -> validate(toJwt(token, jwt.getHeader().toJSONObject(), claims),
+            rsaValidator));
+  }
+
+  private Jwt validate(Jwt jwt, org.springframework.security.oauth2.core.OAuth2TokenValidator<Jwt> validator) {
+    OAuth2TokenValidatorResult result = validator.validate(jwt);
+    if (result.hasErrors()) {
+      String description = result.getErrors().iterator().next().getDescription();
+      throw new JwtValidationException(description, result.getErrors());
+    }
+    return jwt;
+  }
+
+  private static Jwt toJwt(String token, Map<String, Object> headers, JWTClaimsSet claims) {
+    Jwt.Builder builder = Jwt.withTokenValue(token)
+        .headers(h -> h.putAll(headers))
+        .claims(c -> c.putAll(claims.getClaims()));
+
+    // Nimbus exposes dates as java.util.Date, Spring Security expects Instants
+    Date issuedAt = claims.getIssueTime();
+    Date expiresAt = claims.getExpirationTime();
+    Date notBefore = claims.getNotBeforeTime();
+    if (issuedAt != null) {
+      builder.issuedAt(issuedAt.toInstant());
+    }
+    if (expiresAt != null) {
+      builder.expiresAt(expiresAt.toInstant());
+    }
+    if (notBefore != null) {
+      builder.notBefore(notBefore.toInstant());
+    }
+    return builder.build();
+  }
+}
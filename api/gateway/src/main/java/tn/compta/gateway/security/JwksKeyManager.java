@@ -0,0 +1,185 @@
+package tn.compta.gateway.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Non-blocking holder of the OAuth2 server's RSA public keys.
+ *
+ * Keys are fetched with WebClient and kept in an immutable map indexed by {@code kid},
+ * swapped atomically on every refresh. A lookup for an unknown {@code kid} (key rotation
+ * on the OAuth2 server) triggers at most one refresh at a time, and no more than one per
+ * {@code oauth2.jwks-min-refresh-interval}. Lookups never block the calling thread.
+ */
+@Slf4j
+@Component
+public class JwksKeyManager {
+
+  private final WebClient webClient;
+  private final VerifiedTokenCache verifiedTokenCache;
+  private final String jwksUrl;
+  private final Duration refreshInterval;
+  private final Duration minRefreshInterval;
+  private final Duration fetchTimeout;
+
+  private final AtomicReference<KeySnapshot> snapshot = new AtomicReference<>(KeySnapshot.EMPTY);
+  private final AtomicReference<Mono<KeySnapshot>> inFlightRefresh = new AtomicReference<>();
+  private final AtomicLong lastRefreshAttempt = new AtomicLong();
+
+  private Disposable periodicRefresh;
+
+  public JwksKeyManager(
+      WebClient.Builder webClientBuilder,
+      VerifiedTokenCache verifiedTokenCache,
+      @Value("${oauth2.jwks-url:${oauth2.issuer:http://localhost:9000}/.well-known/jwks.json}") String jwksUrl,
+      @Value("${oauth2.jwks-cache-duration:300000}") long refreshIntervalMs,
+      @Value("${oauth2.jwks-min-refresh-interval:30000}") long minRefreshIntervalMs,
+      @Value("${oauth2.jwks-fetch-timeout:5000}") long fetchTimeoutMs) {
+    this.webClient = webClientBuilder.build();
+    this.verifiedTokenCache = verifiedTokenCache;
+    this.jwksUrl = jwksUrl;
+    this.refreshInterval = Duration.ofMillis(refreshIntervalMs);
+    this.minRefreshInterval = Duration.ofMillis(minRefreshIntervalMs);
+    this.fetchTimeout = Duration.ofMillis(fetchTimeoutMs);
+  }
+
+  @PostConstruct
+  public void start() {
+    log.info("Starting JWKS key manager (url: {}, refresh: {}, min refresh: {})",
+        jwksUrl, refreshInterval, minRefreshInterval);
+
+    // First tick fires immediately; failures keep the previous key set
+    periodicRefresh = Flux.interval(Duration.ZERO, refreshInterval)
+        .onBackpressureDrop()
+        .concatMap(tick -> refresh().onErrorResume(e -> Mono.empty()))
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (periodicRefresh != null) {
+      periodicRefresh.dispose();
+    }
+  }
+
+  /**
+   * Resolves the RSA key for a {@code kid}.
+   * Completes empty if the key is unknown even after a (rate-limited) refresh.
+   */
+  public Mono<RSAKey> getKey(String kid) {
+    if (kid == null) {
+      return Mono.empty();
+    }
+    RSAKey key = snapshot.get().keys().get(kid);
+    if (key != null) {
+      return Mono.just(key);
+    }
+
+    long now = System.currentTimeMillis();
+    long last = lastRefreshAttempt.get();
+    if (now - last < minRefreshInterval.toMillis() && inFlightRefresh.get() == null) {
+      log.debug("Unknown kid {} but JWKS was refreshed {} ms ago, not refreshing", kid, now - last);
+      return Mono.empty();
+    }
+
+    log.info("Unknown kid {}, refreshing JWKS", kid);
+    return refresh()
+        .onErrorResume(e -> Mono.just(snapshot.get()))
+        .flatMap(current -> Mono.justOrEmpty(current.keys().get(kid)));
+  }
+
+  /**
+   * Refreshes the key set. Concurrent callers share the same in-flight fetch.
+   */
+  public Mono<KeySnapshot> refresh() {
+    Mono<KeySnapshot> existing = inFlightRefresh.get();
+    if (existing != null) {
+      return existing;
+    }
+
+    Mono<KeySnapshot> fetch = fetchKeys()
+        .doOnSubscribe(s -> lastRefreshAttempt.set(System.currentTimeMillis()))
+        .doOnNext(this::swap)
+        .doOnError(e -> log.error("Failed to fetch JWKS from OAuth2 server: {}", e.getMessage()))
+        .doFinally(signal -> inFlightRefresh.set(null))
+        .cache();
+
+    if (inFlightRefresh.compareAndSet(null, fetch)) {
+      return fetch;
+    }
+    // Another caller won the race
+    Mono<KeySnapshot> winner = inFlightRefresh.get();
+    return winner != null ? winner : Mono.just(snapshot.get());
+  }
+
+  private Mono<KeySnapshot> fetchKeys() {
+    return webClient.get()
+        .uri(jwksUrl)
+        .retrieve()
+        .bodyToMono(String.class)
+        .timeout(fetchTimeout)
+        .map(this::parse);
+  }
+
+  private KeySnapshot parse(String body) {
+    try {
+      Map<String, RSAKey> keys = new HashMap<>();
+      for (JWK jwk : JWKSet.parse(body).getKeys()) {
+        if (jwk instanceof RSAKey rsaKey && jwk.getKeyID() != null) {
+          keys.put(jwk.getKeyID(), rsaKey);
+        }
+      }
+      return new KeySnapshot(Map.copyOf(keys), System.currentTimeMillis());
+    } catch (ParseException e) {
+      throw new IllegalStateException("Invalid JWKS document: " + e.getMessage(), e);
+    }
+  }
+
+  private void swap(KeySnapshot next) {
+    KeySnapshot previous = snapshot.getAndSet(next);
+    verifiedTokenCache.retainKeys(next.keys().keySet());
+
+    if (!previous.keys().keySet().equals(next.keys().keySet())) {
+      log.info("JWKS updated. Keys: {} (previous: {})", next.keys().keySet(), previous.keys().keySet());
+    } else {
+      log.debug("JWKS refreshed, {} keys unchanged", next.keys().size());
+    }
+  }
+
+  public Set<String> getKeyIds() {
+    return snapshot.get().keys().keySet();
+  }
+
+  /**
+   * Vérifie si le jeu de clés est plus ancien que l'intervalle de rafraîchissement.
+   */
+  public boolean isStale() {
+    return System.currentTimeMillis() - snapshot.get().fetchedAt() > refreshInterval.toMillis();
+  }
+
+  /**
+   * Immutable, kid-indexed key set.
+   */
+  public record KeySnapshot(Map<String, RSAKey> keys, long fetchedAt) {
+
+    static final KeySnapshot EMPTY = new KeySnapshot(Map.of(), 0);
+  }
+}
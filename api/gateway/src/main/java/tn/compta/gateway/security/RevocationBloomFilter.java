@@ -0,0 +1,82 @@
+package tn.compta.gateway.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over strings, used as the in-memory pre-filter of
+ * {@link TokenRevocationList}.
+ *
+ * Answers "definitely not revoked" or "maybe revoked"; only the latter goes to the exact
+ * lookup. Bits are kept in an {@link AtomicLongArray} so lookups on request threads never
+ * lock and see every bit set by a completed {@link #put}. Each value is hashed with a
+ * namespace so that a subject and a token id with the same text do not share bits.
+ */
+final class RevocationBloomFilter {
+
+  private final AtomicLongArray words;
+  private final long bitMask;
+  private final int hashes;
+  private final int capacity;
+
+  private RevocationBloomFilter(int bits, int hashes, int capacity) {
+    this.words = new AtomicLongArray(bits >>> 6);
+    this.bitMask = bits - 1L;
+    this.hashes = hashes;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Sizes the filter for {@code expectedEntries} at the given false positive rate;
+   * the bit count is rounded up to a power of two.
+   */
+  static RevocationBloomFilter create(int expectedEntries, double falsePositiveRate) {
+    int entries = Math.max(1, expectedEntries);
+    double bits = -entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+    int size = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(64, Math.ceil(bits))) - 1) << 1;
+    int hashes = Math.max(1, (int) Math.round(size / (double) entries * Math.log(2)));
+    return new RevocationBloomFilter(size, Math.min(hashes, 16), entries);
+  }
+
+  void put(String value, int namespace) {
+    long hash = hash(value, namespace);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = (h1 + (long) i * h2) & bitMask;
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current = words.get(word);
+      while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+        current = words.get(word);
+      }
+    }
+  }
+
+  boolean mightContain(String value, int namespace) {
+    long hash = hash(value, namespace);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = (h1 + (long) i * h2) & bitMask;
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Number of entries the filter was sized for.
+   */
+  int capacity() {
+    return capacity;
+  }
+
+  private static long hash(String value, int namespace) {
+    // String caches its hashCode; spread it to 64 bits (SplitMix64 finalizer)
+    long z = value.hashCode() * 0x9E3779B97F4A7C15L + namespace;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,121 @@
+package tn.compta.gateway.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import tn.compta.gateway.exception.GatewayOverloadedException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated, bounded scheduler for CPU-heavy JWT signature verification.
+ *
+ * RSA verification is moved off the reactor-netty event loops so that a burst of
+ * fresh tokens cannot starve I/O. At most {@code max-pending} verifications may wait
+ * for a worker; beyond that, requests are shed with {@link GatewayOverloadedException}
+ * (503) instead of queueing without limit.
+ */
+@Slf4j
+@Component
+public class SignatureVerificationScheduler {
+
+  private final Scheduler scheduler;
+  private final int maxPending;
+  private final long retryAfterSeconds;
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private final Timer queueTimer;
+  private final Timer verificationTimer;
+  private final Counter rejectedCounter;
+
+  public SignatureVerificationScheduler(
+      MeterRegistry meterRegistry,
+      @Value("${oauth2.verification.threads:0}") int threads,
+      @Value("${oauth2.verification.max-pending:256}") int maxPending,
+      @Value("${oauth2.verification.retry-after-seconds:1}") long retryAfterSeconds) {
+    int workerCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    this.maxPending = maxPending;
+    this.retryAfterSeconds = retryAfterSeconds;
+    // Per-worker task cap as a second line of defense behind the global pending limit
+    this.scheduler = Schedulers.newBoundedElastic(workerCount, maxPending, "jwt-verify");
+
+    Gauge.builder("gateway.jwt.verification.pending", pending, AtomicInteger::get)
+        .description("Signature verifications waiting for a worker")
+        .register(meterRegistry);
+    this.queueTimer = Timer.builder("gateway.jwt.verification.queue")
+        .description("Time spent waiting for a verification worker")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.verificationTimer = Timer.builder("gateway.jwt.verification")
+        .description("Signature verification time")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.rejectedCounter = Counter.builder("gateway.jwt.verification.rejected")
+        .description("Verifications shed because the scheduler was saturated")
+        .register(meterRegistry);
+
+    log.info("Signature verification scheduler initialized (workers: {}, max pending: {})",
+        workerCount, maxPending);
+  }
+
+  /**
+   * Runs a verification task on the dedicated scheduler.
+   * Fails with {@link GatewayOverloadedException} when the pending queue is full.
+   */
+  public <T> Mono<T> execute(Callable<T> task) {
+    return Mono.defer(() -> {
+      if (pending.incrementAndGet() > maxPending) {
+        pending.decrementAndGet();
+        return reject();
+      }
+
+      long enqueuedAt = System.nanoTime();
+      AtomicBoolean started = new AtomicBoolean();
+
+      return Mono.fromCallable(() -> {
+            // Exactly one of the worker and doFinally releases the pending slot
+            if (started.compareAndSet(false, true)) {
+              pending.decrementAndGet();
+            }
+            queueTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            return verificationTimer.recordCallable(task);
+          })
+          .subscribeOn(scheduler)
+          .onErrorResume(RejectedExecutionException.class, e -> reject())
+          .doFinally(signal -> {
+            // Cancelled or rejected before a worker picked it up
+            if (started.compareAndSet(false, true)) {
+              pending.decrementAndGet();
+            }
+          });
+    });
+  }
+
+  private <T> Mono<T> reject() {
+    rejectedCounter.increment();
+    log.warn("JWT verification scheduler saturated ({} pending), shedding request", maxPending);
+    return Mono.error(new GatewayOverloadedException(
+        "Token verification capacity exhausted", retryAfterSeconds));
+  }
+
+  public int getPending() {
+    return pending.get();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.dispose();
+  }
+}
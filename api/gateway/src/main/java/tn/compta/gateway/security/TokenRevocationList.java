@@ -0,0 +1,230 @@
+package tn.compta.gateway.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Access tokens revoked before their expiry (logout, password change), checked for every
+ * authenticated request.
+ *
+ * auth-service writes revocations to the Redis sorted set {@code gateway.revocation.key},
+ * scored by revocation time in milliseconds:
+ * <ul>
+ *   <li>{@code sub:<subject>} - every token of the subject issued before that time</li>
+ *   <li>{@code jti:<token id>} - that single token</li>
+ * </ul>
+ * Each replica copies the set into memory: an exact map (the source of truth) behind a
+ * {@link RevocationBloomFilter}, so the common case - a token that was never revoked - costs
+ * a few bit probes and no Redis call. The copy is fed incrementally, every
+ * {@code refresh-interval-ms}, with the entries scored after the last one seen (minus
+ * {@code overlap-ms} for writers whose clocks lag). Entries older than {@code retention-ms}
+ * (the longest token lifetime) are dropped and the filter is rebuilt without them.
+ *
+ * When Redis is unreachable the last copy keeps being used (fail open): revocation is then
+ * delayed, never denied to valid tokens.
+ */
+@Slf4j
+@Component
+public class TokenRevocationList {
+
+  static final String SUBJECT_PREFIX = "sub:";
+  static final String TOKEN_ID_PREFIX = "jti:";
+
+  private static final int SUBJECT = 1;
+  private static final int TOKEN_ID = 2;
+
+  private final ReactiveStringRedisTemplate redisTemplate;
+  private final boolean enabled;
+  private final String key;
+  private final Duration refreshInterval;
+  private final long retentionMillis;
+  private final long overlapMillis;
+  private final int expectedEntries;
+  private final double falsePositiveRate;
+
+  private final Map<String, Long> subjects = new ConcurrentHashMap<>();
+  private final Map<String, Long> tokenIds = new ConcurrentHashMap<>();
+  private volatile RevocationBloomFilter filter;
+  private volatile long cursor;
+  private volatile boolean redisAvailable = true;
+
+  private final Counter revokedCounter;
+  private final Counter passedCounter;
+  private final Counter syncErrorCounter;
+  private Disposable refreshLoop;
+
+  public TokenRevocationList(
+      ReactiveStringRedisTemplate redisTemplate,
+      MeterRegistry meterRegistry,
+      @Value("${gateway.revocation.enabled:true}") boolean enabled,
+      @Value("${gateway.revocation.key:auth:revoked-tokens}") String key,
+      @Value("${gateway.revocation.refresh-interval-ms:1000}") long refreshIntervalMs,
+      @Value("${gateway.revocation.retention-ms:86400000}") long retentionMs,
+      @Value("${gateway.revocation.overlap-ms:5000}") long overlapMs,
+      @Value("${gateway.revocation.expected-entries:100000}") int expectedEntries,
+      @Value("${gateway.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+    this.redisTemplate = redisTemplate;
+    this.enabled = enabled;
+    this.key = key;
+    this.refreshInterval = Duration.ofMillis(refreshIntervalMs);
+    this.retentionMillis = retentionMs;
+    this.overlapMillis = overlapMs;
+    this.expectedEntries = expectedEntries;
+    this.falsePositiveRate = falsePositiveRate;
+    this.filter = RevocationBloomFilter.create(expectedEntries, falsePositiveRate);
+    this.cursor = System.currentTimeMillis() - retentionMs;
+
+    // Tokens absent from the filter are not counted: that is the hot path
+    this.revokedCounter = Counter.builder("gateway.revocation.checks")
+        .description("Tokens that hit the revocation filter, by outcome of the exact check")
+        .tag("result", "revoked").register(meterRegistry);
+    this.passedCounter = Counter.builder("gateway.revocation.checks")
+        .description("Tokens that hit the revocation filter, by outcome of the exact check")
+        .tag("result", "passed").register(meterRegistry);
+    this.syncErrorCounter = Counter.builder("gateway.revocation.sync.errors")
+        .description("Failed reads of the revocation feed")
+        .register(meterRegistry);
+    Gauge.builder("gateway.revocation.entries", this, l -> l.subjects.size() + l.tokenIds.size())
+        .register(meterRegistry);
+    Gauge.builder("gateway.revocation.redis.available", this, l -> l.redisAvailable ? 1 : 0)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!enabled) {
+      log.info("Token revocation list disabled");
+      return;
+    }
+    log.info("Following token revocations in {} every {}", key, refreshInterval);
+    refreshLoop = Flux.interval(Duration.ZERO, refreshInterval)
+        .onBackpressureDrop()
+        .concatMap(tick -> refresh())
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (refreshLoop != null) {
+      refreshLoop.dispose();
+    }
+  }
+
+  /**
+   * Whether the token was revoked. A token issued in the same second as a subject-wide
+   * revocation stays valid: {@code iat} has a one second resolution, and the user may
+   * have logged in again right after.
+   */
+  public boolean isRevoked(String subject, String tokenId, Instant issuedAt) {
+    RevocationBloomFilter current = filter;
+    boolean hit = false;
+    if (tokenId != null && current.mightContain(tokenId, TOKEN_ID)) {
+      hit = true;
+      if (tokenIds.containsKey(tokenId)) {
+        revokedCounter.increment();
+        return true;
+      }
+    }
+    if (subject != null && current.mightContain(subject, SUBJECT)) {
+      hit = true;
+      Long revokedAt = subjects.get(subject);
+      if (revokedAt != null && (issuedAt == null || issuedAt.getEpochSecond() < revokedAt / 1000)) {
+        revokedCounter.increment();
+        return true;
+      }
+    }
+    if (hit) {
+      passedCounter.increment();
+    }
+    return false;
+  }
+
+  /**
+   * Reads the entries added since the last refresh, then drops expired ones.
+   */
+  private Mono<Void> refresh() {
+    long from = Math.max(0, cursor - overlapMillis);
+    return redisTemplate.opsForZSet()
+        .rangeByScoreWithScores(key, Range.rightUnbounded(Range.Bound.inclusive((double) from)))
+        .doOnNext(this::apply)
+        .then(Mono.fromRunnable(() -> prune(System.currentTimeMillis())))
+        .doOnSuccess(v -> {
+          if (!redisAvailable) {
+            log.info("Redis reachable again, token revocations are up to date");
+            redisAvailable = true;
+          }
+        })
+        .onErrorResume(e -> {
+          syncErrorCounter.increment();
+          if (redisAvailable) {
+            log.warn("Redis unreachable for token revocations ({}), using the last known list", e.getMessage());
+            redisAvailable = false;
+          }
+          return Mono.empty();
+        })
+        .then();
+  }
+
+  private void apply(TypedTuple<String> entry) {
+    if (entry.getValue() != null && entry.getScore() != null) {
+      apply(entry.getValue(), entry.getScore().longValue());
+    }
+  }
+
+  /**
+   * Adds one feed entry: exact map first, so a filter hit always finds it.
+   * Only called from the refresh loop.
+   */
+  void apply(String member, long revokedAtMillis) {
+    if (member.startsWith(SUBJECT_PREFIX)) {
+      String subject = member.substring(SUBJECT_PREFIX.length());
+      subjects.merge(subject, revokedAtMillis, Math::max);
+      filter.put(subject, SUBJECT);
+    } else if (member.startsWith(TOKEN_ID_PREFIX)) {
+      String tokenId = member.substring(TOKEN_ID_PREFIX.length());
+      tokenIds.merge(tokenId, revokedAtMillis, Math::max);
+      filter.put(tokenId, TOKEN_ID);
+    } else {
+      log.debug("Ignoring unknown revocation entry {}", member);
+      return;
+    }
+    cursor = Math.max(cursor, revokedAtMillis);
+  }
+
+  /**
+   * Drops entries past the longest token lifetime, and rebuilds the filter when entries
+   * were dropped or it holds more than it was sized for. Only called from the refresh loop.
+   */
+  void prune(long nowMillis) {
+    long expiredBefore = nowMillis - retentionMillis;
+    boolean removed = subjects.values().removeIf(revokedAt -> revokedAt < expiredBefore);
+    removed |= tokenIds.values().removeIf(revokedAt -> revokedAt < expiredBefore);
+
+    int size = subjects.size() + tokenIds.size();
+    if (!removed && size <= filter.capacity()) {
+      return;
+    }
+    RevocationBloomFilter rebuilt = RevocationBloomFilter.create(Math.max(expectedEntries, size * 2), falsePositiveRate);
+    subjects.keySet().forEach(subject -> rebuilt.put(subject, SUBJECT));
+    tokenIds.keySet().forEach(tokenId -> rebuilt.put(tokenId, TOKEN_ID));
+    filter = rebuilt;
+    log.debug("Rebuilt token revocation filter for {} entries", size);
+  }
+}
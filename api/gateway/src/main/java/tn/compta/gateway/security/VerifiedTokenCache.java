@@ -0,0 +1,145 @@
+package tn.compta.gateway.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.nimbusds.jwt.JWTClaimsSet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of JWT tokens whose RSA signature has already been verified.
+ *
+ * Entries are keyed by the SHA-256 digest of the raw token (the token itself is never
+ * kept as a key) and expire at the token's own {@code exp} claim, capped by a maximum TTL.
+ * Each entry remembers the {@code kid} that verified it so that entries signed by a key
+ * removed from the JWKS are dropped on rotation.
+ */
+@Slf4j
+@Component
+public class VerifiedTokenCache {
+
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  });
+
+  private final Cache<String, VerifiedToken> cache;
+
+  public VerifiedTokenCache(
+      MeterRegistry meterRegistry,
+      @Value("${oauth2.token-cache.max-size:10000}") long maxSize,
+      @Value("${oauth2.token-cache.max-ttl:900000}") long maxTtlMs) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfter(new TokenExpiry(TimeUnit.MILLISECONDS.toNanos(maxTtlMs)))
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "oauth2.verified-tokens");
+    log.info("Verified token cache initialized (max size: {}, max TTL: {} ms)", maxSize, maxTtlMs);
+  }
+
+  /**
+   * Computes the cache key for a raw token.
+   */
+  public String digest(String token) {
+    MessageDigest md = SHA_256.get();
+    md.reset();
+    byte[] hash = md.digest(token.getBytes(StandardCharsets.US_ASCII));
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+  }
+
+  /**
+   * Returns the verified entry for this digest, or null if absent or expired.
+   */
+  public VerifiedToken get(String digest) {
+    VerifiedToken entry = cache.getIfPresent(digest);
+    if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+      // Caffeine expiry is amortized; never serve an expired token
+      cache.invalidate(digest);
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Stores a token whose signature, issuer and expiration have been verified.
+   */
+  public void put(String digest, String keyId, JWTClaimsSet claims) {
+    if (claims.getExpirationTime() == null) {
+      return;
+    }
+    cache.put(digest, new VerifiedToken(keyId, claims, claims.getExpirationTime().getTime()));
+  }
+
+  /**
+   * Drops every entry verified with a key that is no longer published in the JWKS.
+   */
+  public void retainKeys(Collection<String> activeKeyIds) {
+    Set<String> active = Set.copyOf(activeKeyIds);
+    long before = cache.estimatedSize();
+    cache.asMap().values().removeIf(entry -> !active.contains(entry.keyId()));
+    long removed = before - cache.estimatedSize();
+    if (removed > 0) {
+      log.info("Evicted {} verified tokens signed by rotated-out keys", removed);
+    }
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.estimatedSize();
+  }
+
+  /**
+   * A token already verified against the key identified by {@code keyId}.
+   */
+  public record VerifiedToken(String keyId, JWTClaimsSet claims, long expiresAtMillis) {
+  }
+
+  /**
+   * Expires each entry at the token's exp claim, bounded by the configured max TTL.
+   */
+  private record TokenExpiry(long maxTtlNanos) implements Expiry<String, VerifiedToken> {
+
+    @Override
+    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+      long remainingMs = value.expiresAtMillis() - System.currentTimeMillis();
+      return Math.max(0, Math.min(TimeUnit.MILLISECONDS.toNanos(remainingMs), maxTtlNanos));
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime,
+        long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, VerifiedToken value, long currentTime,
+        long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package tn.compta.gateway.shedding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Priority classes and overload thresholds ({@code gateway.load-shedding}).
+ */
+@Data
+@ConfigurationProperties(prefix = "gateway.load-shedding")
+public class LoadSheddingProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * {@code "<METHOD> <path-pattern>=<PRIORITY>"}, first match wins.
+   */
+  private List<String> priorities = new ArrayList<>();
+
+  private Priority defaultPriority = Priority.NORMAL;
+
+  /**
+   * Pressure at which each priority starts being shed; priorities not listed are never shed.
+   */
+  private Map<Priority, Double> shedAt = new EnumMap<>(Map.of(
+      Priority.LOW, 1.0,
+      Priority.NORMAL, 1.5,
+      Priority.HIGH, 2.0));
+
+  /**
+   * Event-loop lag counted as full pressure.
+   */
+  private long eventLoopLagMs = 50;
+
+  /**
+   * Requests waiting for an upstream connection (or HTTP/2 stream) counted as full pressure.
+   */
+  private int maxPendingAcquires = 100;
+
+  /**
+   * Requests in flight through the gateway counted as full pressure.
+   */
+  private int maxInflight = 2000;
+
+  private long sampleIntervalMs = 100;
+
+  private long retryAfterSeconds = 1;
+}
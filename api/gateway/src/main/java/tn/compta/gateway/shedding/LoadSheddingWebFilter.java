@@ -0,0 +1,156 @@
+package tn.compta.gateway.shedding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpResources;
+import tn.compta.gateway.exception.GatewayOverloadedException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sheds low-priority requests first when the gateway is overloaded.
+ *
+ * Each request gets a {@link Priority} from the first matching {@code priorities} rule. When
+ * the {@link OverloadDetector} pressure reaches that priority's level, the request is rejected
+ * with 503 + Retry-After before any work is done on it (authentication included), so the
+ * capacity left goes to logins and interactive screens.
+ *
+ * Runs first among web filters: a shed request must cost as little as possible. Shed
+ * responses still go through CORS processing, so that browser clients can read the 503 and
+ * its Retry-After; preflight requests are answered, never shed.
+ */
+@Slf4j
+@Component
+public class LoadSheddingWebFilter implements WebFilter, Ordered {
+
+  private static final List<String> PENDING_METERS = List.of(
+      "reactor.netty.connection.provider.pending.connections",
+      "reactor.netty.connection.provider.pending.streams");
+
+  private final LoadSheddingProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final CorsWebFilter corsWebFilter;
+  private final OverloadDetector detector;
+  private final List<PriorityRule> rules;
+  private final Map<Priority, Counter> shed = new EnumMap<>(Priority.class);
+
+  private Disposable sampler;
+
+  public LoadSheddingWebFilter(LoadSheddingProperties properties, MeterRegistry meterRegistry,
+      CorsWebFilter corsWebFilter) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.corsWebFilter = corsWebFilter;
+    this.detector = new OverloadDetector(properties.getEventLoopLagMs(), properties.getMaxPendingAcquires(),
+        properties.getMaxInflight(), properties.getShedAt());
+    this.rules = properties.getPriorities().stream().map(PriorityRule::parse).toList();
+
+    for (Priority priority : Priority.values()) {
+      shed.put(priority, Counter.builder("gateway.shedding.requests")
+          .description("Requests shed because the gateway was overloaded")
+          .tag("priority", priority.name())
+          .register(meterRegistry));
+    }
+    Gauge.builder("gateway.shedding.pressure", detector, OverloadDetector::pressure)
+        .description("Overload pressure (1 = a signal at its threshold)")
+        .register(meterRegistry);
+    Gauge.builder("gateway.shedding.event-loop-lag", detector, d -> d.eventLoopLagNanos() / 1_000_000)
+        .description("Recent peak event-loop scheduling lag in ms")
+        .register(meterRegistry);
+    Gauge.builder("gateway.shedding.inflight", detector, OverloadDetector::inflight)
+        .description("Requests in flight through the gateway")
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) {
+      log.info("Load shedding disabled");
+      return;
+    }
+    log.info("Load shedding: {} priority rules, shed at {}", rules.size(), properties.getShedAt());
+    sampler = Flux.interval(Duration.ofMillis(properties.getSampleIntervalMs()))
+        .onBackpressureDrop()
+        .subscribe(tick -> sample());
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (sampler != null) {
+      sampler.dispose();
+    }
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    if (!properties.isEnabled()) {
+      return chain.filter(exchange);
+    }
+    Priority priority = priority(exchange.getRequest());
+    if (detector.shouldShed(priority)) {
+      shed.get(priority).increment();
+      log.debug("Shedding {} request {} (pressure {})", priority, exchange.getRequest().getPath(), detector.pressure());
+      GatewayOverloadedException overloaded = new GatewayOverloadedException(
+          "Gateway overloaded, " + priority + " requests are shed", properties.getRetryAfterSeconds());
+      // CORS headers on the 503 (or the preflight answer), then the error
+      return corsWebFilter.filter(exchange, corsChecked -> Mono.error(overloaded));
+    }
+    detector.enter();
+    return chain.filter(exchange)
+        .doFinally(signal -> detector.exit());
+  }
+
+  Priority priority(ServerHttpRequest request) {
+    PathContainer path = request.getPath().pathWithinApplication();
+    for (PriorityRule rule : rules) {
+      if (rule.matches(request.getMethod(), path)) {
+        return rule.priority();
+      }
+    }
+    return properties.getDefaultPriority();
+  }
+
+  /**
+   * One sample of the overload signals. Never throws: an error would end the sampler and
+   * freeze the pressure at its last value.
+   */
+  void sample() {
+    try {
+      // Time for a task to start on a server event loop (round-robin over the loops)
+      long submitted = System.nanoTime();
+      HttpResources.get().onServer(true).next()
+          .execute(() -> detector.recordEventLoopLag(System.nanoTime() - submitted));
+
+      double pending = 0;
+      for (String meter : PENDING_METERS) {
+        pending += meterRegistry.find(meter).gauges().stream().mapToDouble(Gauge::value).sum();
+      }
+      detector.setPendingAcquires((int) pending);
+    } catch (RuntimeException e) {
+      log.warn("Could not sample overload signals: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.HIGHEST_PRECEDENCE;
+  }
+}
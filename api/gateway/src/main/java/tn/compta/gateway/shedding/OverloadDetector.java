@@ -0,0 +1,85 @@
+package tn.compta.gateway.shedding;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gateway-wide overload signal.
+ *
+ * Combines three signals, each divided by its threshold: event-loop lag (time for a task
+ * submitted to a server event loop to start), requests waiting for an upstream connection
+ * or stream, and requests in flight through the gateway. The highest ratio is the
+ * <em>pressure</em>; a priority is shed once the pressure reaches its {@code shed-at} level,
+ * so LOW traffic goes first and CRITICAL traffic, having no level, is never shed.
+ */
+class OverloadDetector {
+
+  /**
+   * Each lag sample keeps 90% of the previous peak, so a spike fades within about a second
+   * of samples instead of flapping between two ticks.
+   */
+  private static final double LAG_DECAY = 0.9;
+
+  private final double lagThresholdNanos;
+  private final int maxPendingAcquires;
+  private final int maxInflight;
+  private final Map<Priority, Double> shedAt;
+  private final AtomicInteger inflight = new AtomicInteger();
+
+  private double lagNanos;
+  private volatile int pendingAcquires;
+
+  OverloadDetector(long lagThresholdMillis, int maxPendingAcquires, int maxInflight, Map<Priority, Double> shedAt) {
+    this.lagThresholdNanos = TimeUnit.MILLISECONDS.toNanos(lagThresholdMillis);
+    this.maxPendingAcquires = maxPendingAcquires;
+    this.maxInflight = maxInflight;
+    this.shedAt = shedAt.isEmpty() ? Map.of() : new EnumMap<>(shedAt);
+  }
+
+  synchronized void recordEventLoopLag(long nanos) {
+    lagNanos = Math.max(nanos, lagNanos * LAG_DECAY);
+  }
+
+  synchronized double eventLoopLagNanos() {
+    return lagNanos;
+  }
+
+  void setPendingAcquires(int pending) {
+    this.pendingAcquires = pending;
+  }
+
+  int inflight() {
+    return inflight.get();
+  }
+
+  void enter() {
+    inflight.incrementAndGet();
+  }
+
+  void exit() {
+    inflight.decrementAndGet();
+  }
+
+  /**
+   * 1.0 means one of the signals is at its threshold.
+   */
+  double pressure() {
+    double pressure = ratio(eventLoopLagNanos(), lagThresholdNanos);
+    pressure = Math.max(pressure, ratio(pendingAcquires, maxPendingAcquires));
+    return Math.max(pressure, ratio(inflight.get(), maxInflight));
+  }
+
+  boolean shouldShed(Priority priority) {
+    Double level = shedAt.get(priority);
+    return level != null && pressure() >= level;
+  }
+
+  /**
+   * A threshold of 0 or less disables the signal.
+   */
+  private static double ratio(double value, double threshold) {
+    return threshold > 0 ? value / threshold : 0;
+  }
+}
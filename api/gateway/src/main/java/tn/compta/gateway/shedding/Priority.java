@@ -0,0 +1,24 @@
+package tn.compta.gateway.shedding;
+
+/**
+ * Importance of a request when the gateway is overloaded: lower priorities are shed first.
+ */
+public enum Priority {
+
+  /**
+   * Never shed (logins, health probes).
+   */
+  CRITICAL,
+
+  /**
+   * Interactive screens.
+   */
+  HIGH,
+
+  NORMAL,
+
+  /**
+   * Reports, exports and other heavy requests that can be retried later.
+   */
+  LOW
+}
@@ -0,0 +1,42 @@
+package tn.compta.gateway.shedding;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * Priority class of an operation.
+ *
+ * Declared as {@code "<METHOD> <path-pattern>=<PRIORITY>"}, e.g. {@code "GET /invoices/{id}/export=LOW"}.
+ * The method may be {@code *} to match any method.
+ */
+public record PriorityRule(HttpMethod method, PathPattern pattern, Priority priority) {
+
+  public static PriorityRule parse(String definition) {
+    int eq = definition.lastIndexOf('=');
+    int space = definition.indexOf(' ');
+    if (eq < 0 || space < 0 || space > eq) {
+      throw new IllegalArgumentException(
+          "Invalid priority rule '" + definition + "', expected '<METHOD> <path-pattern>=<PRIORITY>'");
+    }
+
+    String method = definition.substring(0, space).trim();
+    String path = definition.substring(space + 1, eq).trim();
+    Priority priority = Priority.valueOf(definition.substring(eq + 1).trim().toUpperCase());
+
+    return new PriorityRule(
+        "*".equals(method) ? null : HttpMethod.valueOf(method.toUpperCase()),
+        PathPatternParser.defaultInstance.parse(path),
+        priority);
+  }
+
+  public boolean matches(HttpMethod requestMethod, PathContainer path) {
+    return (method == null || method.equals(requestMethod)) && pattern.matches(path);
+  }
+
+  @Override
+  public String toString() {
+    return (method == null ? "*" : method.name()) + " " + pattern.getPatternString() + "=" + priority;
+  }
+}
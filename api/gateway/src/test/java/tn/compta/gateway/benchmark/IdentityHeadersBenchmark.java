@@ -0,0 +1,125 @@
+package tn.compta.gateway.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.config.PublicEndpoints;
+import tn.compta.gateway.filter.IdentityHeadersFilter;
+import tn.compta.gateway.security.GatewayClaims;
+
+/**
+ * Identity headers: fused filter vs. the previous StripUserHeadersFilter + JwtToHeadersGatewayFilter pair.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tn.compta.gateway.benchmark.IdentityHeadersBenchmark}.
+ * The GC profiler is enabled to compare allocation rates ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentityHeadersBenchmark {
+
+  @Param({"anonymous", "authenticated", "forged"})
+  public String scenario;
+
+  private static final List<String> IDENTITY_HEADERS = List.of(
+      "X-User-Id", "X-User-Username", "X-User-Email", "X-User-Roles", "X-Tenant-Id");
+
+  private final IdentityHeadersFilter fused = new IdentityHeadersFilter();
+  private ServerWebExchange exchange;
+  private ServerWebExchange forwarded;
+
+  private final GatewayFilterChain terminal = exchange -> {
+    forwarded = exchange;
+    return Mono.empty();
+  };
+
+  @Setup
+  public void setUp() {
+    MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/invoices/2024/42")
+        .header("Authorization", "Bearer eyJ")
+        .header("Accept", "application/json");
+    if (scenario.equals("forged")) {
+      request.header("X-User-Id", "1");
+    }
+    exchange = MockServerWebExchange.from(request);
+    if (!scenario.equals("anonymous")) {
+      exchange.getAttributes().put(GatewayClaims.ATTRIBUTE, new GatewayClaims("RS256", "user-1", "alice",
+          "alice@example.com", List.of("ADMIN", "USER"), "tenant-9", "https://auth", "jti", null, null));
+    }
+  }
+
+  @Benchmark
+  public void fused(Blackhole blackhole) {
+    blackhole.consume(fused.filter(exchange, terminal));
+    blackhole.consume(forwarded);
+  }
+
+  @Benchmark
+  public void legacyPair(Blackhole blackhole) {
+    blackhole.consume(legacyStrip(exchange, ex -> legacyJwtToHeaders(ex, terminal)));
+    blackhole.consume(forwarded);
+  }
+
+  // Previous StripUserHeadersFilter
+  private static Mono<Void> legacyStrip(ServerWebExchange exchange, GatewayFilterChain chain) {
+    ServerHttpRequest.Builder requestBuilder = exchange.getRequest().mutate();
+    for (String header : IDENTITY_HEADERS) {
+      if (exchange.getRequest().getHeaders().containsKey(header)) {
+        requestBuilder.headers(h -> h.remove(header));
+      }
+    }
+    return chain.filter(exchange.mutate().request(requestBuilder.build()).build());
+  }
+
+  // Previous JwtToHeadersGatewayFilter (claim validation omitted: identical in both)
+  private static Mono<Void> legacyJwtToHeaders(ServerWebExchange exchange, GatewayFilterChain chain) {
+    if (PublicEndpoints.isPublic(exchange.getRequest().getPath().toString())) {
+      return chain.filter(exchange);
+    }
+    GatewayClaims claims = GatewayClaims.from(exchange);
+    if (claims == null) {
+      return chain.filter(exchange);
+    }
+    ServerHttpRequest request = exchange.getRequest().mutate()
+        .header("X-User-Id", claims.subject())
+        .header("X-User-Username", claims.username())
+        .header("X-User-Email", claims.email())
+        .header("X-User-Roles", String.join(",", claims.roles()))
+        .header("X-Tenant-Id", claims.tenantId())
+        .build();
+    return chain.filter(exchange.mutate().request(request).build());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(IdentityHeadersBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
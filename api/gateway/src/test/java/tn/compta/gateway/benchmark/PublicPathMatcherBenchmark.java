@@ -0,0 +1,91 @@
+package tn.compta.gateway.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tn.compta.gateway.config.PathPatternTrie;
+import tn.compta.gateway.config.PublicEndpoints;
+
+/**
+ * Public endpoint matching: precompiled trie vs. the previous per-request implementations.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tn.compta.gateway.benchmark.PublicPathMatcherBenchmark}.
+ * The GC profiler is enabled to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicPathMatcherBenchmark {
+
+  @Param({"/invoices/2024/42/lines", "/auth/api/auth/login", "/actuator/health", "/employees/7"})
+  public String path;
+
+  private final PathPatternTrie trie = PathPatternTrie.compile(PublicEndpoints.PATTERNS);
+
+  // Previous PublicEndpoints.isPublic
+  private static final List<String> LEGACY_EXACT_PATHS = List.of(
+      "/actuator/health", "/actuator/info", "/swagger-ui.html");
+  private static final List<String> LEGACY_PREFIXES = List.of(
+      "/auth/", "/swagger-ui/", "/v3/api-docs", "/webjars/", "/fallback/");
+
+  // Previous GatewayAuthenticationFilter.shouldNotFilter (compta-security-commons)
+  private static final List<String> LEGACY_COMMONS_PATTERNS = Arrays.asList(PublicEndpoints.PATTERNS);
+
+  @Benchmark
+  public boolean trie() {
+    return trie.matches(path);
+  }
+
+  @Benchmark
+  public boolean legacyPublicEndpoints() {
+    return LEGACY_EXACT_PATHS.contains(path)
+        || LEGACY_PREFIXES.stream().anyMatch(path::startsWith);
+  }
+
+  @Benchmark
+  public boolean legacyValidationSkip() {
+    return path.startsWith("/actuator")
+        || path.startsWith("/swagger")
+        || path.startsWith("/v3/api-docs")
+        || path.startsWith("/public")
+        || path.equals("/favicon.ico");
+  }
+
+  @Benchmark
+  public void legacyCommonsFilter(Blackhole blackhole) {
+    String requestPath = path;
+    blackhole.consume(LEGACY_COMMONS_PATTERNS.stream().anyMatch(pattern -> {
+      if (pattern.endsWith("/**")) {
+        return requestPath.startsWith(pattern.substring(0, pattern.length() - 3));
+      }
+      return requestPath.equals(pattern);
+    }));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(PublicPathMatcherBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
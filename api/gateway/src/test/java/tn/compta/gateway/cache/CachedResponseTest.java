@@ -0,0 +1,97 @@
+package tn.compta.gateway.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+class CachedResponseTest {
+
+  private static final byte[] BODY = "[{\"id\":1,\"nom\":\"Societe A\"}]".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void of_dropsFramingAndCachingHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+    headers.add(HttpHeaders.CONTENT_LENGTH, "29");
+    headers.add(HttpHeaders.CACHE_CONTROL, "no-store");
+    headers.add(HttpHeaders.SET_COOKIE, "SESSION=abc");
+
+    CachedResponse entry = CachedResponse.of(200, headers, BODY, 1_000);
+
+    assertEquals("application/json", entry.headers().getFirst(HttpHeaders.CONTENT_TYPE));
+    assertFalse(entry.headers().containsKey(HttpHeaders.CONTENT_LENGTH));
+    assertFalse(entry.headers().containsKey(HttpHeaders.CACHE_CONTROL));
+    assertFalse(entry.headers().containsKey(HttpHeaders.SET_COOKIE));
+  }
+
+  @Test
+  void of_dropsCorsAndVaryHeadersOfTheStoringRequest() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+    headers.add(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "http://localhost:3000");
+    headers.add(HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+    headers.add(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, "X-Request-Id");
+    headers.add(HttpHeaders.VARY, "Origin");
+
+    CachedResponse entry = CachedResponse.of(200, headers, BODY, 1_000);
+
+    assertEquals(1, entry.headers().size());
+    assertEquals("application/json", entry.headers().getFirst(HttpHeaders.CONTENT_TYPE));
+  }
+
+  @Test
+  void of_whenNoUpstreamEtag_computesWeakEtag() {
+    CachedResponse entry = CachedResponse.of(200, new HttpHeaders(), BODY, 1_000);
+
+    assertTrue(entry.etag().startsWith("W/\""));
+    assertFalse(entry.upstreamValidator());
+    assertEquals(entry.etag(), CachedResponse.of(200, new HttpHeaders(), BODY, 2_000).etag());
+  }
+
+  @Test
+  void matches_comparesWeakly() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag("\"v42\"");
+    CachedResponse entry = CachedResponse.of(200, headers, BODY, 1_000);
+
+    assertTrue(entry.upstreamValidator());
+    assertTrue(entry.matches("\"v41\", W/\"v42\""));
+    assertTrue(entry.matches("*"));
+    assertFalse(entry.matches("\"v41\""));
+    assertFalse(entry.matches(null));
+  }
+
+  @Test
+  void isFresh_afterTtl_returnsFalse() {
+    CachedResponse entry = CachedResponse.of(200, new HttpHeaders(), BODY, 1_000);
+
+    assertTrue(entry.isFresh(60_000, 60_999));
+    assertFalse(entry.isFresh(60_000, 61_000));
+    assertTrue(entry.revalidated(61_000).isFresh(60_000, 61_000));
+  }
+
+  @Test
+  void fromBytes_roundTripsEntry() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+    headers.add(HttpHeaders.CONTENT_LANGUAGE, "fr");
+    headers.add("X-Total-Count", "1");
+    headers.setETag("\"v42\"");
+    CachedResponse entry = CachedResponse.of(200, headers, BODY, 1_000);
+
+    byte[] encoded = entry.toBytes();
+    byte[] prefixed = new byte[encoded.length + 8];
+    System.arraycopy(encoded, 0, prefixed, 8, encoded.length);
+    CachedResponse decoded = CachedResponse.fromBytes(prefixed, 8);
+
+    assertNotNull(decoded);
+    assertEquals(200, decoded.status());
+    assertEquals("\"v42\"", decoded.etag());
+    assertTrue(decoded.upstreamValidator());
+    assertEquals(1_000, decoded.storedAtMillis());
+    assertEquals(entry.headers(), decoded.headers());
+    assertArrayEquals(BODY, decoded.body());
+  }
+}
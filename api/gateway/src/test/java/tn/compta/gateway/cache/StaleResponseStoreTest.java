@@ -0,0 +1,91 @@
+package tn.compta.gateway.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class StaleResponseStoreTest {
+
+  private final AtomicLong ticker = new AtomicLong();
+  private final StaleResponseStore store = new StaleResponseStore(new SimpleMeterRegistry(), 1_000_000, ticker::get);
+
+  @Test
+  void get_returnsLastGoodResponse() {
+    store.put("authz-service", "key", response("[1]"), Duration.ofMinutes(5));
+    store.put("authz-service", "key", response("[1,2]"), Duration.ofMinutes(5));
+
+    assertArrayEquals("[1,2]".getBytes(StandardCharsets.UTF_8), store.get("authz-service", "key").body());
+    assertNull(store.get("authz-service", "other"));
+    assertNull(store.get("auth-service", "key"));
+  }
+
+  @Test
+  void get_afterMaxStale_returnsNothing() {
+    store.put("authz-service", "key", response("[1]"), Duration.ofMinutes(5));
+
+    ticker.addAndGet(Duration.ofMinutes(6).toNanos());
+
+    assertNull(store.get("authz-service", "key"));
+  }
+
+  @Test
+  void put_whenResponseAlreadyTooOld_skipsIt() {
+    CachedResponse old = CachedResponse.of(200, new HttpHeaders(), new byte[] {1},
+        System.currentTimeMillis() - Duration.ofMinutes(10).toMillis());
+
+    store.put("authz-service", "key", old, Duration.ofMinutes(5));
+
+    assertNull(store.get("authz-service", "key"));
+  }
+
+  @Test
+  void get_doesNotReplayCorsHeadersOfTheStoringRequest() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+    headers.add(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "http://localhost:3000");
+    headers.add(HttpHeaders.VARY, "Origin");
+    store.put("auth-service", "key", CachedResponse.of(200, headers, new byte[] {1}, System.currentTimeMillis()),
+        Duration.ofMinutes(5));
+
+    HttpHeaders replayed = store.get("auth-service", "key").headers();
+
+    assertNull(replayed.getAccessControlAllowOrigin());
+    assertFalse(replayed.containsKey(HttpHeaders.VARY));
+    assertEquals("application/json", replayed.getFirst(HttpHeaders.CONTENT_TYPE));
+  }
+
+  @Test
+  void invalidate_dropsOnlyThatRoute() {
+    store.put("authz-service", "key", response("[1]"), Duration.ofMinutes(5));
+    store.put("auth-service", "key", response("{}"), Duration.ofMinutes(5));
+
+    store.invalidate("authz-service");
+
+    assertNull(store.get("authz-service", "key"));
+    assertNotNull(store.get("auth-service", "key"));
+  }
+
+  @Test
+  void isUnavailable_onlyForOutages() {
+    assertTrue(ServeStaleGatewayFilterFactory.isUnavailable(new TimeoutException()));
+    assertTrue(ServeStaleGatewayFilterFactory.isUnavailable(
+        new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "timeout", new TimeoutException())));
+    assertTrue(ServeStaleGatewayFilterFactory.isUnavailable(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE)));
+    assertFalse(ServeStaleGatewayFilterFactory.isUnavailable(new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    assertFalse(ServeStaleGatewayFilterFactory.isUnavailable(new IllegalStateException()));
+  }
+
+  private static CachedResponse response(String body) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+    return CachedResponse.of(200, headers, body.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+  }
+}
@@ -0,0 +1,61 @@
+package tn.compta.gateway.coalescing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class InflightRequestsTest {
+
+  private static final Duration WAIT = Duration.ofSeconds(1);
+
+  @Test
+  void join_whenFlightInProgress_joinsAsWaiter() {
+    InflightRequests<String> inflight = new InflightRequests<>(10);
+
+    InflightRequests.Joined<String> first = inflight.join("GET /societes");
+    InflightRequests.Joined<String> second = inflight.join("GET /societes");
+
+    assertTrue(first.leader());
+    assertFalse(second.leader());
+    assertSame(first.flight(), second.flight());
+    assertTrue(inflight.join("GET /roles").leader());
+  }
+
+  @Test
+  void await_whenLeaderCompletes_receivesResult() {
+    InflightRequests<String> inflight = new InflightRequests<>(10);
+    InflightRequests.Flight<String> flight = inflight.join("k").flight();
+    InflightRequests.Flight<String> joined = inflight.join("k").flight();
+    assertTrue(joined.tryAddWaiter());
+
+    flight.complete("response");
+
+    assertEquals("response", joined.await(WAIT).block());
+    assertEquals(0, joined.getWaiters());
+  }
+
+  @Test
+  void finish_withoutResult_releasesWaitersEmpty() {
+    InflightRequests<String> inflight = new InflightRequests<>(10);
+    InflightRequests.Flight<String> flight = inflight.join("k").flight();
+    assertTrue(flight.tryAddWaiter());
+
+    inflight.finish("k", flight);
+
+    assertNull(flight.await(WAIT).block());
+    assertEquals(0, inflight.size());
+    assertTrue(inflight.join("k").leader());
+  }
+
+  @Test
+  void tryAddWaiter_overCap_returnsFalse() {
+    InflightRequests<String> inflight = new InflightRequests<>(2);
+    InflightRequests.Flight<String> flight = inflight.join("k").flight();
+
+    assertTrue(flight.tryAddWaiter());
+    assertTrue(flight.tryAddWaiter());
+    assertFalse(flight.tryAddWaiter());
+    assertEquals(2, flight.getWaiters());
+  }
+}
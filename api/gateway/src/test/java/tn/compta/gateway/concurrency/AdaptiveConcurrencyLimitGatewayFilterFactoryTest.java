@@ -0,0 +1,78 @@
+package tn.compta.gateway.concurrency;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+class AdaptiveConcurrencyLimitGatewayFilterFactoryTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final GatewayFilter filter = filter();
+
+  @Test
+  void filter_whenBreakerFallbackAnswers_keepsLimit() {
+    GatewayFilterChain fallback = exchange -> {
+      exchange.getAttributes().put(CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR,
+          CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("authService")));
+      exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+      return Mono.empty();
+    };
+
+    for (int i = 0; i < 100; i++) {
+      filter.filter(exchange(), fallback).block();
+    }
+
+    assertEquals(20, limit());
+  }
+
+  @Test
+  void filter_whenBreakerOpenWithoutFallback_keepsLimit() {
+    GatewayFilterChain open = exchange -> Mono.error(
+        CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("authService")));
+
+    for (int i = 0; i < 100; i++) {
+      assertThrows(CallNotPermittedException.class, () -> filter.filter(exchange(), open).block());
+    }
+
+    assertEquals(20, limit());
+  }
+
+  @Test
+  void filter_whenDownstreamAnswers503_shrinksLimit() {
+    GatewayFilterChain unavailable = exchange -> {
+      exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+      return Mono.empty();
+    };
+
+    for (int i = 0; i < 100; i++) {
+      filter.filter(exchange(), unavailable).block();
+    }
+
+    assertEquals(2, limit());
+  }
+
+  private GatewayFilter filter() {
+    AdaptiveConcurrencyLimitGatewayFilterFactory.Config config = new AdaptiveConcurrencyLimitGatewayFilterFactory.Config();
+    config.setRouteId("auth-service");
+    config.setInitialLimit(20);
+    return new AdaptiveConcurrencyLimitGatewayFilterFactory(meterRegistry).apply(config);
+  }
+
+  private double limit() {
+    return meterRegistry.get("gateway.concurrency.limit").tag("route", "auth-service").gauge().value();
+  }
+
+  private static MockServerWebExchange exchange() {
+    return MockServerWebExchange.from(MockServerHttpRequest.get("/auth/api/auth/me"));
+  }
+}
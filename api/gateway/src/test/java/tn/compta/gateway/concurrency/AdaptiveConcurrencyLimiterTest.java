@@ -0,0 +1,104 @@
+package tn.compta.gateway.concurrency;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  private static final long RTT = 10_000_000L;
+
+  @Test
+  void onSample_whenRttStable_growsLimit() {
+    GradientLimit limit = new GradientLimit(20, 2, 200);
+
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(RTT, limit.getLimit(), false);
+    }
+
+    assertTrue(limit.getLimit() > 20);
+  }
+
+  @Test
+  void onSample_whenRttRises_shrinksLimit() {
+    GradientLimit limit = new GradientLimit(100, 2, 200);
+    limit.onSample(RTT, 100, false);
+
+    for (int i = 0; i < 20; i++) {
+      limit.onSample(RTT * 10, limit.getLimit(), false);
+    }
+
+    assertTrue(limit.getLimit() < 100);
+  }
+
+  @Test
+  void onSample_whenRouteIdle_doesNotGrow() {
+    GradientLimit limit = new GradientLimit(20, 2, 200);
+
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(RTT, 1, false);
+    }
+
+    assertEquals(20, limit.getLimit());
+  }
+
+  @Test
+  void onSample_whenDropped_backsOffButStaysAboveMin() {
+    GradientLimit limit = new GradientLimit(20, 5, 200);
+
+    for (int i = 0; i < 100; i++) {
+      limit.onSample(0, 20, true);
+    }
+
+    assertEquals(5, limit.getLimit());
+  }
+
+  @Test
+  void acquire_whenLimitReachedAndNoQueue_rejects() {
+    AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(new GradientLimit(1, 1, 1), 0, Duration.ZERO);
+
+    AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+    assertNotNull(permit);
+    assertNull(limiter.acquire().block());
+
+    permit.onIgnore();
+    assertNotNull(limiter.acquire().block());
+  }
+
+  @Test
+  void acquire_whenSlotReleasedWhileQueued_grantsWaiter() {
+    AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(new GradientLimit(1, 1, 1), 1, Duration.ofSeconds(5));
+    AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().block();
+
+    AdaptiveConcurrencyLimiter.Permit[] second = new AdaptiveConcurrencyLimiter.Permit[1];
+    limiter.acquire().subscribe(permit -> second[0] = permit);
+    assertNull(second[0]);
+    assertEquals(1, limiter.getWaiting());
+
+    first.onSuccess();
+
+    assertNotNull(second[0]);
+    assertEquals(1, limiter.getInflight());
+  }
+
+  @Test
+  void acquire_whenWaitersTimeOut_removesThemFromQueue() {
+    AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(new GradientLimit(1, 1, 1), 2, Duration.ofMillis(10));
+    AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().block();
+
+    for (int i = 0; i < 20; i++) {
+      assertNull(limiter.acquire().block());
+    }
+
+    assertEquals(0, limiter.queuedWaiters());
+    assertEquals(0, limiter.getWaiting());
+
+    first.onIgnore();
+    assertEquals(0, limiter.getInflight());
+    assertNotNull(limiter.acquire().block());
+  }
+}
@@ -0,0 +1,55 @@
+package tn.compta.gateway.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class PathPatternTrieTest {
+
+  private final PathPatternTrie trie = PathPatternTrie.compile(
+      "/auth/**", "/actuator/health", "/api/*/info", "/swagger-ui.html");
+
+  @Test
+  void matches_whenPathIsExactPattern_returnsTrue() {
+    assertTrue(trie.matches("/actuator/health"));
+    assertTrue(trie.matches("/swagger-ui.html"));
+    assertFalse(trie.matches("/actuator/health/liveness"));
+    assertFalse(trie.matches("/actuator"));
+  }
+
+  @Test
+  void matches_whenPathUnderDoubleWildcard_returnsTrue() {
+    assertTrue(trie.matches("/auth"));
+    assertTrue(trie.matches("/auth/"));
+    assertTrue(trie.matches("/auth/api/auth/login"));
+    assertFalse(trie.matches("/authz/api"));
+  }
+
+  @Test
+  void matches_whenSingleWildcard_matchesExactlyOneSegment() {
+    assertTrue(trie.matches("/api/v1/info"));
+    assertFalse(trie.matches("/api/info"));
+    assertFalse(trie.matches("/api/v1/v2/info"));
+  }
+
+  @Test
+  void matches_whenPathInvalid_returnsFalse() {
+    assertFalse(trie.matches(null));
+    assertFalse(trie.matches(""));
+    assertFalse(trie.matches("auth/login"));
+  }
+
+  @Test
+  void publicEndpoints_coverPatterns() {
+    assertTrue(PublicEndpoints.isPublic("/v3/api-docs"));
+    assertTrue(PublicEndpoints.isPublic("/fallback/auth"));
+    assertFalse(PublicEndpoints.isPublic("/invoices/1"));
+    assertFalse(PublicEndpoints.isPublic("/actuator/env"));
+  }
+
+  @Test
+  void compile_whenDoubleWildcardNotLast_throws() {
+    assertThrows(IllegalArgumentException.class, () -> PathPatternTrie.compile("/api/**/info"));
+    assertThrows(IllegalArgumentException.class, () -> PathPatternTrie.compile("/api/*.json"));
+  }
+}
@@ -0,0 +1,77 @@
+package tn.compta.gateway.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.security.GatewayClaims;
+
+class IdentityHeadersFilterTest {
+
+  private final IdentityHeadersFilter filter = new IdentityHeadersFilter();
+  private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+  private final GatewayFilterChain chain = exchange -> {
+    forwarded.set(exchange);
+    return Mono.empty();
+  };
+
+  @Test
+  void filter_whenAnonymousWithoutIdentityHeaders_forwardsSameExchange() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/invoices"));
+
+    filter.filter(exchange, chain).block();
+
+    assertSame(exchange, forwarded.get());
+  }
+
+  @Test
+  void filter_whenAnonymous_stripsForgedHeaders() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/invoices")
+        .header("X-User-Id", "42")
+        .header("x-tenant-id", "7"));
+
+    filter.filter(exchange, chain).block();
+
+    HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+    assertFalse(headers.containsKey("X-User-Id"));
+    assertFalse(headers.containsKey("X-Tenant-Id"));
+  }
+
+  @Test
+  void filter_whenAuthenticated_replacesForgedHeadersWithClaims() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/invoices")
+        .header("X-User-Id", "forged")
+        .header("X-User-Email", "forged@example.com"));
+    exchange.getAttributes().put(GatewayClaims.ATTRIBUTE, claims());
+
+    filter.filter(exchange, chain).block();
+
+    HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+    assertEquals(List.of("user-1"), headers.get("X-User-Id"));
+    assertEquals("ADMIN,USER", headers.getFirst("X-User-Roles"));
+    assertEquals("tenant-9", headers.getFirst("X-Tenant-Id"));
+    assertFalse(headers.containsKey("X-User-Email"));
+  }
+
+  @Test
+  void filter_onPublicEndpoint_addsNoIdentity() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+    exchange.getAttributes().put(GatewayClaims.ATTRIBUTE, claims());
+
+    filter.filter(exchange, chain).block();
+
+    assertSame(exchange, forwarded.get());
+  }
+
+  private static GatewayClaims claims() {
+    return new GatewayClaims("RS256", "user-1", "alice", null, List.of("ADMIN", "USER"),
+        "tenant-9", "https://auth.compta.tn", "jti-1", null, null);
+  }
+}
@@ -0,0 +1,67 @@
+package tn.compta.gateway.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import tn.compta.gateway.config.ProfileHelper;
+
+class SecurityHeadersFilterTest {
+
+  private final SecurityHeadersFilter filter = new SecurityHeadersFilter(new ProfileHelper("prod"));
+
+  @Test
+  void filter_appliesHeadersAtCommit() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/invoices"));
+
+    StepVerifier.create(filter.filter(exchange, ex -> {
+      assertFalse(ex.getResponse().getHeaders().containsKey("X-Frame-Options"));
+      ex.getResponse().getHeaders().add("Server", "netty");
+      return ex.getResponse().setComplete();
+    })).verifyComplete();
+
+    HttpHeaders headers = exchange.getResponse().getHeaders();
+    assertEquals("DENY", headers.getFirst("X-Frame-Options"));
+    assertEquals("default-src 'none'; frame-ancestors 'none';", headers.getFirst("Content-Security-Policy"));
+    assertNotNull(headers.getFirst("Strict-Transport-Security"));
+    assertFalse(headers.containsKey("Server"));
+  }
+
+  @Test
+  void filter_whenRouteSetsCacheControl_keepsIt() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/companies"));
+
+    StepVerifier.create(filter.filter(exchange, ex -> {
+      ex.getResponse().getHeaders().setCacheControl("private, max-age=60");
+      return ex.getResponse().setComplete();
+    })).verifyComplete();
+
+    assertEquals(1, exchange.getResponse().getHeaders().get("Cache-Control").size());
+    assertEquals("private, max-age=60", exchange.getResponse().getHeaders().getCacheControl());
+  }
+
+  @Test
+  void filter_onSwaggerUi_usesPermissiveCsp() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/swagger-ui/index.html"));
+
+    StepVerifier.create(filter.filter(exchange, ex -> ex.getResponse().setComplete())).verifyComplete();
+
+    assertTrue(exchange.getResponse().getHeaders().getFirst("Content-Security-Policy").contains("'unsafe-inline'"));
+  }
+
+  @Test
+  void filter_outsideProduction_omitsHsts() {
+    SecurityHeadersFilter devFilter = new SecurityHeadersFilter(new ProfileHelper("dev"));
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/invoices"));
+
+    StepVerifier.create(devFilter.filter(exchange, ex -> Mono.empty()).then(exchange.getResponse().setComplete()))
+        .verifyComplete();
+
+    assertFalse(exchange.getResponse().getHeaders().containsKey("Strict-Transport-Security"));
+    assertEquals("nosniff", exchange.getResponse().getHeaders().getFirst("X-Content-Type-Options"));
+  }
+}
@@ -0,0 +1,79 @@
+package tn.compta.gateway.health;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import tn.compta.gateway.health.DownstreamHealthProber.ProbeResult;
+
+class DownstreamServicesHealthIndicatorTest {
+
+  private static final long NOW = 1_000_000;
+  private static final long STALE_AFTER = 40_000;
+
+  private static final String AUTH_1 = "http://auth-1:8081";
+  private static final String AUTH_2 = "http://auth-2:8081";
+
+  @Test
+  void toHealth_whenNoCheckYet_isUnknown() {
+    assertEquals(Status.UNKNOWN, DownstreamServicesHealthIndicator.toHealth(Map.of(), NOW, STALE_AFTER).getStatus());
+  }
+
+  @Test
+  void toHealth_whenAllUp_reportsAgeAndLatencyPerInstance() {
+    Health health = DownstreamServicesHealthIndicator.toHealth(Map.of(
+        "auth-service", Map.of(AUTH_1, new ProbeResult(true, 12, NOW - 3_000, null, null)),
+        "authz-service", Map.of("http://authz:8082", new ProbeResult(true, 8, NOW - 5_000, null, null))),
+        NOW, STALE_AFTER);
+
+    assertEquals(Status.UP, health.getStatus());
+    Map<?, ?> auth = instance(health, "auth-service", AUTH_1);
+    assertEquals(12L, auth.get("latencyMs"));
+    assertEquals(3_000L, auth.get("ageMs"));
+  }
+
+  @Test
+  void toHealth_whenOneInstanceOfServiceDown_staysUp() {
+    Health health = DownstreamServicesHealthIndicator.toHealth(Map.of(
+        "auth-service", Map.of(
+            AUTH_1, new ProbeResult(true, 12, NOW, null, null),
+            AUTH_2, new ProbeResult(false, 5_000, NOW, null, "Connection failed or timeout"))),
+        NOW, STALE_AFTER);
+
+    assertEquals(Status.UP, health.getStatus());
+    assertEquals(1, service(health, "auth-service").get("instancesUp"));
+    assertEquals("DOWN", instance(health, "auth-service", AUTH_2).get("status"));
+  }
+
+  @Test
+  void toHealth_whenEveryInstanceOfServiceDown_isDown() {
+    Health health = DownstreamServicesHealthIndicator.toHealth(Map.of(
+        "auth-service", Map.of(AUTH_1, new ProbeResult(true, 12, NOW, null, null)),
+        "invoice-service", Map.of("http://invoice:8083",
+            new ProbeResult(false, 5_000, NOW, null, "Connection failed or timeout"))),
+        NOW, STALE_AFTER);
+
+    assertEquals(Status.DOWN, health.getStatus());
+    assertEquals("DOWN", service(health, "invoice-service").get("status"));
+  }
+
+  @Test
+  void toHealth_whenResultStale_isDown() {
+    Health health = DownstreamServicesHealthIndicator.toHealth(Map.of(
+        "auth-service", Map.of(AUTH_1, new ProbeResult(true, 12, NOW - STALE_AFTER - 1, null, null))),
+        NOW, STALE_AFTER);
+
+    assertEquals(Status.DOWN, health.getStatus());
+    assertEquals("No recent check", instance(health, "auth-service", AUTH_1).get("reason"));
+  }
+
+  private static Map<?, ?> service(Health health, String serviceId) {
+    return (Map<?, ?>) health.getDetails().get(serviceId);
+  }
+
+  private static Map<?, ?> instance(Health health, String serviceId, String url) {
+    return (Map<?, ?>) ((Map<?, ?>) service(health, serviceId).get("instances")).get(url);
+  }
+}
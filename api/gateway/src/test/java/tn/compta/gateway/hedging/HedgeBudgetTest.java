@@ -0,0 +1,50 @@
+package tn.compta.gateway.hedging;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class HedgeBudgetTest {
+
+  @Test
+  void tryHedge_whenNoTraffic_isDenied() {
+    HedgeBudget budget = new HedgeBudget(10, 10);
+
+    assertFalse(budget.tryHedge());
+  }
+
+  @Test
+  void tryHedge_overManyRequests_staysWithinPercent() {
+    HedgeBudget budget = new HedgeBudget(10, 10);
+    int hedged = 0;
+
+    for (int i = 0; i < 1000; i++) {
+      budget.onRequest();
+      if (budget.tryHedge()) {
+        hedged++;
+      }
+    }
+
+    assertEquals(100, hedged);
+  }
+
+  @Test
+  void onRequest_afterQuietPeriod_capsBurst() {
+    HedgeBudget budget = new HedgeBudget(10, 3);
+    for (int i = 0; i < 10_000; i++) {
+      budget.onRequest();
+    }
+
+    int hedged = 0;
+    while (budget.tryHedge()) {
+      hedged++;
+    }
+
+    assertEquals(3, hedged);
+  }
+
+  @Test
+  void constructor_whenPercentOutOfRange_throws() {
+    assertThrows(IllegalArgumentException.class, () -> new HedgeBudget(150, 10));
+  }
+}
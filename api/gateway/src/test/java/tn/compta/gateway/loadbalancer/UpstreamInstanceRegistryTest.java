@@ -0,0 +1,147 @@
+package tn.compta.gateway.loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+class UpstreamInstanceRegistryTest {
+
+  private static final String SERVICE = "authz-service";
+
+  private final ServiceInstance a = instance("10.0.0.1");
+  private final ServiceInstance b = instance("10.0.0.2");
+  private final ServiceInstance c = instance("10.0.0.3");
+
+  private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final UpstreamServicesProperties.OutlierDetection settings = new UpstreamServicesProperties.OutlierDetection();
+  private final UpstreamInstanceRegistry registry = new UpstreamInstanceRegistry(settings, meterRegistry, clock::get);
+
+  @Test
+  void choose_prefersInstanceWithFewerRequestsInFlight() {
+    List<ServiceInstance> instances = List.of(a, b);
+    registry.choose(SERVICE, instances);
+    for (int i = 0; i < 5; i++) {
+      registry.start(a);
+    }
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals(b, registry.choose(SERVICE, instances));
+    }
+  }
+
+  @Test
+  void onError_afterConsecutiveErrors_ejectsInstance() {
+    List<ServiceInstance> instances = List.of(a, b, c);
+    registry.choose(SERVICE, instances);
+
+    fail(a, settings.getConsecutiveErrors());
+
+    assertEquals(0.0, weight(a));
+    for (int i = 0; i < 50; i++) {
+      assertNotEquals(a, registry.choose(SERVICE, instances));
+    }
+    assertEquals(1.0, meterRegistry.get("gateway.lb.ejections").tag("reason", "errors").counter().count());
+  }
+
+  @Test
+  void onCancel_doesNotCountAsFailure() {
+    registry.choose(SERVICE, List.of(a, b, c));
+
+    for (int i = 0; i < settings.getConsecutiveErrors(); i++) {
+      registry.start(a).onCancel();
+    }
+
+    assertEquals(1.0, weight(a));
+    assertEquals(0.0, meterRegistry.get("gateway.lb.instance.outstanding").tag("instance", "10.0.0.1:8082").gauge().value());
+  }
+
+  @Test
+  void eject_neverExceedsMaxEjectionPercent() {
+    registry.choose(SERVICE, List.of(a, b));
+
+    fail(a, settings.getConsecutiveErrors());
+    fail(b, settings.getConsecutiveErrors());
+
+    assertEquals(0.0, weight(a));
+    assertEquals(1.0, weight(b));
+  }
+
+  @Test
+  void onResponse_whenLatencyFarAbovePeers_ejectsInstance() {
+    registry.choose(SERVICE, List.of(a, b, c));
+
+    respond(a, settings.getMinSamples(), 20);
+    respond(b, settings.getMinSamples(), 25);
+    respond(c, settings.getMinSamples(), 400);
+
+    assertEquals(1.0, weight(a));
+    assertEquals(1.0, weight(b));
+    assertEquals(0.0, weight(c));
+  }
+
+  @Test
+  void isEjected_afterEjectionTime_reinstatesWithSlowStart() {
+    registry.choose(SERVICE, List.of(a, b, c));
+    fail(a, settings.getConsecutiveErrors());
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(settings.getBaseEjectionMs()));
+    assertEquals(0.1, weight(a), 1e-9);
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(settings.getSlowStartMs() / 2));
+    assertEquals(0.55, weight(a), 1e-9);
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(settings.getSlowStartMs()));
+    assertEquals(1.0, weight(a));
+  }
+
+  @Test
+  void choose_whenInstanceRemoved_dropsItsMeters() {
+    registry.choose(SERVICE, List.of(a, b));
+
+    registry.choose(SERVICE, List.of(b));
+
+    assertNull(meterRegistry.find("gateway.lb.instance.weight").tag("instance", "10.0.0.1:8082").gauge());
+  }
+
+  @Test
+  void chooseOther_excludesGivenInstance() {
+    registry.choose(SERVICE, List.of(a, b));
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals(b, registry.chooseOther(a));
+    }
+    assertNull(new UpstreamInstanceRegistry(settings).chooseOther(a));
+  }
+
+  private void fail(ServiceInstance instance, int times) {
+    for (int i = 0; i < times; i++) {
+      registry.start(instance).onError();
+    }
+  }
+
+  private void respond(ServiceInstance instance, int times, long latencyMs) {
+    for (int i = 0; i < times; i++) {
+      UpstreamInstanceRegistry.Call call = registry.start(instance);
+      clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+      call.onResponse(200);
+    }
+  }
+
+  private double weight(ServiceInstance instance) {
+    return meterRegistry.get("gateway.lb.instance.weight")
+        .tag("instance", UpstreamInstanceRegistry.key(instance))
+        .gauge()
+        .value();
+  }
+
+  private static ServiceInstance instance(String host) {
+    return new DefaultServiceInstance(SERVICE + "-" + host, SERVICE, host, 8082, false);
+  }
+}
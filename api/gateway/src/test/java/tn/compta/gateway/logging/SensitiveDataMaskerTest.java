@@ -0,0 +1,44 @@
+package tn.compta.gateway.logging;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+class SensitiveDataMaskerTest {
+
+  @Test
+  void appendMaskedQuery_masksSensitiveValuesOnly() {
+    assertEquals("page=2&access_token=***&size=10",
+        mask("page=2&access_token=abc.def&size=10"));
+  }
+
+  @Test
+  void appendMaskedQuery_matchesNamesIgnoringCase() {
+    assertEquals("X-Api-Key=***&userPassword=***", mask("X-Api-Key=k1&userPassword=p"));
+  }
+
+  @Test
+  void appendMaskedQuery_keepsParamsWithoutValueAndEmptyParts() {
+    assertEquals("token&a=1&&b=", mask("token&a=1&&b="));
+  }
+
+  @Test
+  void maskHeaders_masksSensitiveHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add("Authorization", "Bearer secret");
+    headers.add("Accept", "application/json");
+
+    String masked = SensitiveDataMasker.maskHeaders(headers);
+
+    assertFalse(masked.contains("secret"));
+    assertTrue(masked.contains("Authorization=[***MASKED***]"));
+    assertTrue(masked.contains("Accept=[application/json]"));
+  }
+
+  private String mask(String query) {
+    StringBuilder out = new StringBuilder();
+    SensitiveDataMasker.appendMaskedQuery(out, query);
+    return out.toString();
+  }
+}
@@ -0,0 +1,151 @@
+package tn.compta.gateway.perf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.netty.handler.codec.http.HttpMethod;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import tn.compta.gateway.perf.OpenLoadGenerator.LoadReport;
+import tn.compta.gateway.perf.OpenLoadGenerator.Request;
+
+/**
+ * End-to-end load test: the whole gateway (security chain, global and route filters, load
+ * balancer, Netty routing) in front of in-process stub services and a Redis stand-in.
+ *
+ * Runs only with {@code mvn test -Pperf}, without network access. The load can be tuned with
+ * {@code -Dperf.rate} (req/s), {@code -Dperf.duration-seconds}, {@code -Dperf.warmup-seconds};
+ * the run fails when the p99 exceeds {@code -Dperf.p99-budget-ms}, when more than
+ * {@code -Dperf.max-failure-percent} of requests fail, or when the gateway cannot sustain the
+ * requested rate.
+ */
+@Tag("perf")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Slf4j
+class GatewayLoadTest {
+
+  private static final int RATE = Integer.getInteger("perf.rate", 500);
+  private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("perf.duration-seconds", 30));
+  private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("perf.warmup-seconds", 10));
+  private static final double P99_BUDGET_MS = Double.parseDouble(System.getProperty("perf.p99-budget-ms", "250"));
+  private static final double MAX_FAILURE_PERCENT =
+      Double.parseDouble(System.getProperty("perf.max-failure-percent", "1"));
+
+  private static final int USERS = 200;
+
+  private static final TestTokens TOKENS = new TestTokens();
+  private static final RespStub REDIS = new RespStub();
+  private static final StubBackend AUTH = StubBackend.start("auth-service", LatencyProfile.of(20, 120, 0.001),
+      Map.of("/.well-known/jwks.json", TOKENS.jwks()));
+  private static final StubBackend AUTHZ = StubBackend.start("authz-service", LatencyProfile.of(3, 25, 0.005));
+  private static final StubBackend INVOICES = StubBackend.start("invoice-service", LatencyProfile.of(8, 60, 0.005));
+  private static final StubBackend EMPLOYEES = StubBackend.start("employee-service", LatencyProfile.of(5, 40, 0.005));
+  private static final StubBackend DOCUMENTS = StubBackend.start("document-service", LatencyProfile.of(15, 100, 0));
+
+  @LocalServerPort
+  private int port;
+
+  @DynamicPropertySource
+  static void stubs(DynamicPropertyRegistry registry) {
+    registry.add("AUTH_SERVICE_URL", AUTH::baseUrl);
+    registry.add("AUTHZ_SERVICE_URL", AUTHZ::baseUrl);
+    registry.add("INVOICE_SERVICE_URL", INVOICES::baseUrl);
+    registry.add("EMPLOYEE_SERVICE_URL", EMPLOYEES::baseUrl);
+    registry.add("DOCUMENT_SERVICE_URL", DOCUMENTS::baseUrl);
+    registry.add("spring.data.redis.host", () -> "127.0.0.1");
+    registry.add("spring.data.redis.port", REDIS::port);
+    registry.add("jwt.secret", () -> TestTokens.HMAC_SECRET);
+    registry.add("jwt.issuer", () -> TestTokens.HMAC_ISSUER);
+    registry.add("oauth2.issuer", () -> TestTokens.RSA_ISSUER);
+    registry.add("oauth2.jwks-url", () -> AUTH.baseUrl() + "/.well-known/jwks.json");
+    // Per-request debug logging would dominate the measurements
+    registry.add("logging.level.tn.compta.gateway", () -> "INFO");
+    registry.add("management.tracing.sampling.probability", () -> "0.1");
+  }
+
+  @AfterAll
+  static void stopStubs() {
+    for (AutoCloseable stub : List.of(AUTH, AUTHZ, INVOICES, EMPLOYEES, DOCUMENTS, REDIS)) {
+      try {
+        stub.close();
+      } catch (Exception e) {
+        // best effort
+      }
+    }
+  }
+
+  @Test
+  void gatewaySustainsMixedTrafficWithinLatencyBudget() {
+    Supplier<Request> traffic = mixedTraffic();
+
+    try (OpenLoadGenerator generator = new OpenLoadGenerator("http://127.0.0.1:" + port, 2_000)) {
+      LoadReport warmup = generator.run(traffic, RATE, WARMUP, Duration.ofSeconds(10));
+      log.info("[perf] warmup   {}", warmup.summary());
+
+      LoadReport report = generator.run(traffic, RATE, DURATION, Duration.ofSeconds(30));
+      log.info("[perf] measured {}", report.summary());
+      log.info("[perf] backends  auth={} authz={} invoices={} employees={} documents={} redis={}",
+          AUTH.requests(), AUTHZ.requests(), INVOICES.requests(), EMPLOYEES.requests(),
+          DOCUMENTS.requests(), REDIS.commands());
+
+      assertTrue(report.throughput() >= RATE * 0.95,
+          "Requested " + RATE + " req/s, sustained " + report.throughput());
+      assertTrue(report.failureRatio() * 100 <= MAX_FAILURE_PERCENT,
+          "Failures above " + MAX_FAILURE_PERCENT + "%: " + report.summary());
+      assertTrue(report.percentileMillis(99) <= P99_BUDGET_MS,
+          "p99 above " + P99_BUDGET_MS + "ms: " + report.summary());
+      assertTrue(REDIS.commands() > 0, "Rate limiter never synced with Redis");
+    }
+  }
+
+  /**
+   * Reads on every route and some writes. Half the users hold auth-service (HS256) tokens,
+   * the other half OAuth2 server (RS256) tokens.
+   */
+  private static Supplier<Request> mixedTraffic() {
+    List<String> tokens = new ArrayList<>(USERS);
+    for (int i = 0; i < USERS; i++) {
+      String userId = Integer.toString(i);
+      String tenantId = "tenant-" + (i % 10);
+      tokens.add(i % 2 == 0 ? TOKENS.hs256(userId, tenantId) : TOKENS.rs256(userId, tenantId));
+    }
+
+    return () -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      String token = tokens.get(random.nextInt(USERS));
+      int roll = random.nextInt(100);
+      if (roll < 25) {
+        return new Request(HttpMethod.GET, "/invoices/api/invoices/" + random.nextInt(1_000), token, null);
+      }
+      if (roll < 45) {
+        return new Request(HttpMethod.GET, "/employees/api/employees/" + random.nextInt(500), token, null);
+      }
+      if (roll < 60) {
+        return new Request(HttpMethod.GET, "/authz/api/authz/roles", token, null);
+      }
+      if (roll < 75) {
+        return new Request(HttpMethod.GET, "/authz/api/authz/permissions/" + random.nextInt(50), token, null);
+      }
+      if (roll < 85) {
+        return new Request(HttpMethod.POST, "/invoices/api/invoices", token,
+            "{\"clientId\":" + random.nextInt(100) + ",\"amount\":" + random.nextInt(10_000) + "}");
+      }
+      if (roll < 95) {
+        return new Request(HttpMethod.GET, "/documents/api/documents/" + random.nextInt(200), token, null);
+      }
+      // Public route: the token is still decoded, and keys the rate limiter
+      return new Request(HttpMethod.GET, "/auth/api/auth/me", token, null);
+    };
+  }
+}
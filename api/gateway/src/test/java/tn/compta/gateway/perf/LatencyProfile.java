@@ -0,0 +1,33 @@
+package tn.compta.gateway.perf;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Response time and failure behaviour of a stub backend.
+ *
+ * Latencies follow a log-normal distribution fitted on the median and the p99, which gives
+ * the long right tail of real services. {@code errorRate} is the share of requests answered
+ * with 503.
+ */
+record LatencyProfile(double medianMillis, double p99Millis, double errorRate) {
+
+  // z-score of the 99th percentile of a standard normal distribution
+  private static final double Z_99 = 2.326;
+
+  static LatencyProfile of(double medianMillis, double p99Millis, double errorRate) {
+    return new LatencyProfile(medianMillis, p99Millis, errorRate);
+  }
+
+  long sampleMicros() {
+    if (p99Millis <= medianMillis) {
+      return (long) (medianMillis * 1000);
+    }
+    double sigma = Math.log(p99Millis / medianMillis) / Z_99;
+    double millis = medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+    return (long) (millis * 1000);
+  }
+
+  boolean sampleError() {
+    return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+  }
+}
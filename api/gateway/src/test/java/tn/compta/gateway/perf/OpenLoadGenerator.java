@@ -0,0 +1,145 @@
+package tn.compta.gateway.perf;
+
+import io.netty.handler.codec.http.HttpMethod;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Open-model load generator: requests start at a fixed arrival rate whatever the response
+ * times, like independent users would send them.
+ *
+ * Latency is measured from the request's scheduled start, not from when it was actually
+ * sent, so a stalled gateway is not hidden by the generator falling behind (coordinated
+ * omission). Latencies are recorded in an HdrHistogram, in microseconds.
+ */
+final class OpenLoadGenerator implements AutoCloseable {
+
+  record Request(HttpMethod method, String path, String token, String body) {
+  }
+
+  private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+  private final ConnectionProvider connections;
+  private final HttpClient client;
+
+  OpenLoadGenerator(String baseUrl, int maxConnections) {
+    this.connections = ConnectionProvider.builder("perf-load")
+        .maxConnections(maxConnections)
+        .pendingAcquireMaxCount(-1)
+        .build();
+    this.client = HttpClient.create(connections).baseUrl(baseUrl);
+  }
+
+  /**
+   * Sends {@code ratePerSecond} requests per second for {@code duration} and waits for the
+   * last responses (at most {@code drainTimeout}).
+   */
+  LoadReport run(Supplier<Request> requests, int ratePerSecond, Duration duration, Duration drainTimeout) {
+    Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+    Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    AtomicInteger inflight = new AtomicInteger();
+
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+    long total = duration.toNanos() / intervalNanos;
+    long start = System.nanoTime();
+
+    for (long i = 0; i < total; i++) {
+      long scheduled = start + i * intervalNanos;
+      long wait = scheduled - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      inflight.incrementAndGet();
+      send(requests.get())
+          .onErrorReturn(0)
+          .subscribe(status -> {
+            long micros = Math.min(MAX_LATENCY_MICROS, (System.nanoTime() - scheduled) / 1000);
+            recorder.recordValue(micros);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            inflight.decrementAndGet();
+          });
+    }
+    long sent = System.nanoTime();
+
+    long drainDeadline = sent + drainTimeout.toNanos();
+    while (inflight.get() > 0 && System.nanoTime() < drainDeadline) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    Map<Integer, Long> counts = new TreeMap<>();
+    statuses.forEach((status, count) -> counts.put(status, count.sum()));
+    return new LoadReport(total, (sent - start) / 1e9, recorder.getIntervalHistogram(), counts, inflight.get());
+  }
+
+  private Mono<Integer> send(Request request) {
+    HttpClient.ResponseReceiver<?> receiver;
+    HttpClient authenticated = request.token() != null
+        ? client.headers(h -> h.set("Authorization", "Bearer " + request.token()))
+        : client;
+    if (request.body() != null) {
+      receiver = authenticated
+          .headers(h -> h.set("Content-Type", "application/json"))
+          .request(request.method())
+          .uri(request.path())
+          .send((req, out) -> out.sendString(Mono.just(request.body()), StandardCharsets.UTF_8));
+    } else {
+      receiver = authenticated.request(request.method()).uri(request.path());
+    }
+    return receiver.responseSingle((response, body) -> body.then(Mono.just(response.status().code())));
+  }
+
+  @Override
+  public void close() {
+    connections.disposeLater().block(Duration.ofSeconds(10));
+  }
+
+  /**
+   * Outcome of a run. Status 0 counts transport errors (connection refused, reset...).
+   */
+  record LoadReport(long requests, double seconds, Histogram latencies, Map<Integer, Long> statuses,
+      int unanswered) {
+
+    double throughput() {
+      return requests / seconds;
+    }
+
+    double percentileMillis(double percentile) {
+      return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Share of requests that failed: transport errors, 5xx, or never answered.
+     */
+    double failureRatio() {
+      long failed = unanswered;
+      for (Map.Entry<Integer, Long> entry : statuses.entrySet()) {
+        if (entry.getKey() == 0 || entry.getKey() >= 500) {
+          failed += entry.getValue();
+        }
+      }
+      return requests == 0 ? 0 : (double) failed / requests;
+    }
+
+    String summary() {
+      return String.format(
+          "%d requests in %.1fs (%.0f req/s) | p50 %.2fms p90 %.2fms p99 %.2fms p99.9 %.2fms max %.2fms"
+              + " | statuses %s | unanswered %d | failures %.2f%%",
+          requests, seconds, throughput(),
+          percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(99.9),
+          latencies.getMaxValue() / 1000.0, statuses, unanswered, failureRatio() * 100);
+    }
+  }
+}
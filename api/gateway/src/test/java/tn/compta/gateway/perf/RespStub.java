@@ -0,0 +1,193 @@
+package tn.compta.gateway.perf;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import reactor.netty.DisposableServer;
+import reactor.netty.tcp.TcpServer;
+
+/**
+ * In-memory Redis stand-in speaking RESP2, enough for the gateway's own commands.
+ *
+ * Supports the connection handshake (HELLO is refused so that Lettuce falls back to RESP2),
+ * PING, INFO, GET/SET/MGET/DEL, INCR/INCRBY and PEXPIRE (accepted, keys never expire).
+ * Lua is not interpreted: EVALSHA answers NOSCRIPT and EVAL runs the rate limiter's sync
+ * script ({@code INCRBY KEYS[i] ARGV[i + 1]} for each key), the only script the gateway sends.
+ */
+final class RespStub implements AutoCloseable {
+
+  private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+  private final LongAdder commands = new LongAdder();
+  private final DisposableServer server;
+
+  RespStub() {
+    this.server = TcpServer.create()
+        .host("127.0.0.1")
+        .port(0)
+        .doOnConnection(connection -> connection.addHandlerLast(new RespDecoder()))
+        .handle((in, out) -> out.sendByteArray(in.receiveObject()
+            .map(command -> execute(toStrings(command)))))
+        .bindNow();
+  }
+
+  int port() {
+    return server.port();
+  }
+
+  long commands() {
+    return commands.sum();
+  }
+
+  private byte[] execute(List<String> command) {
+    commands.increment();
+    String name = command.get(0).toUpperCase();
+    return switch (name) {
+      case "PING" -> simple("PONG");
+      case "HELLO" -> error("ERR unknown command 'HELLO'");
+      case "CLIENT", "SELECT", "AUTH" -> simple("OK");
+      case "INFO" -> bulk("# Server\r\nredis_version:7.2.0\r\nredis_mode:standalone\r\n");
+      case "GET" -> bulk(data.get(command.get(1)));
+      case "SET" -> {
+        data.put(command.get(1), command.get(2).getBytes(StandardCharsets.UTF_8));
+        yield simple("OK");
+      }
+      case "MGET" -> {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("*" + (command.size() - 1) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        for (String key : command.subList(1, command.size())) {
+          out.writeBytes(bulk(data.get(key)));
+        }
+        yield out.toByteArray();
+      }
+      case "DEL" -> integer(command.subList(1, command.size()).stream()
+          .filter(key -> data.remove(key) != null).count());
+      case "INCR" -> integer(incrBy(command.get(1), 1));
+      case "INCRBY" -> integer(incrBy(command.get(1), Long.parseLong(command.get(2))));
+      case "PEXPIRE", "EXPIRE" -> integer(1);
+      // No token revoked during the run
+      case "ZRANGEBYSCORE" -> "*0\r\n".getBytes(StandardCharsets.US_ASCII);
+      case "EVALSHA" -> error("NOSCRIPT No matching script. Please use EVAL.");
+      // EVAL script numkeys key... ttl delta...
+      case "EVAL" -> {
+        int keys = Integer.parseInt(command.get(2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("*" + keys + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < keys; i++) {
+          out.writeBytes(integer(incrBy(command.get(3 + i), Long.parseLong(command.get(4 + keys + i)))));
+        }
+        yield out.toByteArray();
+      }
+      default -> error("ERR unknown command '" + command.get(0) + "'");
+    };
+  }
+
+  private long incrBy(String key, long delta) {
+    byte[] updated = data.compute(key, (k, current) -> {
+      long value = current != null ? Long.parseLong(new String(current, StandardCharsets.US_ASCII)) : 0;
+      return Long.toString(value + delta).getBytes(StandardCharsets.US_ASCII);
+    });
+    return Long.parseLong(new String(updated, StandardCharsets.US_ASCII));
+  }
+
+  private static List<String> toStrings(Object command) {
+    List<String> strings = new ArrayList<>();
+    for (Object part : (List<?>) command) {
+      strings.add(new String((byte[]) part, StandardCharsets.UTF_8));
+    }
+    return strings;
+  }
+
+  private static byte[] simple(String value) {
+    return ("+" + value + "\r\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] error(String message) {
+    return ("-" + message + "\r\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] integer(long value) {
+    return (":" + value + "\r\n").getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static byte[] bulk(String value) {
+    return bulk(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] bulk(byte[] value) {
+    if (value == null) {
+      return "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 16);
+    out.writeBytes(("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.writeBytes(value);
+    out.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+    return out.toByteArray();
+  }
+
+  @Override
+  public void close() {
+    server.disposeNow();
+  }
+
+  /**
+   * Decodes client commands (arrays of bulk strings) into lists of byte arrays.
+   */
+  private static final class RespDecoder extends ByteToMessageDecoder {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+      while (in.isReadable()) {
+        in.markReaderIndex();
+        List<byte[]> command = readCommand(in);
+        if (command == null) {
+          in.resetReaderIndex();
+          return;
+        }
+        out.add(command);
+      }
+    }
+
+    private static List<byte[]> readCommand(ByteBuf in) {
+      Long count = readPrefixed(in, '*');
+      if (count == null) {
+        return null;
+      }
+      List<byte[]> parts = new ArrayList<>(count.intValue());
+      for (int i = 0; i < count; i++) {
+        Long length = readPrefixed(in, '$');
+        if (length == null || in.readableBytes() < length + 2) {
+          return null;
+        }
+        byte[] part = new byte[length.intValue()];
+        in.readBytes(part);
+        in.skipBytes(2);
+        parts.add(part);
+      }
+      return parts;
+    }
+
+    /**
+     * Reads a {@code <prefix><number>\r\n} line, or returns null when it is not complete yet.
+     */
+    private static Long readPrefixed(ByteBuf in, char prefix) {
+      int end = in.indexOf(in.readerIndex(), in.writerIndex(), (byte) '\n');
+      if (end < 0) {
+        return null;
+      }
+      byte type = in.readByte();
+      if (type != prefix) {
+        throw new IllegalStateException("Unexpected RESP type '" + (char) type + "', expected '" + prefix + "'");
+      }
+      String number = in.readCharSequence(end - in.readerIndex() - 1, StandardCharsets.US_ASCII).toString();
+      in.skipBytes(2);
+      return Long.parseLong(number);
+    }
+  }
+}
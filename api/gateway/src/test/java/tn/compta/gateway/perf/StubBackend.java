@@ -0,0 +1,96 @@
+package tn.compta.gateway.perf;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * In-process Netty server standing in for a downstream service.
+ *
+ * Every request is answered after a delay drawn from the {@link LatencyProfile}, with a small
+ * JSON body, or with 503 for the configured share of requests. Health checks and the
+ * {@code fixedResponses} (e.g. the JWKS document) are answered immediately and never fail.
+ * HTTP/1.1 and h2c are both accepted, like the real services.
+ */
+final class StubBackend implements AutoCloseable {
+
+  private final String name;
+  private final LatencyProfile profile;
+  private final Map<String, String> fixedResponses;
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final DisposableServer server;
+
+  private StubBackend(String name, LatencyProfile profile, Map<String, String> fixedResponses) {
+    this.name = name;
+    this.profile = profile;
+    this.fixedResponses = fixedResponses;
+    this.server = HttpServer.create()
+        .host("127.0.0.1")
+        .port(0)
+        .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+        .handle(this::handle)
+        .bindNow();
+  }
+
+  static StubBackend start(String name, LatencyProfile profile) {
+    return new StubBackend(name, profile, Map.of());
+  }
+
+  static StubBackend start(String name, LatencyProfile profile, Map<String, String> fixedResponses) {
+    return new StubBackend(name, profile, fixedResponses);
+  }
+
+  String baseUrl() {
+    return "http://127.0.0.1:" + server.port();
+  }
+
+  long requests() {
+    return requests.sum();
+  }
+
+  long errors() {
+    return errors.sum();
+  }
+
+  private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+    String path = request.fullPath();
+    String fixed = fixedResponses.get(path);
+    if (fixed != null || path.startsWith("/actuator")) {
+      return json(response, fixed != null ? fixed : "{\"status\":\"UP\"}");
+    }
+
+    requests.increment();
+    boolean error = profile.sampleError();
+    Duration delay = Duration.ofNanos(profile.sampleMicros() * 1000);
+    // Drain the request body (uploads) before answering
+    return request.receive().then()
+        .then(Mono.delay(delay))
+        .then(Mono.defer(() -> {
+          if (error) {
+            errors.increment();
+            return Mono.from(response.status(503).send());
+          }
+          return Mono.from(json(response, "{\"service\":\"" + name + "\",\"path\":\"" + path + "\"}"));
+        }));
+  }
+
+  private static Publisher<Void> json(HttpServerResponse response, String body) {
+    return response
+        .header("Content-Type", "application/json")
+        .sendByteArray(Mono.just(body.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Override
+  public void close() {
+    server.disposeNow();
+  }
+}
@@ -0,0 +1,82 @@
+package tn.compta.gateway.perf;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Signs bearer tokens the way the real issuers do: HS256 like auth-service (shared secret)
+ * and RS256 like the OAuth2 server (key published as a JWKS document).
+ */
+final class TestTokens {
+
+  static final String HMAC_SECRET = "perf-test-secret-perf-test-secret-perf-test-secret-0123456789";
+  static final String HMAC_ISSUER = "compta-auth";
+  static final String RSA_ISSUER = "http://oauth2.perf.local";
+
+  private final RSAKey rsaKey;
+  private final JWSSigner rsaSigner;
+  private final JWSSigner hmacSigner;
+
+  TestTokens() {
+    try {
+      this.rsaKey = new RSAKeyGenerator(2048).keyID("perf-" + UUID.randomUUID()).generate();
+      this.rsaSigner = new RSASSASigner(rsaKey);
+      this.hmacSigner = new MACSigner(HMAC_SECRET.getBytes(StandardCharsets.UTF_8));
+    } catch (JOSEException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  String jwks() {
+    return new JWKSet(rsaKey.toPublicJWK()).toString();
+  }
+
+  String hs256(String userId, String tenantId) {
+    return sign(new JWSHeader(JWSAlgorithm.HS256), claims(userId, tenantId, HMAC_ISSUER), hmacSigner);
+  }
+
+  String rs256(String userId, String tenantId) {
+    return sign(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(rsaKey.getKeyID()).build(),
+        claims(userId, tenantId, RSA_ISSUER), rsaSigner);
+  }
+
+  private static JWTClaimsSet claims(String userId, String tenantId, String issuer) {
+    Instant now = Instant.now();
+    return new JWTClaimsSet.Builder()
+        .subject(userId)
+        .issuer(issuer)
+        .jwtID(UUID.randomUUID().toString())
+        .issueTime(Date.from(now))
+        .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+        .claim("username", "user-" + userId)
+        .claim("email", "user-" + userId + "@perf.local")
+        .claim("roles", List.of("USER", "COMPTABLE"))
+        .claim("tenantId", tenantId)
+        .build();
+  }
+
+  private static String sign(JWSHeader header, JWTClaimsSet claims, JWSSigner signer) {
+    SignedJWT jwt = new SignedJWT(header, claims);
+    try {
+      jwt.sign(signer);
+    } catch (JOSEException e) {
+      throw new IllegalStateException(e);
+    }
+    return jwt.serialize();
+  }
+}
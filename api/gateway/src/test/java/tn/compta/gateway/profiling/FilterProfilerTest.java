@@ -0,0 +1,64 @@
+package tn.compta.gateway.profiling;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+class FilterProfilerTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Test
+  void routeFilter_whenSampled_excludesDownstreamFromSelfTime() {
+    GatewayFilter filter = ProfiledGatewayFilter.wrap(
+        (exchange, chain) -> chain.filter(exchange), "Slow", profiler(1.0));
+
+    filter.filter(exchange(), exchange -> Mono.delay(Duration.ofMillis(100)).then()).block();
+
+    Timer self = registry.get("gateway.filter.self").tag("filter", "Slow").tag("route", "none").timer();
+    assertEquals(1, self.count());
+    assertTrue(self.totalTime(TimeUnit.MILLISECONDS) < 100);
+  }
+
+  @Test
+  void routeFilter_whenNotSampled_recordsNothing() {
+    GatewayFilter filter = ProfiledGatewayFilter.wrap(
+        (exchange, chain) -> chain.filter(exchange), "Skipped", profiler(0.0));
+
+    filter.filter(exchange(), exchange -> Mono.empty()).block();
+
+    assertNull(registry.find("gateway.filter.self").tag("filter", "Skipped").timer());
+  }
+
+  @Test
+  void wrap_keepsOrderOfOrderedFilters() {
+    GatewayFilter ordered = new OrderedGatewayFilter((exchange, chain) -> chain.filter(exchange), 42);
+
+    GatewayFilter wrapped = ProfiledGatewayFilter.wrap(ordered, "Ordered", profiler(1.0));
+
+    assertInstanceOf(OrderedGatewayFilter.class, wrapped);
+    assertEquals(42, ((OrderedGatewayFilter) wrapped).getOrder());
+    assertSame(wrapped, ProfiledGatewayFilter.wrap(wrapped, "Ordered", profiler(1.0)));
+  }
+
+  private FilterProfiler profiler(double sampleRate) {
+    StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("registry", registry));
+    return new FilterProfiler(beanFactory.getBeanProvider(MeterRegistry.class), sampleRate);
+  }
+
+  private MockServerWebExchange exchange() {
+    return MockServerWebExchange.from(MockServerHttpRequest.get("/invoices/1"));
+  }
+}
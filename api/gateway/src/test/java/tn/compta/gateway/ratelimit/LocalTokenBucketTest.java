@@ -0,0 +1,89 @@
+package tn.compta.gateway.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LocalTokenBucketTest {
+
+  private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+  @Test
+  void tryConsume_admitsUpToBurstThenDenies() {
+    LocalTokenBucket bucket = new LocalTokenBucket(10, 5, now::get);
+
+    assertEquals(4, bucket.tryConsume(1));
+    assertEquals(0, bucket.tryConsume(4));
+    assertEquals(-1, bucket.tryConsume(1));
+    assertEquals(5, bucket.drainUnsynced());
+  }
+
+  @Test
+  void tryConsume_refillsAtReplenishRate() {
+    LocalTokenBucket bucket = new LocalTokenBucket(10, 5, now::get);
+    bucket.tryConsume(5);
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    assertEquals(1, bucket.available());
+    assertEquals(0, bucket.tryConsume(1));
+    assertEquals(-1, bucket.tryConsume(1));
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertEquals(5, bucket.available());
+  }
+
+  @Test
+  void tryConsume_whenCostAboveBurst_denies() {
+    LocalTokenBucket bucket = new LocalTokenBucket(10, 5, now::get);
+
+    assertEquals(-1, bucket.tryConsume(6));
+    assertEquals(5, bucket.available());
+  }
+
+  @Test
+  void forceConsume_neverGoesBelowEmpty() {
+    LocalTokenBucket bucket = new LocalTokenBucket(10, 5, now::get);
+    bucket.forceConsume(50);
+
+    assertEquals(0, bucket.available());
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    assertEquals(1, bucket.available());
+  }
+
+  @Test
+  void applyGlobalTotal_removesOnlyRemoteConsumption() {
+    LocalTokenBucket bucket = new LocalTokenBucket(10, 10, now::get);
+    bucket.tryConsume(2);
+
+    bucket.applyGlobalTotal(1, bucket.drainUnsynced(), 5);
+    assertEquals(5, bucket.available());
+
+    // Same total again: nothing new consumed elsewhere
+    bucket.applyGlobalTotal(1, 0, 5);
+    assertEquals(5, bucket.available());
+  }
+
+  @Test
+  void applyGlobalTotal_whenWindowRollsOver_startsFromZero() {
+    LocalTokenBucket bucket = new LocalTokenBucket(10, 10, now::get);
+    bucket.tryConsume(2);
+    bucket.applyGlobalTotal(1, bucket.drainUnsynced(), 5);
+
+    // The new window's total is below the previous one, yet all of it is remote
+    bucket.applyGlobalTotal(2, 0, 4);
+    assertEquals(1, bucket.available());
+  }
+
+  @Test
+  void isIdleSince_whenTokensUnsynced_isNotIdle() {
+    LocalTokenBucket bucket = new LocalTokenBucket(10, 5, now::get);
+    bucket.tryConsume(1);
+    long later = now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+    assertFalse(bucket.isIdleSince(later));
+    bucket.drainUnsynced();
+    assertTrue(bucket.isIdleSince(later));
+  }
+}
@@ -0,0 +1,42 @@
+package tn.compta.gateway.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+
+class RequestCostRuleTest {
+
+  @Test
+  void parse_readsMethodPatternAndCost() {
+    RequestCostRule rule = RequestCostRule.parse("GET /invoices/*/export=10");
+
+    assertEquals(HttpMethod.GET, rule.method());
+    assertEquals("/invoices/*/export", rule.pattern().getPatternString());
+    assertEquals(10, rule.cost());
+  }
+
+  @Test
+  void matches_whenMethodAndPathMatch_returnsTrue() {
+    RequestCostRule rule = RequestCostRule.parse("GET /invoices/*/export=10");
+
+    assertTrue(rule.matches(HttpMethod.GET, PathContainer.parsePath("/invoices/42/export")));
+    assertFalse(rule.matches(HttpMethod.POST, PathContainer.parsePath("/invoices/42/export")));
+    assertFalse(rule.matches(HttpMethod.GET, PathContainer.parsePath("/invoices/42")));
+  }
+
+  @Test
+  void matches_whenMethodIsWildcard_matchesAnyMethod() {
+    RequestCostRule rule = RequestCostRule.parse("* /employees/**=2");
+
+    assertTrue(rule.matches(HttpMethod.DELETE, PathContainer.parsePath("/employees/7")));
+    assertTrue(rule.matches(HttpMethod.GET, PathContainer.parsePath("/employees")));
+  }
+
+  @Test
+  void parse_whenDefinitionMalformed_throws() {
+    assertThrows(IllegalArgumentException.class, () -> RequestCostRule.parse("/invoices/**"));
+    assertThrows(IllegalArgumentException.class, () -> RequestCostRule.parse("GET /invoices/**=0"));
+  }
+}
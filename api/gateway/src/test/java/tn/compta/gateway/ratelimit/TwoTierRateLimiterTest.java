@@ -0,0 +1,151 @@
+package tn.compta.gateway.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter.Response;
+import reactor.core.publisher.Mono;
+import tn.compta.gateway.ratelimit.TwoTierRateLimiter.FailMode;
+
+class TwoTierRateLimiterTest {
+
+  private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+  private final FakeRedis redis = new FakeRedis();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void check_whenCostAboveBurst_chargesFullBucket() {
+    TwoTierRateLimiter limiter = limiter(FailMode.OPEN);
+
+    Response response = limiter.check("route", "alice", 50);
+
+    assertTrue(response.isAllowed());
+    assertEquals("5", response.getHeaders().get(TwoTierRateLimiter.REQUESTED_TOKENS_HEADER));
+    assertEquals("0", response.getHeaders().get(TwoTierRateLimiter.REMAINING_HEADER));
+    assertFalse(limiter.check("route", "alice", 1).isAllowed());
+  }
+
+  @Test
+  void syncAll_sendsOnlyNonZeroDeltasInOneCall() {
+    TwoTierRateLimiter limiter = limiter(FailMode.OPEN);
+    limiter.check("route", "alice", 2);
+    limiter.check("route", "bob", 1);
+
+    limiter.syncAll().block();
+    assertEquals(1, redis.calls);
+    assertEquals(List.of(1L, 2L), sorted(redis.lastDeltas));
+
+    // Nothing consumed since: no round trip at all
+    limiter.syncAll().block();
+    assertEquals(1, redis.calls);
+
+    // Alice's delta is pushed, Bob's bucket rides along read-only
+    limiter.check("route", "alice", 1);
+    limiter.syncAll().block();
+    assertEquals(2, redis.calls);
+    assertEquals(List.of(0L, 1L), sorted(redis.lastDeltas));
+  }
+
+  @Test
+  void syncAll_removesTokensConsumedByOtherReplicas() {
+    TwoTierRateLimiter limiter = limiter(FailMode.OPEN);
+    limiter.check("route", "alice", 1);
+    redis.otherReplicas = 3;
+
+    limiter.syncAll().block();
+
+    assertEquals("0", limiter.check("route", "alice", 1).getHeaders().get(TwoTierRateLimiter.REMAINING_HEADER));
+  }
+
+  @Test
+  void syncAll_whenRedisFails_restoresUnsyncedTokens() {
+    TwoTierRateLimiter limiter = limiter(FailMode.OPEN);
+    limiter.check("route", "alice", 3);
+    redis.failing = true;
+
+    limiter.syncAll().block();
+    assertEquals(1, meterRegistry.get("gateway.ratelimit.sync.errors").counter().count());
+
+    redis.failing = false;
+    limiter.syncAll().block();
+    assertEquals(List.of(3L), redis.lastDeltas);
+  }
+
+  @Test
+  void failModeOpen_keepsAnsweringLocallyWhileRedisIsDown() {
+    TwoTierRateLimiter limiter = limiter(FailMode.OPEN);
+    limiter.check("route", "alice", 1);
+    redis.failing = true;
+    limiter.syncAll().block();
+
+    assertFalse(limiter.isRedisAvailable());
+    assertTrue(limiter.check("route", "alice", 1).isAllowed());
+  }
+
+  @Test
+  void failModeClosed_deniesUntilRedisAnswersAgain() {
+    TwoTierRateLimiter limiter = limiter(FailMode.CLOSED);
+    limiter.check("route", "alice", 1);
+    limiter.syncAll().block();
+    redis.failing = true;
+    limiter.check("route", "alice", 1);
+    limiter.syncAll().block();
+
+    assertFalse(limiter.check("route", "alice", 1).isAllowed());
+
+    // Another failed round trip keeps the limiter closed
+    limiter.syncAll().block();
+    assertFalse(limiter.isRedisAvailable());
+
+    redis.failing = false;
+    limiter.syncAll().block();
+    assertTrue(limiter.isRedisAvailable());
+    assertEquals(List.of(1L), redis.lastDeltas);
+    assertTrue(limiter.check("route", "alice", 1).isAllowed());
+  }
+
+  private TwoTierRateLimiter limiter(FailMode failMode) {
+    return new TwoTierRateLimiter(redis, now::get, null, meterRegistry, 10, 5, 100, 60_000, failMode);
+  }
+
+  private static List<Long> sorted(List<Long> values) {
+    return values.stream().sorted().toList();
+  }
+
+  /**
+   * Window counters kept in memory, as the sync script would in Redis.
+   */
+  private static final class FakeRedis implements TwoTierRateLimiter.WindowCounters {
+
+    private final Map<String, Long> counters = new HashMap<>();
+    private int calls;
+    private List<Long> lastDeltas = List.of();
+    private boolean failing;
+    private long otherReplicas;
+
+    @Override
+    public Mono<List<Long>> addAndGet(List<String> keys, List<Long> deltas) {
+      return Mono.fromCallable(() -> {
+        calls++;
+        if (failing) {
+          throw new IllegalStateException("Connection refused");
+        }
+        lastDeltas = List.copyOf(deltas);
+        List<Long> totals = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+          long delta = deltas.get(i) + otherReplicas;
+          totals.add(counters.merge(keys.get(i), delta, Long::sum));
+        }
+        otherReplicas = 0;
+        return totals;
+      });
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package tn.compta.gateway.retry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class RetryBudgetTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  void tryRetry_withoutTraffic_allowsOnlyReserve() {
+    RetryBudget budget = new RetryBudget(0.2, 2, 10_000, clock::get);
+
+    assertTrue(budget.tryRetry());
+    assertTrue(budget.tryRetry());
+    assertFalse(budget.tryRetry());
+  }
+
+  @Test
+  void tryRetry_isCappedAtRatioOfSuccesses() {
+    RetryBudget budget = new RetryBudget(0.25, 0, 10_000, clock::get);
+    for (int i = 0; i < 100; i++) {
+      budget.onSuccess();
+    }
+
+    int allowed = 0;
+    while (budget.tryRetry()) {
+      allowed++;
+    }
+    assertEquals(25, allowed);
+  }
+
+  @Test
+  void onSuccess_depositsDecayOverWindow() {
+    RetryBudget budget = new RetryBudget(0.2, 0, 10_000, clock::get);
+    for (int i = 0; i < 100; i++) {
+      budget.onSuccess();
+    }
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+    assertFalse(budget.tryRetry());
+  }
+
+  @Test
+  void reserve_refillsOverTime() {
+    RetryBudget budget = new RetryBudget(0.2, 1, 10_000, clock::get);
+    assertTrue(budget.tryRetry());
+    assertFalse(budget.tryRetry());
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    assertTrue(budget.tryRetry());
+  }
+}
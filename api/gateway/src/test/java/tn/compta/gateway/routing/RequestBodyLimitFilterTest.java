@@ -0,0 +1,90 @@
+package tn.compta.gateway.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class RequestBodyLimitFilterTest {
+
+  private final RequestBodyLimitFilter filter = new RequestBodyLimitFilter();
+  private final AtomicLong forwarded = new AtomicLong();
+  private final GatewayFilterChain chain = exchange -> exchange.getRequest().getBody()
+      .doOnNext(buffer -> forwarded.addAndGet(buffer.readableByteCount()))
+      .then();
+
+  @Test
+  void filter_whenContentLengthAboveLimit_rejectsBeforeForwarding() {
+    MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/documents")
+        .contentLength(2_000)
+        .body("x".repeat(2_000)));
+
+    StepVerifier.create(filter.filter(exchange, chain))
+        .expectErrorSatisfies(e -> assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ((ResponseStatusException) e).getStatusCode()))
+        .verify();
+    assertEquals(0, forwarded.get());
+  }
+
+  @Test
+  void filter_whenChunkedBodyCrossesLimit_abortsUpload() {
+    MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/documents")
+        .body(Flux.range(0, 10).map(i -> chunk(300))));
+
+    StepVerifier.create(filter.filter(exchange, chain))
+        .expectErrorSatisfies(e -> assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ((ResponseStatusException) e).getStatusCode()))
+        .verify();
+    assertEquals(900, forwarded.get());
+  }
+
+  @Test
+  void filter_whenChunkedBodyWithinLimit_streamsIt() {
+    MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/documents")
+        .body(Flux.range(0, 3).map(i -> chunk(300))));
+
+    StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+    assertEquals(900, forwarded.get());
+  }
+
+  @Test
+  void filter_withoutLimit_passesThrough() {
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/documents")
+        .body("x".repeat(5_000)));
+    exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route(null));
+
+    StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+    assertEquals(5_000, forwarded.get());
+  }
+
+  private static MockServerWebExchange exchange(MockServerHttpRequest request) {
+    MockServerWebExchange exchange = MockServerWebExchange.from(request);
+    exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route(1_000L));
+    return exchange;
+  }
+
+  private static DataBuffer chunk(int size) {
+    return DefaultDataBufferFactory.sharedInstance.wrap("x".repeat(size).getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static Route route(Long maxRequestBytes) {
+    Route.AsyncBuilder builder = Route.async()
+        .id("document-service")
+        .uri("lb://document-service")
+        .predicate(exchange -> true);
+    if (maxRequestBytes != null) {
+      builder.metadata(StreamingRoutes.MAX_REQUEST_BYTES_ATTR, maxRequestBytes);
+    }
+    return builder.build();
+  }
+}
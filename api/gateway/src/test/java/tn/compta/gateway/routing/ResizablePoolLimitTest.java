@@ -0,0 +1,95 @@
+package tn.compta.gateway.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import reactor.netty.resources.ConnectionProvider;
+
+class ResizablePoolLimitTest {
+
+  @Test
+  void getPermits_neverExceedsLimit() {
+    ResizablePoolLimit limit = ResizablePoolLimit.fixed(3);
+    ConnectionProvider.AllocationStrategy<?> strategy = limit.allocationStrategy();
+
+    assertEquals(2, strategy.getPermits(2));
+    assertEquals(1, strategy.getPermits(2));
+    assertEquals(0, strategy.getPermits(1));
+    assertEquals(3, strategy.permitGranted());
+    assertEquals(1, limit.limitReached());
+
+    strategy.returnPermits(1);
+    assertEquals(1, strategy.estimatePermitCount());
+  }
+
+  @Test
+  void copies_shareTheLimitButNotThePermits() {
+    ResizablePoolLimit limit = ResizablePoolLimit.fixed(2);
+    ConnectionProvider.AllocationStrategy<?> instanceA = limit.allocationStrategy().copy();
+    ConnectionProvider.AllocationStrategy<?> instanceB = limit.allocationStrategy().copy();
+
+    assertEquals(2, instanceA.getPermits(5));
+    assertEquals(2, instanceB.getPermits(5));
+  }
+
+  @Test
+  void adjust_whenAcquiresWaitAtTheLimit_grows() {
+    ResizablePoolLimit limit = new ResizablePoolLimit(20, 10, 100);
+    ConnectionProvider.AllocationStrategy<?> strategy = limit.allocationStrategy();
+    strategy.getPermits(20);
+    strategy.getPermits(1);
+
+    assertEquals(25, limit.adjust(40, 20, 5, 6));
+    assertEquals(25, strategy.permitMaximum());
+    assertEquals(5, strategy.getPermits(10));
+  }
+
+  @Test
+  void adjust_whenLimitReachedWithoutWaiting_keepsLimit() {
+    ResizablePoolLimit limit = new ResizablePoolLimit(20, 10, 100);
+    ConnectionProvider.AllocationStrategy<?> strategy = limit.allocationStrategy();
+    strategy.getPermits(20);
+    assertEquals(0, strategy.getPermits(1));
+
+    assertEquals(20, limit.adjust(1, 20, 5, 6));
+  }
+
+  @Test
+  void adjust_whenFullPoolIsIdle_stillShrinks() {
+    ResizablePoolLimit limit = new ResizablePoolLimit(50, 10, 100);
+    ConnectionProvider.AllocationStrategy<?> strategy = limit.allocationStrategy();
+    // Every permit granted to idle connections, the pool keeps polling the estimate
+    strategy.getPermits(50);
+
+    for (int i = 0; i < 5; i++) {
+      for (int poll = 0; poll < 100; poll++) {
+        assertEquals(0, strategy.estimatePermitCount());
+      }
+      assertEquals(50, limit.adjust(0, 0, 5, 6));
+    }
+    assertEquals(0, limit.limitReached());
+    assertEquals(45, limit.adjust(0, 0, 5, 6));
+  }
+
+  @Test
+  void adjust_shrinksOnlyAfterQuietIntervals() {
+    ResizablePoolLimit limit = new ResizablePoolLimit(50, 10, 100);
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(50, limit.adjust(0, 5, 5, 6));
+    }
+    assertEquals(45, limit.adjust(0, 5, 5, 6));
+  }
+
+  @Test
+  void adjust_staysWithinBounds() {
+    ResizablePoolLimit limit = new ResizablePoolLimit(95, 10, 100);
+    ConnectionProvider.AllocationStrategy<?> strategy = limit.allocationStrategy();
+    strategy.getPermits(95);
+    strategy.getPermits(1);
+    assertEquals(100, limit.adjust(40, 95, 5, 6));
+
+    ResizablePoolLimit small = new ResizablePoolLimit(10, 10, 100);
+    assertEquals(10, small.adjust(0, 0, 5, 1));
+  }
+}
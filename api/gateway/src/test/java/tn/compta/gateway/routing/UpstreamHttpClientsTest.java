@@ -0,0 +1,85 @@
+package tn.compta.gateway.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.route.Route;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+
+class UpstreamHttpClientsTest {
+
+  private final HttpClient gatewayClient = HttpClient.create();
+  private final RouteConnectionPools routePools = new RouteConnectionPools(new SimpleMeterRegistry(),
+      100, 5_000, 1_000, 30_000, 30_000, false, 10, 500, 5_000, 5, 6);
+  private final UpstreamHttpClients clients =
+      new UpstreamHttpClients(gatewayClient, new HttpClientProperties(), routePools, 2, 10, 1_000, 1_000);
+
+  @AfterEach
+  void tearDown() {
+    clients.destroy();
+    routePools.stop();
+  }
+
+  @Test
+  void forRoute_withoutProtocol_usesTheRoutePool() {
+    HttpClient client = forRoute("http://localhost:8082", null);
+
+    assertNotSame(gatewayClient, client);
+    assertSame(client, forRoute("http://localhost:8082", null));
+    assertEquals("authz-service", client.configuration().connectionProvider().name());
+  }
+
+  @Test
+  void forRoute_whenH2c_returnsSharedH2cClientWithFallback() {
+    HttpClient client = forRoute("http://localhost:8082", "h2c");
+
+    assertNotSame(gatewayClient, client);
+    assertSame(client, forRoute("http://localhost:8082", "h2c"));
+    assertEquals(List.of(HttpProtocol.H2C, HttpProtocol.HTTP11), List.of(client.configuration().protocols()));
+  }
+
+  @Test
+  void forRoute_whenPriorKnowledge_usesH2cOnly() {
+    HttpClient client = forRoute("http://localhost:8084", "h2c-prior-knowledge");
+
+    assertEquals(List.of(HttpProtocol.H2C), List.of(client.configuration().protocols()));
+  }
+
+  @Test
+  void forRoute_whenHttpsUri_ignoresH2c() {
+    assertSame(gatewayClient, forRoute("https://authz.compta.tn", "h2c"));
+  }
+
+  @Test
+  void forRoute_whenLoadBalancedToHttpsInstance_ignoresH2c() {
+    Route route = route("lb://authz-service", "h2c");
+
+    assertSame(gatewayClient, clients.forRoute(route, URI.create("https://10.0.0.12:8443/authz")));
+  }
+
+  @Test
+  void forRoute_whenUnknownProtocol_throws() {
+    assertThrows(IllegalArgumentException.class, () -> forRoute("http://localhost:8082", "h3"));
+  }
+
+  private HttpClient forRoute(String uri, String protocol) {
+    return clients.forRoute(route(uri, protocol), URI.create(uri));
+  }
+
+  private static Route route(String uri, String protocol) {
+    Route.AsyncBuilder builder = Route.async()
+        .id("authz-service")
+        .uri(uri)
+        .predicate(exchange -> true);
+    if (protocol != null) {
+      builder.metadata(UpstreamHttpClients.UPSTREAM_PROTOCOL_ATTR, protocol);
+    }
+    return builder.build();
+  }
+}
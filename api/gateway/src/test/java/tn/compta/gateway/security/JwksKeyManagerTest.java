@@ -0,0 +1,143 @@
+package tn.compta.gateway.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class JwksKeyManagerTest {
+
+  private final AtomicInteger fetches = new AtomicInteger();
+  private final Sinks.Empty<Void> jwksServer = Sinks.empty();
+  private final VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(new SimpleMeterRegistry(), 100, 900000);
+  private volatile String jwks;
+
+  @Test
+  void getKey_whenManyLookupsOfUnknownKid_fetchesOnce() throws JOSEException {
+    RSAKey rotated = rsaKey("kid-2");
+    jwks = jwks(rsaKey("kid-1"), rotated);
+    JwksKeyManager manager = manager(60_000);
+
+    List<RSAKey> resolved = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      manager.getKey("kid-2").subscribe(resolved::add);
+    }
+    assertEquals(1, fetches.get());
+    assertTrue(resolved.isEmpty());
+
+    jwksServer.tryEmitEmpty();
+
+    assertEquals(20, resolved.size());
+    assertEquals(rotated.getModulus(), resolved.get(0).getModulus());
+    assertEquals(1, fetches.get());
+  }
+
+  @Test
+  void getKey_whenUnknownKidRightAfterRefresh_doesNotFetchAgain() throws JOSEException {
+    jwks = jwks(rsaKey("kid-1"));
+    jwksServer.tryEmitEmpty();
+    JwksKeyManager manager = manager(60_000);
+    manager.refresh().block();
+
+    assertNull(manager.getKey("forged-kid").block());
+    assertNull(manager.getKey("forged-kid").block());
+    assertNotNull(manager.getKey("kid-1").block());
+    assertEquals(1, fetches.get());
+  }
+
+  @Test
+  void getKey_whenMinRefreshIntervalElapsed_fetchesAgain() throws JOSEException {
+    jwks = jwks(rsaKey("kid-1"));
+    jwksServer.tryEmitEmpty();
+    JwksKeyManager manager = manager(0);
+    manager.refresh().block();
+
+    jwks = jwks(rsaKey("kid-1"), rsaKey("kid-2"));
+
+    assertNotNull(manager.getKey("kid-2").block());
+    assertEquals(2, fetches.get());
+  }
+
+  @Test
+  void refresh_dropsCachedTokensOfRotatedKeys() throws JOSEException {
+    jwks = jwks(rsaKey("kid-1"), rsaKey("kid-2"));
+    jwksServer.tryEmitEmpty();
+    JwksKeyManager manager = manager(0);
+    manager.refresh().block();
+
+    String oldToken = verifiedTokenCache.digest("token-signed-with-kid-1");
+    String newToken = verifiedTokenCache.digest("token-signed-with-kid-2");
+    verifiedTokenCache.put(oldToken, "kid-1", claimsExpiringIn(60_000));
+    verifiedTokenCache.put(newToken, "kid-2", claimsExpiringIn(60_000));
+
+    jwks = jwks(rsaKey("kid-2"));
+    manager.refresh().block();
+
+    assertEquals(Set.of("kid-2"), manager.getKeyIds());
+    assertNull(verifiedTokenCache.get(oldToken));
+    assertNotNull(verifiedTokenCache.get(newToken));
+  }
+
+  @Test
+  void refresh_whenServerFails_keepsPreviousKeys() throws JOSEException {
+    jwks = jwks(rsaKey("kid-1"));
+    jwksServer.tryEmitEmpty();
+    JwksKeyManager manager = manager(0);
+    manager.refresh().block();
+
+    jwks = "not a JWKS document";
+
+    assertThrows(IllegalStateException.class, () -> manager.refresh().block());
+    assertEquals(Set.of("kid-1"), manager.getKeyIds());
+  }
+
+  /**
+   * A manager whose JWKS endpoint answers the current {@link #jwks} once {@link #jwksServer}
+   * has completed.
+   */
+  private JwksKeyManager manager(long minRefreshIntervalMs) {
+    WebClient.Builder webClient = WebClient.builder()
+        .exchangeFunction(request -> Mono.defer(() -> {
+          fetches.incrementAndGet();
+          return jwksServer.asMono().then(Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.OK)
+              .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+              .body(jwks)
+              .build()));
+        }));
+    return new JwksKeyManager(webClient, verifiedTokenCache, "http://oauth2/.well-known/jwks.json",
+        300_000, minRefreshIntervalMs, 5_000);
+  }
+
+  private static RSAKey rsaKey(String kid) throws JOSEException {
+    return new RSAKeyGenerator(2048).keyID(kid).generate();
+  }
+
+  private static String jwks(RSAKey... keys) {
+    return new JWKSet(List.<JWK>of(keys)).toString();
+  }
+
+  private static JWTClaimsSet claimsExpiringIn(long millis) {
+    return new JWTClaimsSet.Builder()
+        .subject("alice")
+        .expirationTime(new Date(System.currentTimeMillis() + millis))
+        .build();
+  }
+}
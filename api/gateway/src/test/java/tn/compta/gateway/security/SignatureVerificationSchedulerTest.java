@@ -0,0 +1,88 @@
+package tn.compta.gateway.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import tn.compta.gateway.exception.GatewayOverloadedException;
+
+class SignatureVerificationSchedulerTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final SignatureVerificationScheduler scheduler = new SignatureVerificationScheduler(meterRegistry, 1, 2, 3);
+  private final CountDownLatch workerBusy = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    scheduler.shutdown();
+  }
+
+  @Test
+  void execute_whenPendingQueueFull_rejectsAndRecovers() throws Exception {
+    CompletableFuture<String> running = scheduler.execute(this::blockWorker).toFuture();
+    assertTrue(workerBusy.await(5, TimeUnit.SECONDS));
+    CompletableFuture<String> queuedA = scheduler.execute(() -> "a").toFuture();
+    CompletableFuture<String> queuedB = scheduler.execute(() -> "b").toFuture();
+    assertEquals(2, scheduler.getPending());
+
+    StepVerifier.create(scheduler.execute(() -> "c"))
+        .expectErrorSatisfies(e -> {
+          assertInstanceOf(GatewayOverloadedException.class, e);
+          assertEquals(3, ((GatewayOverloadedException) e).getRetryAfterSeconds());
+        })
+        .verify();
+    assertEquals(1, meterRegistry.get("gateway.jwt.verification.rejected").counter().count());
+    assertEquals(2, scheduler.getPending());
+
+    release.countDown();
+    assertEquals("done", running.get(5, TimeUnit.SECONDS));
+    assertEquals("a", queuedA.get(5, TimeUnit.SECONDS));
+    assertEquals("b", queuedB.get(5, TimeUnit.SECONDS));
+    assertEquals(0, scheduler.getPending());
+
+    StepVerifier.create(scheduler.execute(() -> "d")).expectNext("d").verifyComplete();
+    assertEquals(1, meterRegistry.get("gateway.jwt.verification.rejected").counter().count());
+  }
+
+  @Test
+  void execute_whenCancelledWhileQueued_freesItsSlot() throws Exception {
+    scheduler.execute(this::blockWorker).subscribe();
+    assertTrue(workerBusy.await(5, TimeUnit.SECONDS));
+
+    scheduler.execute(() -> "a").subscribe().dispose();
+
+    assertEquals(0, scheduler.getPending());
+  }
+
+  @Test
+  void execute_whenCancelledWhileStarting_releasesPendingOnce() {
+    SignatureVerificationScheduler busy = new SignatureVerificationScheduler(meterRegistry, 2, 10_000, 1);
+    try {
+      for (int i = 0; i < 5_000; i++) {
+        // Cancel races with the worker picking the task up
+        busy.execute(() -> "a").subscribe().dispose();
+      }
+      // Runs after everything queued before it on both workers
+      busy.execute(() -> "last").block(Duration.ofSeconds(5));
+      busy.execute(() -> "last").block(Duration.ofSeconds(5));
+
+      assertEquals(0, busy.getPending());
+    } finally {
+      busy.shutdown();
+    }
+  }
+
+  private String blockWorker() throws InterruptedException {
+    workerBusy.countDown();
+    release.await(5, TimeUnit.SECONDS);
+    return "done";
+  }
+}
@@ -0,0 +1,91 @@
+package tn.compta.gateway.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class TokenRevocationListTest {
+
+  private static final long RETENTION_MS = Duration.ofHours(24).toMillis();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final TokenRevocationList list =
+      new TokenRevocationList(null, meterRegistry, true, "auth:revoked-tokens", 1000, RETENTION_MS, 5000, 1000, 0.01);
+
+  @Test
+  void isRevoked_whenNothingRevoked_returnsFalse() {
+    assertFalse(list.isRevoked("alice", "token-1", Instant.now()));
+    assertEquals(0, meterRegistry.get("gateway.revocation.checks").tag("result", "passed").counter().count());
+  }
+
+  @Test
+  void isRevoked_whenTokenIdRevoked_rejectsOnlyThatToken() {
+    list.apply("jti:token-1", System.currentTimeMillis());
+
+    assertTrue(list.isRevoked("alice", "token-1", Instant.now()));
+    assertFalse(list.isRevoked("alice", "token-2", Instant.now()));
+  }
+
+  @Test
+  void isRevoked_whenSubjectRevoked_rejectsTokensIssuedBefore() {
+    long revokedAt = System.currentTimeMillis();
+    list.apply("sub:alice", revokedAt);
+
+    assertTrue(list.isRevoked("alice", "token-1", Instant.ofEpochMilli(revokedAt).minusSeconds(60)));
+    assertFalse(list.isRevoked("alice", "token-2", Instant.ofEpochMilli(revokedAt).plusSeconds(1)));
+    assertFalse(list.isRevoked("bob", "token-3", Instant.ofEpochMilli(revokedAt).minusSeconds(60)));
+  }
+
+  @Test
+  void isRevoked_namespacesDoNotOverlap() {
+    list.apply("sub:alice", System.currentTimeMillis());
+
+    assertFalse(list.isRevoked(null, "alice", Instant.EPOCH));
+  }
+
+  @Test
+  void prune_dropsEntriesPastRetention() {
+    long now = System.currentTimeMillis();
+    list.apply("jti:old", now - RETENTION_MS - 1);
+    list.apply("jti:recent", now);
+
+    list.prune(now);
+
+    assertFalse(list.isRevoked(null, "old", null));
+    assertTrue(list.isRevoked(null, "recent", null));
+  }
+
+  @Test
+  void prune_whenAboveCapacity_keepsEveryEntry() {
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 5000; i++) {
+      list.apply("jti:token-" + i, now);
+    }
+
+    list.prune(now);
+
+    for (int i = 0; i < 5000; i++) {
+      assertTrue(list.isRevoked(null, "token-" + i, null));
+    }
+  }
+
+  @Test
+  void bloomFilter_hasNoFalseNegativesAndFewFalsePositives() {
+    RevocationBloomFilter filter = RevocationBloomFilter.create(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) {
+      filter.put("revoked-" + i, 1);
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      assertTrue(i >= 10_000 || filter.mightContain("revoked-" + i, 1));
+      if (filter.mightContain("valid-" + i, 1)) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+  }
+}
@@ -0,0 +1,77 @@
+package tn.compta.gateway.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VerifiedTokenCacheTest {
+
+  private VerifiedTokenCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new VerifiedTokenCache(new SimpleMeterRegistry(), 100, 900000);
+  }
+
+  @Test
+  void digest_isStableAndDoesNotContainToken() {
+    String token = "header.payload.signature";
+
+    assertEquals(cache.digest(token), cache.digest(token));
+    assertNotEquals(cache.digest(token), cache.digest(token + "x"));
+    assertFalse(cache.digest(token).contains("payload"));
+  }
+
+  @Test
+  void get_whenTokenVerified_returnsEntry() {
+    String digest = cache.digest("token");
+    cache.put(digest, "kid-1", claimsExpiringIn(60_000));
+
+    assertNotNull(cache.get(digest));
+    assertEquals("kid-1", cache.get(digest).keyId());
+  }
+
+  @Test
+  void get_whenTokenExpired_returnsNull() {
+    String digest = cache.digest("token");
+    cache.put(digest, "kid-1", claimsExpiringIn(-1_000));
+
+    assertNull(cache.get(digest));
+  }
+
+  @Test
+  void retainKeys_whenKeyRotatedOut_evictsEntriesSignedWithIt() {
+    String oldKeyToken = cache.digest("old");
+    String newKeyToken = cache.digest("new");
+    cache.put(oldKeyToken, "kid-old", claimsExpiringIn(60_000));
+    cache.put(newKeyToken, "kid-new", claimsExpiringIn(60_000));
+
+    cache.retainKeys(List.of("kid-new"));
+
+    assertNull(cache.get(oldKeyToken));
+    assertNotNull(cache.get(newKeyToken));
+  }
+
+  @Test
+  void stats_recordsHitsAndMisses() {
+    String digest = cache.digest("token");
+    cache.get(digest);
+    cache.put(digest, "kid-1", claimsExpiringIn(60_000));
+    cache.get(digest);
+
+    assertEquals(1, cache.stats().hitCount());
+    assertEquals(1, cache.stats().missCount());
+  }
+
+  private JWTClaimsSet claimsExpiringIn(long millis) {
+    return new JWTClaimsSet.Builder()
+        .subject("1")
+        .expirationTime(new Date(System.currentTimeMillis() + millis))
+        .build();
+  }
+}
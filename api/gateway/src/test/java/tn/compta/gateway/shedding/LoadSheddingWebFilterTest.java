@@ -0,0 +1,135 @@
+package tn.compta.gateway.shedding;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import tn.compta.gateway.exception.GatewayOverloadedException;
+
+class LoadSheddingWebFilterTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final Sinks.Empty<Void> upstream = Sinks.empty();
+  private final WebFilterChain pendingChain = exchange -> upstream.asMono();
+
+  @Test
+  void filter_whenOverloaded_shedsLowPriorityWithRetryAfter() {
+    LoadSheddingWebFilter filter = filter(2);
+    Disposable first = filter.filter(get("/api/invoices"), pendingChain).subscribe();
+    Disposable second = filter.filter(get("/api/invoices"), pendingChain).subscribe();
+
+    StepVerifier.create(filter.filter(get("/api/reports/monthly"), pendingChain))
+        .expectErrorSatisfies(e -> {
+          assertInstanceOf(GatewayOverloadedException.class, e);
+          assertEquals(3, ((GatewayOverloadedException) e).getRetryAfterSeconds());
+        })
+        .verify();
+    assertEquals(1, meterRegistry.get("gateway.shedding.requests").tag("priority", "LOW").counter().count());
+    assertEquals(2, inflight());
+
+    first.dispose();
+    second.dispose();
+  }
+
+  @Test
+  void filter_whenShed_setsCorsHeadersForBrowsers() {
+    LoadSheddingWebFilter filter = filter(2);
+    filter.filter(get("/api/invoices"), pendingChain).subscribe();
+    filter.filter(get("/api/invoices"), pendingChain).subscribe();
+    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/reports/monthly")
+        .header(HttpHeaders.ORIGIN, "http://localhost:3000"));
+
+    StepVerifier.create(filter.filter(exchange, pendingChain))
+        .expectError(GatewayOverloadedException.class)
+        .verify();
+    assertEquals("http://localhost:3000", exchange.getResponse().getHeaders().getAccessControlAllowOrigin());
+  }
+
+  @Test
+  void filter_whenOverloaded_answersPreflightInsteadOfShedding() {
+    LoadSheddingWebFilter filter = filter(2);
+    // Pressure 1.5: preflights (NORMAL priority) are over their level too
+    for (int i = 0; i < 3; i++) {
+      filter.filter(get("/api/invoices"), pendingChain).subscribe();
+    }
+    MockServerWebExchange preflight = MockServerWebExchange.from(MockServerHttpRequest.options("/api/reports/monthly")
+        .header(HttpHeaders.ORIGIN, "http://localhost:3000")
+        .header(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpMethod.GET.name()));
+
+    StepVerifier.create(filter.filter(preflight, pendingChain)).verifyComplete();
+    assertEquals("http://localhost:3000", preflight.getResponse().getHeaders().getAccessControlAllowOrigin());
+  }
+
+  @Test
+  void filter_whenOverloaded_stillAdmitsHigherPriorities() {
+    LoadSheddingWebFilter filter = filter(2);
+    filter.filter(get("/api/invoices"), pendingChain).subscribe();
+    filter.filter(get("/api/invoices"), pendingChain).subscribe();
+
+    filter.filter(get("/api/invoices"), pendingChain).subscribe();
+
+    assertEquals(3, inflight());
+    assertEquals(0, meterRegistry.get("gateway.shedding.requests").tag("priority", "NORMAL").counter().count());
+  }
+
+  @Test
+  void filter_tracksInflightUntilTheChainCompletes() {
+    LoadSheddingWebFilter filter = filter(2);
+    filter.filter(get("/api/invoices"), pendingChain).subscribe();
+    Disposable cancelled = filter.filter(get("/api/invoices"), pendingChain).subscribe();
+    assertEquals(2, inflight());
+
+    cancelled.dispose();
+    assertEquals(1, inflight());
+
+    upstream.tryEmitEmpty();
+    assertEquals(0, inflight());
+    StepVerifier.create(filter.filter(get("/api/reports/monthly"), pendingChain)).verifyComplete();
+  }
+
+  @Test
+  void sample_neverThrows() {
+    LoadSheddingWebFilter filter = filter(2);
+
+    assertDoesNotThrow(filter::sample);
+  }
+
+  private LoadSheddingWebFilter filter(int maxInflight) {
+    LoadSheddingProperties properties = new LoadSheddingProperties();
+    properties.setPriorities(List.of("GET /api/reports/**=LOW"));
+    properties.setMaxInflight(maxInflight);
+    properties.setEventLoopLagMs(0);
+    properties.setMaxPendingAcquires(0);
+    properties.setRetryAfterSeconds(3);
+    return new LoadSheddingWebFilter(properties, meterRegistry, corsWebFilter());
+  }
+
+  private static CorsWebFilter corsWebFilter() {
+    CorsConfiguration cors = new CorsConfiguration();
+    cors.setAllowedOrigins(List.of("http://localhost:3000"));
+    cors.setAllowedMethods(List.of("GET", "POST"));
+    UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+    source.registerCorsConfiguration("/**", cors);
+    return new CorsWebFilter(source);
+  }
+
+  private double inflight() {
+    return meterRegistry.get("gateway.shedding.inflight").gauge().value();
+  }
+
+  private static MockServerWebExchange get(String path) {
+    return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+  }
+}
@@ -0,0 +1,71 @@
+package tn.compta.gateway.shedding;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+
+class OverloadDetectorTest {
+
+  private final OverloadDetector detector = new OverloadDetector(50, 100, 10,
+      Map.of(Priority.LOW, 1.0, Priority.NORMAL, 1.5, Priority.HIGH, 2.0));
+
+  @Test
+  void shouldShed_whenIdle_shedsNothing() {
+    for (Priority priority : Priority.values()) {
+      assertFalse(detector.shouldShed(priority));
+    }
+  }
+
+  @Test
+  void shouldShed_whenEventLoopLags_shedsLowPriorityFirst() {
+    detector.recordEventLoopLag(TimeUnit.MILLISECONDS.toNanos(60));
+
+    assertTrue(detector.shouldShed(Priority.LOW));
+    assertFalse(detector.shouldShed(Priority.NORMAL));
+    assertFalse(detector.shouldShed(Priority.HIGH));
+  }
+
+  @Test
+  void shouldShed_neverShedsCritical() {
+    detector.setPendingAcquires(1_000);
+
+    assertTrue(detector.shouldShed(Priority.HIGH));
+    assertFalse(detector.shouldShed(Priority.CRITICAL));
+  }
+
+  @Test
+  void pressure_followsInflightRequests() {
+    for (int i = 0; i < 15; i++) {
+      detector.enter();
+    }
+    assertEquals(1.5, detector.pressure(), 1e-9);
+
+    for (int i = 0; i < 15; i++) {
+      detector.exit();
+    }
+    assertEquals(0.0, detector.pressure(), 1e-9);
+  }
+
+  @Test
+  void recordEventLoopLag_peakDecaysOverSamples() {
+    detector.recordEventLoopLag(TimeUnit.MILLISECONDS.toNanos(100));
+    for (int i = 0; i < 10; i++) {
+      detector.recordEventLoopLag(0);
+    }
+
+    assertTrue(detector.pressure() < 1.0);
+  }
+
+  @Test
+  void parse_readsMethodPatternAndPriority() {
+    PriorityRule rule = PriorityRule.parse("GET /invoices/*/export=low");
+
+    assertEquals(Priority.LOW, rule.priority());
+    assertTrue(rule.matches(HttpMethod.GET, PathContainer.parsePath("/invoices/42/export")));
+    assertFalse(rule.matches(HttpMethod.POST, PathContainer.parsePath("/invoices/42/export")));
+  }
+}